@@ -4,6 +4,7 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.io.Serial;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,6 +13,9 @@ import java.util.List;
  * capped by two circular planes at its ends.
  */
 public class Cylinder extends Tube {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /**
      * The height of the cylinder.
      */
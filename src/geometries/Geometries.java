@@ -2,7 +2,9 @@ package geometries;
 
 import primitives.Ray;
 
+import java.io.Serial;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,10 +16,13 @@ import java.util.List;
  * </p>
  */
 public class Geometries extends Intersectable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /**
      * The internal list of geometries making up this group.
      */
-    private final List<Intersectable> geometries;
+    private final LinkedList<Intersectable> geometries;
 
     /**
      * Creates an empty Geometries collection. Additional geometries can be added later.
@@ -44,6 +49,16 @@ public class Geometries extends Intersectable {
         this.geometries.addAll(Arrays.asList(geometries));
     }
 
+    /**
+     * Removes one or more geometries from this group - the very objects, not equal ones.
+     *
+     * @param geometries one or more Intersectable objects to remove
+     */
+    public void remove(Intersectable... geometries) {
+        for (Intersectable geometry : geometries)
+            this.geometries.removeIf(g -> g == geometry);
+    }
+
     /**
      * Calculates all intersection points between the provided ray and
      * each geometry in this collection.
@@ -63,6 +78,15 @@ public class Geometries extends Intersectable {
         return result.isEmpty() ? null : result;
     }
 
+    /**
+     * Returns the geometries of this group.
+     *
+     * @return an unmodifiable view of the geometries
+     */
+    public List<Intersectable> getGeometries() {
+        return Collections.unmodifiableList(geometries);
+    }
+
     /**
      * Checks whether this Geometries group contains any geometries.
      *
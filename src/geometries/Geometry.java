@@ -5,6 +5,8 @@ import primitives.Material;
 import primitives.Vector;
 import primitives.Point;
 
+import java.io.Serial;
+
 /**
  * Abstract base class for all geometric shapes in the scene.
  * <p>
@@ -13,6 +15,8 @@ import primitives.Point;
  * </p>
  */
 public abstract class Geometry extends Intersectable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * Emission (intrinsic) color of the geometry used for shading.
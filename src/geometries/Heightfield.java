@@ -0,0 +1,358 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.Serial;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
+/**
+ * {@code Heightfield} represents a terrain surface defined by a regular grid of heights
+ * above the XZ plane (Y is the up axis).
+ * <p>
+ * The heights are kept in a primitive {@code float[]} (one value per grid sample), and every
+ * grid cell is treated as two triangles split along its (i, k)-(i+1, k+1) diagonal. A ray is
+ * intersected by marching it across the cells in 2D (2D-DDA) on top of a min/max mipmap,
+ * so whole blocks of cells lying entirely above or below the ray are skipped at once.
+ * A 4096x4096 terrain costs its 64 MB of heights plus about a sixth of that for the mipmap,
+ * and the cost of a ray is proportional to the number of blocks it crosses.
+ * </p>
+ */
+public class Heightfield extends Geometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** The finest mipmap level that is stored, coarser than it is computed from the samples */
+    private static final int FIRST_STORED_LEVEL = 2;
+    /** Tolerance (in cell units) for the point-in-triangle test on the cell boundaries */
+    private static final double CELL_EPS = 1e-9;
+
+    /** Coordinates of the grid sample (0, 0) at height 0 */
+    private final double originX, originY, originZ;
+    /** Cell size along the X and Z axes */
+    private final double cellX, cellZ;
+    /** Number of grid samples along the X and Z axes */
+    private final int samplesX, samplesZ;
+    /** Number of cells along the X and Z axes */
+    private final int cellsX, cellsZ;
+    /** Heights of the grid samples, row-major: the sample (i, k) is at {@code k * samplesX + i} */
+    private final float[] heights;
+    /** The coarsest mipmap level - a single block of this level covers the whole grid */
+    private final int levels;
+    /** Minimum and maximum heights of the blocks, the array of level l is at index l - FIRST_STORED_LEVEL */
+    private final float[][] mipMin, mipMax;
+    /** Lowest and highest sample of the whole grid */
+    private final double minHeight, maxHeight;
+
+    /**
+     * Constructs a heightfield over a regular grid.
+     * The heights array is used as is (it is not copied) so that huge terrains are not duplicated.
+     *
+     * @param origin   the position of the grid sample (0, 0) at height 0
+     * @param cellX    the cell size along the X axis; must be positive
+     * @param cellZ    the cell size along the Z axis; must be positive
+     * @param samplesX number of grid samples along the X axis; at least 2
+     * @param samplesZ number of grid samples along the Z axis; at least 2
+     * @param heights  heights of the samples relative to the origin, row-major by Z
+     * @throws IllegalArgumentException if a size is not positive or the heights do not match the grid
+     */
+    public Heightfield(Point origin, double cellX, double cellZ, int samplesX, int samplesZ, float[] heights) {
+        if (origin == null)
+            throw new IllegalArgumentException("Origin point cannot be null");
+        if (cellX <= 0 || cellZ <= 0)
+            throw new IllegalArgumentException("Cell size must be positive");
+        if (samplesX < 2 || samplesZ < 2)
+            throw new IllegalArgumentException("A heightfield must have at least 2x2 samples");
+        if (heights == null || heights.length != (long) samplesX * samplesZ)
+            throw new IllegalArgumentException("Heights array does not match the grid size");
+
+        this.originX = origin.getX();
+        this.originY = origin.getY();
+        this.originZ = origin.getZ();
+        this.cellX = cellX;
+        this.cellZ = cellZ;
+        this.samplesX = samplesX;
+        this.samplesZ = samplesZ;
+        this.cellsX = samplesX - 1;
+        this.cellsZ = samplesZ - 1;
+        this.heights = heights;
+
+        int lvl = 0;
+        while ((1 << lvl) < Math.max(cellsX, cellsZ)) ++lvl;
+        levels = lvl;
+
+        int stored = Math.max(0, levels - FIRST_STORED_LEVEL + 1);
+        mipMin = new float[stored][];
+        mipMax = new float[stored][];
+        for (int l = FIRST_STORED_LEVEL; l <= levels; ++l)
+            buildLevel(l);
+
+        float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+        for (float h : heights) {
+            if (h < lo) lo = h;
+            if (h > hi) hi = h;
+        }
+        minHeight = lo;
+        maxHeight = hi;
+    }
+
+    /**
+     * Number of blocks of a mipmap level along an axis
+     *
+     * @param cells number of cells along the axis
+     * @param level the mipmap level
+     * @return the number of blocks
+     */
+    private static int blocks(int cells, int level) {
+        return ((cells - 1) >> level) + 1;
+    }
+
+    /**
+     * Builds the minimum and maximum heights of a stored mipmap level
+     *
+     * @param level the level to build, the finer level must be already built
+     */
+    private void buildLevel(int level) {
+        int bx = blocks(cellsX, level), bz = blocks(cellsZ, level);
+        float[] min = new float[bx * bz], max = new float[bx * bz];
+        for (int k = 0; k < bz; ++k)
+            for (int i = 0; i < bx; ++i) {
+                float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+                if (level == FIRST_STORED_LEVEL) {
+                    int size = 1 << level;
+                    int iEnd = Math.min((i + 1) * size, cellsX), kEnd = Math.min((k + 1) * size, cellsZ);
+                    for (int sk = k * size; sk <= kEnd; ++sk)
+                        for (int si = i * size; si <= iEnd; ++si) {
+                            float h = heights[sk * samplesX + si];
+                            if (h < lo) lo = h;
+                            if (h > hi) hi = h;
+                        }
+                } else {
+                    float[] cMin = mipMin[level - 1 - FIRST_STORED_LEVEL], cMax = mipMax[level - 1 - FIRST_STORED_LEVEL];
+                    int cbx = blocks(cellsX, level - 1), cbz = blocks(cellsZ, level - 1);
+                    for (int ck = 2 * k; ck < Math.min(2 * k + 2, cbz); ++ck)
+                        for (int ci = 2 * i; ci < Math.min(2 * i + 2, cbx); ++ci) {
+                            int idx = ck * cbx + ci;
+                            if (cMin[idx] < lo) lo = cMin[idx];
+                            if (cMax[idx] > hi) hi = cMax[idx];
+                        }
+                }
+                min[k * bx + i] = lo;
+                max[k * bx + i] = hi;
+            }
+        mipMin[level - FIRST_STORED_LEVEL] = min;
+        mipMax[level - FIRST_STORED_LEVEL] = max;
+    }
+
+    /**
+     * Height of a grid sample
+     *
+     * @param i sample index along the X axis
+     * @param k sample index along the Z axis
+     * @return the height of the sample relative to the origin
+     */
+    public double getHeight(int i, int k) {
+        return heights[k * samplesX + i];
+    }
+
+    /**
+     * Index of the cell containing a coordinate (in cell units) along one axis.
+     * A coordinate lying exactly on a cell boundary belongs to the cell the ray is entering.
+     *
+     * @param f     the coordinate in cell units
+     * @param fd    the ray direction component in cell units
+     * @param cells number of cells along the axis
+     * @return the cell index clamped into the grid
+     */
+    private static int cellIndex(double f, double fd, int cells) {
+        int c = (int) Math.floor(f);
+        if (fd < 0 && c == f) --c;
+        return c < 0 ? 0 : Math.min(c, cells - 1);
+    }
+
+    /**
+     * Computes the ray parameter where the ray leaves a block along one axis
+     *
+     * @param f0    the ray origin coordinate in cell units
+     * @param fd    the ray direction component in cell units
+     * @param block the block index along the axis
+     * @param size  the block size in cells
+     * @return the exit parameter, or positive infinity if the ray is parallel to the axis
+     */
+    private static double blockExit(double f0, double fd, int block, int size) {
+        if (fd > 0) return ((block + 1) * size - f0) / fd;
+        if (fd < 0) return (block * size - f0) / fd;
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Intersects the ray with the two triangles of a cell.
+     * Each triangle is the plane y = h00 + s * u + r * w over the cell local coordinates (u, w).
+     *
+     * @param i   cell index along the X axis
+     * @param k   cell index along the Z axis
+     * @param fx0 ray origin X coordinate in cell units
+     * @param fz0 ray origin Z coordinate in cell units
+     * @param oy  ray origin height relative to the grid origin
+     * @param fdx ray direction X component in cell units
+     * @param fdz ray direction Z component in cell units
+     * @param dy  ray direction Y component
+     * @return the nearest positive ray parameter of a hit, or positive infinity if there is none
+     */
+    private double intersectCell(int i, int k, double fx0, double fz0, double oy,
+                                 double fdx, double fdz, double dy) {
+        int base = k * samplesX + i;
+        double h00 = heights[base], h10 = heights[base + 1];
+        double h01 = heights[base + samplesX], h11 = heights[base + samplesX + 1];
+        double u0 = fx0 - i, w0 = fz0 - k;
+
+        double best = Double.POSITIVE_INFINITY;
+        // triangle (00, 10, 11) - below the diagonal: w <= u
+        double t = solvePlane(h00, h10 - h00, h11 - h10, u0, w0, oy, fdx, fdz, dy);
+        if (t < best) {
+            double u = u0 + fdx * t, w = w0 + fdz * t;
+            if (w >= -CELL_EPS && w <= u + CELL_EPS && u <= 1 + CELL_EPS) best = t;
+        }
+        // triangle (00, 11, 01) - above the diagonal: u <= w
+        t = solvePlane(h00, h11 - h01, h01 - h00, u0, w0, oy, fdx, fdz, dy);
+        if (t < best) {
+            double u = u0 + fdx * t, w = w0 + fdz * t;
+            if (u >= -CELL_EPS && u <= w + CELL_EPS && w <= 1 + CELL_EPS) best = t;
+        }
+        return best;
+    }
+
+    /**
+     * Solves the ray parameter where the ray meets a triangle plane of a cell
+     *
+     * @return the positive ray parameter, or positive infinity if the ray is parallel or the hit is behind it
+     */
+    private static double solvePlane(double h00, double s, double r, double u0, double w0, double oy,
+                                     double fdx, double fdz, double dy) {
+        double denominator = dy - s * fdx - r * fdz;
+        if (denominator == 0) return Double.POSITIVE_INFINITY;
+        double t = alignZero((h00 + s * u0 + r * w0 - oy) / denominator);
+        return t > 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Computes the minimum and maximum heights of a block of any level
+     *
+     * @param level the mipmap level
+     * @param bx    the block index along the X axis
+     * @param bz    the block index along the Z axis
+     * @param range two-cell array receiving the minimum and the maximum
+     */
+    private void blockRange(int level, int bx, int bz, double[] range) {
+        if (level >= FIRST_STORED_LEVEL) {
+            int idx = bz * blocks(cellsX, level) + bx;
+            range[0] = mipMin[level - FIRST_STORED_LEVEL][idx];
+            range[1] = mipMax[level - FIRST_STORED_LEVEL][idx];
+            return;
+        }
+        int size = 1 << level;
+        int iEnd = Math.min((bx + 1) * size, cellsX), kEnd = Math.min((bz + 1) * size, cellsZ);
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (int k = bz * size; k <= kEnd; ++k)
+            for (int i = bx * size; i <= iEnd; ++i) {
+                double h = heights[k * samplesX + i];
+                if (h < lo) lo = h;
+                if (h > hi) hi = h;
+            }
+        range[0] = lo;
+        range[1] = hi;
+    }
+
+    /**
+     * Marches the ray over the grid with a hierarchical 2D-DDA: a block whose height range
+     * does not meet the ray height range is skipped (and the march climbs a level), otherwise the
+     * march descends into it, down to the cells whose triangles are intersected exactly.
+     *
+     * @param ray the ray to intersect
+     * @return a list with the nearest hit, or null if the ray misses the terrain
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        Point p0 = ray.getPoint();
+        Vector v = ray.getDirection();
+        double ox = p0.getX() - originX, oy = p0.getY() - originY, oz = p0.getZ() - originZ;
+        double dx = v.getX(), dy = v.getY(), dz = v.getZ();
+
+        // clip the ray to the bounding box of the terrain
+        double tMin = 0, tMax = Double.POSITIVE_INFINITY;
+        double[][] slabs = {{ox, dx, 0, cellsX * cellX}, {oy, dy, minHeight, maxHeight}, {oz, dz, 0, cellsZ * cellZ}};
+        for (double[] slab : slabs) {
+            if (slab[1] == 0) {
+                if (slab[0] < slab[2] || slab[0] > slab[3]) return null;
+                continue;
+            }
+            double t1 = (slab[2] - slab[0]) / slab[1], t2 = (slab[3] - slab[0]) / slab[1];
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin > tMax) return null;
+
+        double fx0 = ox / cellX, fz0 = oz / cellZ, fdx = dx / cellX, fdz = dz / cellZ;
+        double[] range = new double[2];
+        int level = levels;
+        double t = tMin;
+        while (true) {
+            int size = 1 << level;
+            int bx = cellIndex(fx0 + fdx * t, fdx, cellsX) >> level;
+            int bz = cellIndex(fz0 + fdz * t, fdz, cellsZ) >> level;
+            double tExit = Math.min(Math.min(blockExit(fx0, fdx, bx, size), blockExit(fz0, fdz, bz, size)), tMax);
+            if (tExit <= t) tExit = Math.min(Math.nextUp(t), tMax);
+
+            blockRange(level, bx, bz, range);
+            double yA = oy + dy * t, yB = oy + dy * tExit;
+            // the ray passes above or below the whole block - up to rounding, as the ray is clipped where it
+            // reaches the lowest or highest sample, and a block there touches the ray only at that height
+            if (alignZero(Math.max(yA, yB) - range[0]) < 0 || alignZero(Math.min(yA, yB) - range[1]) > 0) {
+                if (tExit >= tMax) return null;
+                t = tExit;
+                if (level < levels) ++level;
+            } else if (level > 0) {
+                --level;
+            } else {
+                double tHit = intersectCell(bx, bz, fx0, fz0, oy, fdx, fdz, dy);
+                if (tHit != Double.POSITIVE_INFINITY) {
+                    Point p = ray.getPoint(tHit);
+                    return List.of(new Intersection(this, p, getMaterial(), ray, getNormal(p), null));
+                }
+                if (tExit >= tMax) return null;
+                t = tExit;
+            }
+        }
+    }
+
+    /**
+     * Computes the normal of the triangle of the terrain that contains the given point.
+     * Only the X and Z coordinates of the point are used, the normal always points upwards.
+     *
+     * @param point a point on the terrain surface
+     * @return the normalized upward normal of the surface at the point
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double fx = (point.getX() - originX) / cellX, fz = (point.getZ() - originZ) / cellZ;
+        int i = cellIndex(fx, 0, cellsX), k = cellIndex(fz, 0, cellsZ);
+        double u = fx - i, w = fz - k;
+
+        int base = k * samplesX + i;
+        double h00 = heights[base], h10 = heights[base + 1];
+        double h01 = heights[base + samplesX], h11 = heights[base + samplesX + 1];
+        // height slopes (per cell) of the containing triangle
+        double slopeX = w <= u ? h10 - h00 : h11 - h01;
+        double slopeZ = w <= u ? h11 - h10 : h01 - h00;
+        return new Vector(-slopeX / cellX, 1, -slopeZ / cellZ).normalize();
+    }
+
+    @Override
+    public String toString() {
+        return "Heightfield{" + samplesX + "x" + samplesZ + " at (" + originX + "," + originY + "," + originZ
+                + "), cell=" + cellX + "x" + cellZ + "}";
+    }
+}
@@ -6,6 +6,8 @@ import primitives.Ray;
 import primitives.Material;
 import primitives.Vector;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -13,7 +15,9 @@ import java.util.List;
  * Implements the Non-Virtual Interface (NVI) pattern to provide a stable public API
  * while allowing subclasses to implement the specific intersection logic.
  */
-public abstract class Intersectable {
+public abstract class Intersectable implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * Represents a detailed ray–geometry intersection.
@@ -3,6 +3,7 @@ package geometries;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
+import java.io.Serial;
 import java.util.List;
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -13,6 +14,9 @@ import geometries.Intersectable.Intersection;
  * A plane can be defined either by three non-collinear points or by a point and a normal vector.
  */
 public class Plane extends Geometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /** A reference point on the plane. */
     private final Point q0;
     /** The normalized normal vector perpendicular to the plane's surface. */
@@ -1,5 +1,6 @@
 package geometries;
 
+import java.io.Serial;
 import java.util.List;
 import static primitives.Util.*;
 import primitives.Point;
@@ -12,8 +13,11 @@ import primitives.Vector;
  * The constructor verifies planarity, convexity, and vertex ordering.
  */
 public class Polygon extends Geometry {
-   /** Ordered list of polygon vertices. */
-   protected final List<Point> vertices;
+   @Serial
+   private static final long serialVersionUID = 1L;
+
+   /** Ordered polygon vertices. */
+   protected final Point[] vertices;
    /** Underlying plane in which the polygon lies. */
    protected final Plane plane;
    /** Number of vertices in the polygon. */
@@ -30,7 +34,7 @@ public class Polygon extends Geometry {
       // Must have at least 3 points
       if (vertices.length < 3)
          throw new IllegalArgumentException("A polygon can't have less than 3 vertices");
-      this.vertices = List.of(vertices);
+      this.vertices = vertices.clone();
       size = vertices.length;
 
       // Define the polygon's plane from first three vertices
@@ -66,6 +70,14 @@ public class Polygon extends Geometry {
       }
    }
 
+   /**
+    * Returns the vertices of the polygon.
+    * @return unmodifiable list of the vertices in order
+    */
+   public List<Point> getVertices() {
+      return List.of(vertices);
+   }
+
    /**
     * Returns the plane's normal vector (same for any point on the polygon).
     * @param point ignored; normal is constant for the polygon's plane
@@ -97,8 +109,8 @@ public class Polygon extends Geometry {
 
       // 4. Edge-by-edge inside-outside test
       for (int i = 0; i < size; ++i) {
-         Point vi = vertices.get(i);
-         Point vj = vertices.get((i + 1) % size);
+         Point vi = vertices[i];
+         Point vj = vertices[(i + 1) % size];
 
          // Vector along edge and from edge start to intersection
          Vector edge = vj.subtract(vi);
@@ -1,9 +1,14 @@
 package geometries;
 
+import java.io.Serial;
+
 /**
  * Abstract class for geometries that have a radius.
  */
 public abstract class RadialGeometry extends Geometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /** The radius of the geometry. */
     protected final double radius;
 
@@ -4,6 +4,7 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.io.Serial;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,6 +15,9 @@ import static primitives.Util.alignZero;
  * Extends {@link RadialGeometry} to inherit radius property and surface normal behavior.
  */
 public class Sphere extends RadialGeometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /** The center point of the sphere in 3D space. */
     private final Point center;
 
@@ -0,0 +1,315 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
+/**
+ * {@code SphereCloud} represents a large set of spheres sharing one emission and one material,
+ * such as star fields and particle dumps.
+ * <p>
+ * Instead of a {@link Sphere} object (with its points and material) per particle, the centres
+ * and radii are kept in flat primitive arrays, and the spheres are indexed by an internal
+ * uniform grid stored in compressed form (cell offsets plus one array of sphere indices).
+ * A ray walks the grid cells it crosses (3D-DDA) and tests only the spheres of those cells.
+ * A million particles take about 30 MB.
+ * </p>
+ */
+public class SphereCloud extends Geometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Average number of spheres per grid cell the grid resolution aims at */
+    private static final double SPHERES_PER_CELL = 2;
+    /** Maximum number of grid cells along one axis */
+    private static final int MAX_CELLS_PER_AXIS = 512;
+    /** Tolerance for recognizing a point on a sphere surface */
+    private static final double SURFACE_EPS = 1e-6;
+
+    /** Sphere centres, interleaved x, y, z per sphere */
+    private final float[] centers;
+    /** Sphere radii */
+    private final float[] radii;
+    /** Number of spheres */
+    private final int size;
+
+    /** Minimal corner of the grid */
+    private final double minX, minY, minZ;
+    /** Grid cell size along each axis */
+    private final double cellX, cellY, cellZ;
+    /** Number of grid cells along each axis */
+    private final int nX, nY, nZ;
+    /** Start offset in {@link #cellItems} of the spheres of each cell; one extra entry closes the last cell */
+    private final int[] cellStart;
+    /** Sphere indices grouped by cell */
+    private final int[] cellItems;
+
+    /**
+     * Constructs a sphere cloud.
+     * The arrays are used as is (they are not copied) so that huge clouds are not duplicated.
+     *
+     * @param centers sphere centres, interleaved x, y, z per sphere
+     * @param radii   sphere radii; all must be positive
+     * @throws IllegalArgumentException if the arrays are empty, do not match, or a radius is not positive
+     */
+    public SphereCloud(float[] centers, float[] radii) {
+        if (centers == null || radii == null || radii.length == 0)
+            throw new IllegalArgumentException("A sphere cloud must have at least one sphere");
+        if (centers.length != 3 * radii.length)
+            throw new IllegalArgumentException("Centers array does not match the radii array");
+        for (float r : radii)
+            if (!(r > 0)) throw new IllegalArgumentException("Radius must be positive");
+
+        this.centers = centers;
+        this.radii = radii;
+        this.size = radii.length;
+
+        // bounding box of all the spheres
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int s = 0; s < size; ++s) {
+            double r = radii[s];
+            x0 = Math.min(x0, centers[3 * s] - r);
+            y0 = Math.min(y0, centers[3 * s + 1] - r);
+            z0 = Math.min(z0, centers[3 * s + 2] - r);
+            x1 = Math.max(x1, centers[3 * s] + r);
+            y1 = Math.max(y1, centers[3 * s + 1] + r);
+            z1 = Math.max(z1, centers[3 * s + 2] + r);
+        }
+        minX = x0;
+        minY = y0;
+        minZ = z0;
+
+        // grid resolution giving about SPHERES_PER_CELL spheres per cell
+        double ex = x1 - x0, ey = y1 - y0, ez = z1 - z0;
+        double k = Math.cbrt(size / SPHERES_PER_CELL / (ex * ey * ez));
+        nX = resolution(ex * k);
+        nY = resolution(ey * k);
+        nZ = resolution(ez * k);
+        cellX = ex / nX;
+        cellY = ey / nY;
+        cellZ = ez / nZ;
+
+        // counting pass, then filling pass of the compressed cell lists
+        cellStart = new int[nX * nY * nZ + 1];
+        int[] range = new int[6];
+        for (int s = 0; s < size; ++s) {
+            cellRange(s, range);
+            for (int z = range[2]; z <= range[5]; ++z)
+                for (int y = range[1]; y <= range[4]; ++y)
+                    for (int x = range[0]; x <= range[3]; ++x)
+                        ++cellStart[cellIndex(x, y, z) + 1];
+        }
+        for (int c = 1; c < cellStart.length; ++c)
+            cellStart[c] += cellStart[c - 1];
+        cellItems = new int[cellStart[cellStart.length - 1]];
+        int[] fill = new int[nX * nY * nZ];
+        for (int s = 0; s < size; ++s) {
+            cellRange(s, range);
+            for (int z = range[2]; z <= range[5]; ++z)
+                for (int y = range[1]; y <= range[4]; ++y)
+                    for (int x = range[0]; x <= range[3]; ++x) {
+                        int c = cellIndex(x, y, z);
+                        cellItems[cellStart[c] + fill[c]++] = s;
+                    }
+        }
+    }
+
+    /**
+     * Number of grid cells along an axis
+     *
+     * @param cells the ideal (fractional) number of cells
+     * @return the number of cells within the allowed bounds
+     */
+    private static int resolution(double cells) {
+        return (int) Math.max(1, Math.min(MAX_CELLS_PER_AXIS, Math.ceil(cells)));
+    }
+
+    /**
+     * Linear index of a grid cell
+     */
+    private int cellIndex(int x, int y, int z) {
+        return (z * nY + y) * nX + x;
+    }
+
+    /**
+     * Clamps a grid coordinate into the grid
+     *
+     * @param f     a coordinate in cell units
+     * @param cells number of cells along the axis
+     * @return the index of the cell
+     */
+    private static int clampCell(double f, int cells) {
+        int c = (int) Math.floor(f);
+        return c < 0 ? 0 : Math.min(c, cells - 1);
+    }
+
+    /**
+     * Computes the range of grid cells overlapped by the bounding box of a sphere
+     *
+     * @param s     the sphere index
+     * @param range receives the minimal x, y, z and the maximal x, y, z cell indices
+     */
+    private void cellRange(int s, int[] range) {
+        double r = radii[s];
+        double x = centers[3 * s], y = centers[3 * s + 1], z = centers[3 * s + 2];
+        range[0] = clampCell((x - r - minX) / cellX, nX);
+        range[1] = clampCell((y - r - minY) / cellY, nY);
+        range[2] = clampCell((z - r - minZ) / cellZ, nZ);
+        range[3] = clampCell((x + r - minX) / cellX, nX);
+        range[4] = clampCell((y + r - minY) / cellY, nY);
+        range[5] = clampCell((z + r - minZ) / cellZ, nZ);
+    }
+
+    /**
+     * Number of spheres in the cloud
+     *
+     * @return the number of spheres
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the centre of a sphere of the cloud
+     *
+     * @param s the sphere index
+     * @return the centre point
+     */
+    public Point getCenter(int s) {
+        return new Point(centers[3 * s], centers[3 * s + 1], centers[3 * s + 2]);
+    }
+
+    /**
+     * Returns the radius of a sphere of the cloud
+     *
+     * @param s the sphere index
+     * @return the radius
+     */
+    public double getRadius(int s) {
+        return radii[s];
+    }
+
+    /**
+     * Computes the normal at a point on the surface of one of the spheres.
+     * The sphere is found through the grid cell containing the point.
+     *
+     * @param point the surface point where the normal is computed
+     * @return the normalized vector from the sphere centre to the point
+     * @throws IllegalArgumentException if the point is not on the surface of any sphere of the cloud
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        int c = cellIndex(clampCell((px - minX) / cellX, nX),
+                clampCell((py - minY) / cellY, nY),
+                clampCell((pz - minZ) / cellZ, nZ));
+        for (int item = cellStart[c]; item < cellStart[c + 1]; ++item) {
+            int s = cellItems[item];
+            double dx = px - centers[3 * s], dy = py - centers[3 * s + 1], dz = pz - centers[3 * s + 2];
+            double r = radii[s];
+            if (Math.abs(Math.sqrt(dx * dx + dy * dy + dz * dz) - r) <= SURFACE_EPS * (1 + r))
+                return new Vector(dx, dy, dz).normalize();
+        }
+        throw new IllegalArgumentException("Point " + point + " is not on the surface of the sphere cloud");
+    }
+
+    /**
+     * Walks the grid cells crossed by the ray and intersects the spheres registered in them.
+     * A hit is reported only by the cell that contains it, so each hit is reported once
+     * although a sphere may be registered in several cells.
+     *
+     * @param ray the ray to intersect
+     * @return the list of hits ordered by the cells they were found in, or null if none
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+        Point p0 = ray.getPoint();
+        Vector v = ray.getDirection();
+        double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+        double dx = v.getX(), dy = v.getY(), dz = v.getZ();
+
+        // clip the ray to the grid bounds
+        double tMin = 0, tMax = Double.POSITIVE_INFINITY;
+        double[][] slabs = {{ox, dx, minX, minX + nX * cellX}, {oy, dy, minY, minY + nY * cellY},
+                {oz, dz, minZ, minZ + nZ * cellZ}};
+        for (double[] slab : slabs) {
+            if (slab[1] == 0) {
+                if (slab[0] < slab[2] || slab[0] > slab[3]) return null;
+                continue;
+            }
+            double t1 = (slab[2] - slab[0]) / slab[1], t2 = (slab[3] - slab[0]) / slab[1];
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin > tMax) return null;
+
+        // 3D-DDA setup
+        int x = clampCell((ox + dx * tMin - minX) / cellX, nX);
+        int y = clampCell((oy + dy * tMin - minY) / cellY, nY);
+        int z = clampCell((oz + dz * tMin - minZ) / cellZ, nZ);
+        int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1, stepZ = dz > 0 ? 1 : -1;
+        double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : cellX / Math.abs(dx);
+        double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : cellY / Math.abs(dy);
+        double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : cellZ / Math.abs(dz);
+        double nextX = dx == 0 ? Double.POSITIVE_INFINITY : (minX + (x + (dx > 0 ? 1 : 0)) * cellX - ox) / dx;
+        double nextY = dy == 0 ? Double.POSITIVE_INFINITY : (minY + (y + (dy > 0 ? 1 : 0)) * cellY - oy) / dy;
+        double nextZ = dz == 0 ? Double.POSITIVE_INFINITY : (minZ + (z + (dz > 0 ? 1 : 0)) * cellZ - oz) / dz;
+
+        List<Intersection> result = null;
+        double tEnter = tMin;
+        while (true) {
+            double tExit = Math.min(Math.min(nextX, nextY), Math.min(nextZ, tMax));
+            boolean last = tExit >= tMax;
+            int c = cellIndex(x, y, z);
+            for (int item = cellStart[c]; item < cellStart[c + 1]; ++item) {
+                int s = cellItems[item];
+                double ux = centers[3 * s] - ox, uy = centers[3 * s + 1] - oy, uz = centers[3 * s + 2] - oz;
+                double r = radii[s];
+                double tm = alignZero(dx * ux + dy * uy + dz * uz);
+                double d2 = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+                if (d2 >= r * r) continue;
+                double th = alignZero(Math.sqrt(r * r - d2));
+                for (int side = -1; side <= 1; side += 2) {
+                    double t = alignZero(tm + side * th);
+                    if (t > 0 && t >= tEnter && (t < tExit || last && t <= tExit)) {
+                        if (result == null) result = new ArrayList<>();
+                        Point p = ray.getPoint(t);
+                        Vector n = new Vector(ox + dx * t - centers[3 * s], oy + dy * t - centers[3 * s + 1],
+                                oz + dz * t - centers[3 * s + 2]).normalize();
+                        result.add(new Intersection(this, p, getMaterial(), ray, n, null));
+                    }
+                }
+            }
+            if (last) break;
+
+            // step into the next cell
+            tEnter = tExit;
+            if (nextX <= nextY && nextX <= nextZ) {
+                x += stepX;
+                if (x < 0 || x >= nX) break;
+                nextX += deltaX;
+            } else if (nextY <= nextZ) {
+                y += stepY;
+                if (y < 0 || y >= nY) break;
+                nextY += deltaY;
+            } else {
+                z += stepZ;
+                if (z < 0 || z >= nZ) break;
+                nextZ += deltaZ;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SphereCloud{" + size + " spheres, grid " + nX + "x" + nY + "x" + nZ + "}";
+    }
+}
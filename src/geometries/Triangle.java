@@ -4,6 +4,7 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 import geometries.Intersectable.Intersection;
+import java.io.Serial;
 import java.util.List;
 import static primitives.Util.alignZero;
 
@@ -11,6 +12,8 @@ import static primitives.Util.alignZero;
  * Triangle class represents a triangle in 3D space, defined as a Polygon with exactly 3 vertices.
  */
 public class Triangle extends Polygon {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * Constructor for a triangle with 3 vertices.
@@ -25,7 +28,7 @@ public class Triangle extends Polygon {
 
     @Override
     public String toString() {
-        return "Triangle{" + vertices + "}";
+        return "Triangle{" + getVertices() + "}";
     }
 
     /**
@@ -50,9 +53,9 @@ public class Triangle extends Polygon {
         Point  p  = planeHit.point;
 
         // Triangle vertices
-        Point v1 = vertices.get(0);
-        Point v2 = vertices.get(1);
-        Point v3 = vertices.get(2);
+        Point v1 = vertices[0];
+        Point v2 = vertices[1];
+        Point v3 = vertices[2];
 
         // Vectors from ray origin to triangle vertices
         Vector u = v1.subtract(p0);
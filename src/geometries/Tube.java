@@ -4,6 +4,7 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.io.Serial;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -15,6 +16,9 @@ import geometries.Intersectable.GeoPoint;
  * It is defined by a central axis (as a {@link Ray}) and a radius.
  */
 public class Tube extends RadialGeometry {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /**
      * The central axis of the tube.
      */
@@ -3,6 +3,8 @@ package lighting;
 import primitives.Color;
 import primitives.Double3;
 
+import java.io.Serial;
+
 /**
  * A class representing Ambient Light.
  *
@@ -10,6 +12,8 @@ import primitives.Double3;
  */
 
 public class AmbientLight extends Light {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
 
     /**
@@ -4,6 +4,7 @@ import primitives.Color;
 import primitives.Point;
 import primitives.Vector;
 
+import java.io.Serial;
 import java.util.List;
 
 /**
@@ -11,6 +12,8 @@ import java.util.List;
  * implements LightSource.
  */
 public class DirectionalLight extends Light implements LightSource {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * Represents a direction vector in three-dimensional space. This vector can be
@@ -32,6 +35,17 @@ public class DirectionalLight extends Light implements LightSource {
     }
 
 
+    /**
+     * Sets the intensity of the light - a relightable render is updated by relighting it
+     *
+     * @param intensity the new intensity (color) of the light source
+     * @return the updated DirectionalLight object
+     */
+    public DirectionalLight setIntensity(Color intensity) {
+        this.intensity = intensity;
+        return this;
+    }
+
     @Override
     public Color getIntensity(Point p) {
         return getIntensity();
@@ -58,5 +72,9 @@ public class DirectionalLight extends Light implements LightSource {
     public Point[] getPoints(Point ignore, int ignOre){
         return null;
     }
+    @Override
+    public int getPoints(Point ignore, int ignOre, double[] buffer){
+        return 0;
+    }
 
 }
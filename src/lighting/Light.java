@@ -2,14 +2,20 @@ package lighting;
 
 import primitives.Color;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 
 /**
  * Abstract class representing a light source. This class defines common
  * properties and behavior for all light sources.
  */
-public abstract class Light {
+public abstract class Light implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
-    protected final Color intensity;
+    /** The intensity of the light - the light sources may edit it */
+    protected Color intensity;
 
     /**
      * Constructs a new Light with the given intensity.
@@ -4,6 +4,7 @@ import primitives.Color;
 import primitives.Point;
 import primitives.Vector;
 
+import java.io.Serializable;
 import java.util.List;
 
 
@@ -11,7 +12,7 @@ import java.util.List;
  * Interface representing a light source in a scene. A light source has
  * properties to determine its intensity and direction.
  */
-public interface LightSource {
+public interface LightSource extends Serializable {
 
 
 
@@ -44,5 +45,16 @@ public interface LightSource {
 
     Point[] getPoints(Point p, int numOfPoints);
 
+    /**
+     * Fills a caller-owned buffer with the coordinates of the sample points of the light, as
+     * {@link #getPoints(Point, int)} returns them, without allocating them.
+     *
+     * @param p           The shaded point.
+     * @param numOfPoints The number of points.
+     * @param buffer      The x, y and z coordinates of the points, at least 3 * numOfPoints long.
+     * @return The number of points written, 0 for a light without sample points.
+     */
+    int getPoints(Point p, int numOfPoints, double[] buffer);
+
 
 }
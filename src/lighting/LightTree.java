@@ -0,0 +1,297 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Rng;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static primitives.Util.isZero;
+
+/**
+ * A bounding volume hierarchy of the lights of a scene, for shading a fixed number of lights out of many.<br/>
+ * Every node bounds its lights by a box, their total intensity, their smallest attenuation factors and the
+ * cone of their spot directions, which together bound the light the node may bring to a point. A light is
+ * sampled by descending from the root to a child chosen in proportion to these importance estimates, and is
+ * weighted by the inverse of its probability, so the weighted sum of the sampled lights is an unbiased
+ * estimate of the sum of all the lights. Lights without a position (e.g. directional lights) are not in the
+ * hierarchy and are always shaded.
+ */
+public class LightTree {
+    /**
+     * Smallest attenuation denominator of a node, so a point inside the box of a node doesn't get an
+     * infinite importance
+     */
+    private static final double MIN_ATTENUATION = 1e-9;
+    /** The largest double below 1, the bound of the random number of a sample */
+    private static final double ONE_BELOW = Math.nextDown(1d);
+
+    /**
+     * A light to shade and its weight - the inverse of the expected number of times it is sampled
+     *
+     * @param light  the light
+     * @param weight the weight of its effect
+     */
+    public record LightSample(LightSource light, double weight) {
+    }
+
+    /**
+     * A node of the hierarchy - a light, or the bounds of the lights of its two children
+     */
+    private static final class Node {
+        /** The box of the light positions */
+        private final double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        private final double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        /** The sum of the intensities of the lights, as the sum of their components */
+        private double power = 0;
+        /** The smallest attenuation factors of the lights */
+        private double kc = Double.POSITIVE_INFINITY, kl = Double.POSITIVE_INFINITY, kq = Double.POSITIVE_INFINITY;
+        /** Whether the node has a light that shines to all directions, so its cone is ignored */
+        private boolean omni = false;
+        /** The axis of the cone of the spot directions */
+        private Vector axis;
+        /** The angle between the axis and the farthest spot direction */
+        private double spread = 0;
+        /** The children, null for a leaf */
+        private Node left, right;
+        /** The light of a leaf, null for an inner node */
+        private PointLight light;
+    }
+
+    /** The light list the tree was built from */
+    private final List<LightSource> source;
+    /** The size of the light list when the tree was built */
+    private final int sourceSize;
+    /** The lights that are always shaded */
+    private final List<LightSource> unbounded = new ArrayList<>();
+    /** The lights of the hierarchy */
+    private final PointLight[] bounded;
+    /** The root of the hierarchy, null without lights in it */
+    private final Node root;
+
+    /**
+     * Builds the hierarchy of lights, splitting the lights of every node at the median of the longest
+     * axis of their positions
+     *
+     * @param lights the lights of the scene
+     */
+    public LightTree(List<LightSource> lights) {
+        this.source = lights;
+        this.sourceSize = lights.size();
+        List<PointLight> positional = new ArrayList<>();
+        for (LightSource light : lights)
+            if (light instanceof PointLight pointLight) positional.add(pointLight);
+            else unbounded.add(light);
+        bounded = positional.toArray(new PointLight[0]);
+        root = bounded.length == 0 ? null : build(bounded.clone(), 0, bounded.length);
+    }
+
+    /**
+     * Checks if the tree was built from a light list, which has not been resized since
+     *
+     * @param lights the light list
+     * @return true if the tree is of the list
+     */
+    public boolean isBuiltFrom(List<LightSource> lights) {
+        return lights == source && lights.size() == sourceSize;
+    }
+
+    /**
+     * Samples lights for a point: the lights that are always shaded with weight 1, and a budget of lights
+     * of the hierarchy, each sampled in its own stratum of the random numbers, with the weights of the lights
+     * that are sampled more than once summed. When the hierarchy has no more lights than the budget, all its
+     * lights are returned with weight 1
+     *
+     * @param p      the shaded point
+     * @param key    the key of the random numbers of the point
+     * @param budget the number of lights to sample
+     * @return the lights to shade, with their weights
+     */
+    public List<LightSample> sample(Point p, long key, int budget) {
+        List<LightSample> samples = new ArrayList<>(unbounded.size() + Math.min(budget, bounded.length));
+        for (LightSource light : unbounded) samples.add(new LightSample(light, 1));
+        if (bounded.length <= budget) {
+            for (PointLight light : bounded) samples.add(new LightSample(light, 1));
+            return samples;
+        }
+
+        int first = samples.size();
+        for (int s = 0; s < budget; ++s) {
+            double u = (s + Rng.uniform(key, s, 0)) / budget;
+            Node node = root;
+            double probability = 1;
+            while (node != null && node.light == null) {
+                double left = importance(node.left, p), right = importance(node.right, p);
+                if (left + right <= 0) {
+                    // no light of the node reaches the point
+                    node = null;
+                    break;
+                }
+                double pLeft = left / (left + right);
+                if (u < pLeft) {
+                    u /= pLeft;
+                    probability *= pLeft;
+                    node = node.left;
+                } else {
+                    u = (u - pLeft) / (1 - pLeft);
+                    probability *= 1 - pLeft;
+                    node = node.right;
+                }
+                u = Math.min(u, ONE_BELOW);
+            }
+            if (node == null) continue;
+
+            double weight = 1 / (budget * probability);
+            int i = first;
+            while (i < samples.size() && samples.get(i).light() != node.light) ++i;
+            if (i < samples.size()) samples.set(i, new LightSample(node.light, samples.get(i).weight() + weight));
+            else samples.add(new LightSample(node.light, weight));
+        }
+        return samples;
+    }
+
+    /**
+     * Passes to an action every light that a sample of a point may choose: the lights that are always shaded,
+     * and the lights of the hierarchy that are not under a node of zero importance at the point
+     *
+     * @param p      the shaded point
+     * @param action the action on every light
+     */
+    public void forEachReaching(Point p, Consumer<LightSource> action) {
+        unbounded.forEach(action);
+        if (root != null) forEachReaching(root, p, action);
+    }
+
+    /**
+     * Passes to an action the lights of a node that are not under a node of zero importance at a point
+     *
+     * @param node   the node
+     * @param p      the point
+     * @param action the action on every light
+     */
+    private static void forEachReaching(Node node, Point p, Consumer<LightSource> action) {
+        if (node.light != null) {
+            action.accept(node.light);
+            return;
+        }
+        if (importance(node.left, p) > 0) forEachReaching(node.left, p, action);
+        if (importance(node.right, p) > 0) forEachReaching(node.right, p, action);
+    }
+
+    /**
+     * Estimates the light a node may bring to a point - exactly the intensity of the light at the point for
+     * a leaf, and a bound by the box, the attenuation factors and the cone of the lights for an inner node.
+     * The estimate is positive wherever any light of the node reaches the point, which keeps the sampling
+     * unbiased
+     *
+     * @param node the node
+     * @param p    the point
+     * @return the importance of the node at the point
+     */
+    private static double importance(Node node, Point p) {
+        if (node.light != null) return luminance(node.light.getIntensity(p));
+
+        double x = p.getX(), y = p.getY(), z = p.getZ();
+        double dx = Math.max(0, Math.max(node.min[0] - x, x - node.max[0]));
+        double dy = Math.max(0, Math.max(node.min[1] - y, y - node.max[1]));
+        double dz = Math.max(0, Math.max(node.min[2] - z, z - node.max[2]));
+        double d = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double importance = node.power / Math.max(node.kc + node.kl * d + node.kq * d * d, MIN_ATTENUATION);
+        if (node.omni) return importance;
+
+        // the smallest angle between a spot direction and a direction from the box to the point
+        double cx = (node.min[0] + node.max[0]) / 2, cy = (node.min[1] + node.max[1]) / 2;
+        double cz = (node.min[2] + node.max[2]) / 2;
+        double vx = x - cx, vy = y - cy, vz = z - cz;
+        double distance = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        double hx = node.max[0] - cx, hy = node.max[1] - cy, hz = node.max[2] - cz;
+        double radius = Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (distance <= radius) return importance;
+        double cos = (vx * node.axis.getX() + vy * node.axis.getY() + vz * node.axis.getZ()) / distance;
+        double angle = Math.acos(Math.max(-1, Math.min(1, cos))) - node.spread - Math.asin(radius / distance);
+        if (angle <= 0) return importance;
+        return angle >= Math.PI / 2 ? 0 : importance * Math.cos(angle);
+    }
+
+    /**
+     * Builds the node of some lights
+     *
+     * @param lights the lights, reordered by the splits
+     * @param from   the first light of the node
+     * @param to     the end of the lights of the node
+     * @return the node
+     */
+    private static Node build(PointLight[] lights, int from, int to) {
+        Node node = new Node();
+        double sx = 0, sy = 0, sz = 0;
+        for (int i = from; i < to; ++i) {
+            PointLight light = lights[i];
+            Point position = light.getPosition();
+            for (int c = 0; c < 3; ++c) {
+                node.min[c] = Math.min(node.min[c], coordinate(position, c));
+                node.max[c] = Math.max(node.max[c], coordinate(position, c));
+            }
+            node.power += luminance(light.getIntensity());
+            node.kc = Math.min(node.kc, light.getKC());
+            node.kl = Math.min(node.kl, light.getKL());
+            node.kq = Math.min(node.kq, light.getKQ());
+            if (light instanceof SpotLight spot) {
+                sx += spot.getDirection().getX();
+                sy += spot.getDirection().getY();
+                sz += spot.getDirection().getZ();
+            } else node.omni = true;
+        }
+        if (!node.omni) {
+            if (isZero(Math.sqrt(sx * sx + sy * sy + sz * sz))) node.omni = true;
+            else {
+                node.axis = new Vector(sx, sy, sz).normalize();
+                for (int i = from; i < to; ++i) {
+                    double cos = node.axis.dotProduct(((SpotLight) lights[i]).getDirection());
+                    node.spread = Math.max(node.spread, Math.acos(Math.max(-1, Math.min(1, cos))));
+                }
+            }
+        }
+
+        if (to - from == 1) {
+            node.light = lights[from];
+            return node;
+        }
+        int axis = 0;
+        for (int c = 1; c < 3; ++c)
+            if (node.max[c] - node.min[c] > node.max[axis] - node.min[axis]) axis = c;
+        final int splitAxis = axis;
+        Arrays.sort(lights, from, to, Comparator.comparingDouble(l -> coordinate(l.getPosition(), splitAxis)));
+        int middle = (from + to) / 2;
+        node.left = build(lights, from, middle);
+        node.right = build(lights, middle, to);
+        return node;
+    }
+
+    /**
+     * Returns a coordinate of a point
+     *
+     * @param point the point
+     * @param axis  0, 1 or 2 for X, Y or Z
+     * @return the coordinate
+     */
+    private static double coordinate(Point point, int axis) {
+        return axis == 0 ? point.getX() : axis == 1 ? point.getY() : point.getZ();
+    }
+
+    /**
+     * Returns the brightness of an intensity, the sum of its components
+     *
+     * @param intensity the intensity
+     * @return the brightness
+     */
+    private static double luminance(Color intensity) {
+        Double3 rgb = intensity.getRgb();
+        return rgb.d1() + rgb.d2() + rgb.d3();
+    }
+}
@@ -1,13 +1,12 @@
 package lighting;
 
-import geometries.Plane;
 import primitives.Color;
 import primitives.Point;
+import primitives.Rng;
+import primitives.Sampler;
 import primitives.Vector;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Random;
+import java.io.Serial;
 
 import static primitives.Util.isZero;
 
@@ -17,8 +16,10 @@ import static primitives.Util.isZero;
  * LightSource.
  */
 public class PointLight extends Light implements LightSource {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
-    private final Point position;
+    private Point position;
     private double KC = 1, KL = 0, KQ = 0;
 
 
@@ -28,13 +29,29 @@ public class PointLight extends Light implements LightSource {
      */
     private double size = 0;
     /**
-     * The array of points
+     * The sampler of the light disk, null for the random mirrored pattern
      */
-    protected Point[] points;
+    private Sampler sampler = null;
     /**
-     * A random number
+     * The sample patterns of the unit disk, generated once for the number of points and then only read
      */
-    private final Random rand = new Random();
+    private transient volatile DiskTemplates templates;
+
+    /**
+     * Number of rotations of the unit disk pattern - every hit point uses one of them, so neighbouring
+     * points don't repeat the same pattern
+     */
+    private static final int TEMPLATE_ROTATIONS = 8;
+
+    /**
+     * Rotations of a sample pattern of the unit disk. It is immutable once built, so all the threads may
+     * read it without synchronisation
+     *
+     * @param count     the number of points of a pattern
+     * @param rotations the rotated patterns, each with the points as (x, y) pairs
+     */
+    private record DiskTemplates(int count, double[][] rotations) {
+    }
 
 
     /**
@@ -76,6 +93,19 @@ public class PointLight extends Light implements LightSource {
         return this;
     }
 
+    /**
+     * Sets the sampler of the light disk for soft shadows: the shadow rays are sent to points
+     * of a disk of radius size facing the shaded point, distributed by the sampler
+     *
+     * @param sampler the sampler, null for the random mirrored pattern
+     * @return the updated PointLight object
+     */
+    public PointLight setSampler(Sampler sampler) {
+        this.sampler = sampler;
+        this.templates = null;
+        return this;
+    }
+
     /**
      * Retrieves the vector from the specified point.
      *
@@ -137,6 +167,64 @@ public class PointLight extends Light implements LightSource {
     }
 
 
+    /**
+     * Sets the intensity of the light - a relightable render is updated by relighting it
+     *
+     * @param intensity the new intensity (color) of the light source
+     * @return the updated PointLight object
+     */
+    public PointLight setIntensity(Color intensity) {
+        this.intensity = intensity;
+        return this;
+    }
+
+    /**
+     * Moves the light - a relightable render is updated by relighting it
+     *
+     * @param position the new position of the light source
+     * @return the updated PointLight object
+     */
+    public PointLight setPosition(Point position) {
+        this.position = position;
+        return this;
+    }
+
+    /**
+     * Returns the position of the light.
+     *
+     * @return the position
+     */
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the constant attenuation factor.
+     *
+     * @return the constant attenuation factor
+     */
+    public double getKC() {
+        return KC;
+    }
+
+    /**
+     * Returns the linear attenuation factor.
+     *
+     * @return the linear attenuation factor
+     */
+    public double getKL() {
+        return KL;
+    }
+
+    /**
+     * Returns the quadratic attenuation factor.
+     *
+     * @return the quadratic attenuation factor
+     */
+    public double getKQ() {
+        return KQ;
+    }
+
     /**
      * @param point The point to which the distance is calculated
      * @return the distance
@@ -147,30 +235,118 @@ public class PointLight extends Light implements LightSource {
     }
 
     /**
-     * Get the array of points that will cast shadow rays
+     * Get the points of the light disk that will cast shadow rays: a disk of radius size facing the given
+     * point, with the points of one of the precomputed unit disk patterns (chosen by the point)
      *
-     * @return The array of point
+     * @param p           the shaded point
+     * @param numOfPoints number of points
+     * @return The array of points, null for a light without size
      */
     public Point[] getPoints(Point p, int numOfPoints) {
-        if (size == 0) return null;
-        if (this.points != null)
-            return this.points;
+        double[] buffer = new double[3 * numOfPoints];
+        if (getPoints(p, numOfPoints, buffer) == 0) return null;
         Point[] points = new Point[numOfPoints];
-        Vector to = p.subtract(position).normalize();
-        Vector vX = to.getOrthogonal().normalize();
-        Vector vY = vX.crossProduct(to).normalize();
-        double x, y, radius;
-        for (int i = 0; i < numOfPoints; i += 4) {
-            radius = rand.nextDouble(size) + 0.1;
-            x = rand.nextDouble(radius) + 0.1;
-            y = radius * radius - x * x;//getCircleScale(x, radius);
-            for (int j = 0; j < 4; j++) {
-                //in this part we mirror the point we got 4 times, to each quarter of the grid
-                points[i + j] = position.add(vX.scale(j % 2 == 0 ? x : -x)).add(vY.scale((j <= 1 ? -y : y)));
+        for (int i = 0; i < numOfPoints; ++i)
+            points[i] = new Point(buffer[3 * i], buffer[3 * i + 1], buffer[3 * i + 2]);
+        return points;
+    }
+
+    /**
+     * Get the points of the light disk that will cast shadow rays, as {@link #getPoints(Point, int)} does,
+     * into the coordinates of a caller-owned buffer, without allocating them
+     *
+     * @param p           the shaded point
+     * @param numOfPoints number of points
+     * @param buffer      the buffer of the x, y and z coordinates of the points, at least 3 * numOfPoints long
+     * @return the number of points written, 0 for a light without size
+     */
+    public int getPoints(Point p, int numOfPoints, double[] buffer) {
+        if (size == 0) return 0;
+        double[] template = getTemplates(numOfPoints)
+                .rotations[(int) Long.remainderUnsigned(Rng.key(p.getX(), p.getY(), p.getZ()), TEMPLATE_ROTATIONS)];
+        double px = position.getX(), py = position.getY(), pz = position.getZ();
+
+        // the disk axes, orthogonal to the direction from the light to the point
+        double tx = p.getX() - px, ty = p.getY() - py, tz = p.getZ() - pz;
+        double length = Math.sqrt(tx * tx + ty * ty + tz * tz);
+        if (isZero(length)) {
+            for (int i = 0; i < numOfPoints; ++i) {
+                buffer[3 * i] = px;
+                buffer[3 * i + 1] = py;
+                buffer[3 * i + 2] = pz;
             }
+            return numOfPoints;
         }
-        this.points = points;
-        return points;
+        tx /= length;
+        ty /= length;
+        tz /= length;
+        // the first axis is the direction crossed with the X or Y axis, as in Vector.getOrthogonal
+        double xx, xy, xz;
+        if (Math.abs(tx) < Math.abs(ty)) {
+            xx = 0;
+            xy = tz;
+            xz = -ty;
+        } else {
+            xx = -tz;
+            xy = 0;
+            xz = tx;
+        }
+        double xLength = Math.sqrt(xx * xx + xy * xy + xz * xz);
+        xx /= xLength;
+        xy /= xLength;
+        xz /= xLength;
+        double yx = xy * tz - xz * ty, yy = xz * tx - xx * tz, yz = xx * ty - xy * tx;
+
+        for (int i = 0; i < numOfPoints; ++i) {
+            double x = template[2 * i] * size, y = template[2 * i + 1] * size;
+            buffer[3 * i] = px + x * xx + y * yx;
+            buffer[3 * i + 1] = py + x * xy + y * yy;
+            buffer[3 * i + 2] = pz + x * xz + y * yz;
+        }
+        return numOfPoints;
     }
 
+    /**
+     * Get the unit disk patterns of the given number of points, generating them on the first call
+     * (a thread racing it generates the same patterns)
+     *
+     * @param numOfPoints number of points
+     * @return the patterns
+     */
+    private DiskTemplates getTemplates(int numOfPoints) {
+        DiskTemplates current = templates;
+        if (current != null && current.count() == numOfPoints) return current;
+
+        double[] pattern = new double[2 * numOfPoints];
+        if (sampler != null) {
+            sampler.generate(numOfPoints, 0, pattern);
+            Sampler.toDisk(numOfPoints, pattern);
+        } else {
+            // random circles, every point mirrored to the four quarters of the disk
+            long key = Rng.key(position.getX(), position.getY(), position.getZ());
+            for (int i = 0; i < numOfPoints; i += 4) {
+                double radius = Rng.uniform(key, i, 0);
+                double x = Rng.uniform(key, i, 1) * radius;
+                double y = Math.sqrt(radius * radius - x * x);
+                for (int j = 0; j < 4 && i + j < numOfPoints; j++) {
+                    pattern[2 * (i + j)] = j % 2 == 0 ? x : -x;
+                    pattern[2 * (i + j) + 1] = j <= 1 ? -y : y;
+                }
+            }
+        }
+
+        double[][] rotations = new double[TEMPLATE_ROTATIONS][2 * numOfPoints];
+        for (int r = 0; r < TEMPLATE_ROTATIONS; ++r) {
+            // rotations within a quarter turn, as the mirrored pattern repeats itself after a half turn
+            double angle = Math.PI / 2 * r / TEMPLATE_ROTATIONS;
+            double cos = Math.cos(angle), sin = Math.sin(angle);
+            for (int i = 0; i < 2 * numOfPoints; i += 2) {
+                rotations[r][i] = pattern[i] * cos - pattern[i + 1] * sin;
+                rotations[r][i + 1] = pattern[i] * sin + pattern[i + 1] * cos;
+            }
+        }
+        current = new DiskTemplates(numOfPoints, rotations);
+        templates = current;
+        return current;
+    }
 }
@@ -6,11 +6,15 @@ import primitives.Vector;
 
 import static primitives.Util.alignZero;
 
+import java.io.Serial;
+
 
 /**
  * SpotLight class represents a light source in the scene.
  */
 public class SpotLight extends PointLight {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     private final Vector direction;
     private double narrowBeam = 1;
@@ -63,6 +67,28 @@ public class SpotLight extends PointLight {
         return (SpotLight) super.setKC(KC);
     }
 
+    /**
+     * Sets the intensity of the light - a relightable render is updated by relighting it
+     *
+     * @param intensity the new intensity (color) of the light source
+     * @return the updated SpotLight object
+     */
+    @Override
+    public SpotLight setIntensity(Color intensity) {
+        return (SpotLight) super.setIntensity(intensity);
+    }
+
+    /**
+     * Moves the light - a relightable render is updated by relighting it
+     *
+     * @param position the new position of the light source
+     * @return the updated SpotLight object
+     */
+    @Override
+    public SpotLight setPosition(Point position) {
+        return (SpotLight) super.setPosition(position);
+    }
+
     /**
      * Retrieves the vector from the specified point.
      *
@@ -89,6 +115,15 @@ public class SpotLight extends PointLight {
     }
 
 
+    /**
+     * Returns the direction of the light.
+     *
+     * @return the normalized direction
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
     /**
      * Set the narrow beam value.
      *
@@ -101,10 +136,4 @@ public class SpotLight extends PointLight {
     }
 
 
-    @Override
-    public Point[] getPoints(Point p, int numOfPoints) {
-        return super.getPoints(p.add(direction), numOfPoints);
-    }
-
-
 }
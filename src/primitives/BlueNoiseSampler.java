@@ -0,0 +1,82 @@
+package primitives;
+
+import java.io.Serial;
+
+/**
+ * Blue-noise sampler - points that are random but keep away from each other, with no
+ * clumps and no regular structure.<br/>
+ * A progressive template is built once with Mitchell's best-candidate algorithm on the torus:
+ * every new point is the farthest of several random candidates from the points placed so far,
+ * so any prefix of the template is blue noise as well. A seed selects a random toroidal shift of
+ * the template, which keeps the distances between the points. Counts beyond the template size
+ * continue with the template again under another shift.
+ */
+public class BlueNoiseSampler implements Sampler {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Number of points of the template */
+    private static final int TEMPLATE_SIZE = 256;
+    /** Number of candidates per placed point, relative to the number of points placed so far */
+    private static final int CANDIDATES = 8;
+    /** Seed of the template - it is the same in every run */
+    private static final long TEMPLATE_SEED = 0x5eed_b1e5L;
+
+    /** The template points as (x, y) pairs */
+    private static final double[] TEMPLATE = bestCandidate();
+
+    @Override
+    public void generate(int count, long seed, double[] out) {
+        double shiftX = 0, shiftY = 0;
+        for (int i = 0; i < count; ++i) {
+            int t = i % TEMPLATE_SIZE;
+            if (t == 0) {
+                shiftX = Rng.uniform(seed, i / TEMPLATE_SIZE, 0);
+                shiftY = Rng.uniform(seed, i / TEMPLATE_SIZE, 1);
+            }
+            out[2 * i] = wrap(TEMPLATE[2 * t] + shiftX);
+            out[2 * i + 1] = wrap(TEMPLATE[2 * t + 1] + shiftY);
+        }
+    }
+
+    /**
+     * Builds the progressive best-candidate template
+     *
+     * @return the template points as (x, y) pairs
+     */
+    private static double[] bestCandidate() {
+        double[] points = new double[2 * TEMPLATE_SIZE];
+        points[0] = Rng.uniform(TEMPLATE_SEED, 0, 0);
+        points[1] = Rng.uniform(TEMPLATE_SEED, 0, 1);
+        long candidate = 0;
+        for (int n = 1; n < TEMPLATE_SIZE; ++n) {
+            double best = -1;
+            for (int c = 0; c < CANDIDATES * n; ++c) {
+                double x = Rng.uniform(TEMPLATE_SEED, ++candidate, 0), y = Rng.uniform(TEMPLATE_SEED, candidate, 1);
+                double nearest = Double.MAX_VALUE;
+                for (int k = 0; k < n && nearest > best; ++k) {
+                    double dx = Math.abs(x - points[2 * k]), dy = Math.abs(y - points[2 * k + 1]);
+                    dx = Math.min(dx, 1 - dx);
+                    dy = Math.min(dy, 1 - dy);
+                    nearest = Math.min(nearest, dx * dx + dy * dy);
+                }
+                if (nearest > best) {
+                    best = nearest;
+                    points[2 * n] = x;
+                    points[2 * n + 1] = y;
+                }
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Wraps a number in [0,2) into [0,1)
+     *
+     * @param value the number
+     * @return the fraction of the number
+     */
+    private static double wrap(double value) {
+        return value >= 1 ? value - 1 : value;
+    }
+}
@@ -1,5 +1,7 @@
 package primitives;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -8,7 +10,10 @@ import java.util.Objects;
  * 255. Some additional operations are added that are useful for manipulating
  * light's colors.
  */
-public class Color {
+public class Color implements Serializable {
+   @Serial
+   private static final long serialVersionUID = 1L;
+
    /**
     * The internal fields maintain RGB components as double numbers from 0 to
     * whatever...
@@ -74,6 +79,14 @@ public class Color {
       );
    }
 
+   /**
+    * RGB components getter
+    * @return triad of Red/Green/Blue components
+    */
+   public Double3 getRgb() {
+      return rgb;
+   }
+
    /**
     * Adds multiple colors to this color.
     * @param colors one or more other colors to add
@@ -0,0 +1,47 @@
+package primitives;
+
+import java.io.Serial;
+
+/**
+ * Halton sampler - the low-discrepancy sequence of the radical inverses of the point
+ * index in bases 2 and 3. The seed selects a random toroidal shift of the whole sequence
+ * (Cranley-Patterson rotation), which keeps its low discrepancy.
+ * Any prefix of the sequence is well distributed, so it suits progressive sampling.
+ */
+public class HaltonSampler implements Sampler {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void generate(int count, long seed, double[] out) {
+        double shiftX = Rng.uniform(seed, 0, 0), shiftY = Rng.uniform(seed, 0, 1);
+        for (int i = 0; i < count; ++i) {
+            out[2 * i] = wrap(radicalInverse(i + 1, 2) + shiftX);
+            out[2 * i + 1] = wrap(radicalInverse(i + 1, 3) + shiftY);
+        }
+    }
+
+    /**
+     * The radical inverse of a number - its digits in a base mirrored around the radix point
+     *
+     * @param index the number
+     * @param base  the base
+     * @return the radical inverse in [0,1)
+     */
+    static double radicalInverse(int index, int base) {
+        double result = 0, digitValue = 1d / base;
+        for (; index > 0; index /= base, digitValue /= base)
+            result += (index % base) * digitValue;
+        return result;
+    }
+
+    /**
+     * Wraps a number in [0,2) into [0,1)
+     *
+     * @param value the number
+     * @return the fraction of the number
+     */
+    private static double wrap(double value) {
+        return value >= 1 ? value - 1 : value;
+    }
+}
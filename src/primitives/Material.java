@@ -1,12 +1,18 @@
 // primitives/Material.java
 package primitives;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * Material encapsulates the surface optical properties used in shading:
  * ambient (kA), diffuse (kD), specular (kS), transparency (kT),
  * reflection (kR), and shininess exponent (Phong model).
  */
-public class Material {
+public class Material implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /** Ambient reflection coefficient. */
     private Double3 kA = Double3.ONE;
     /** Diffuse reflection coefficient. */
@@ -1,10 +1,16 @@
 package primitives;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * The {@code Point} class represents a point in a 3D Cartesian coordinate system.
  * Coordinates are stored internally using a {@link Double3} for precision.
  */
-public class Point {
+public class Point implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /**
      * Encapsulates the (x, y, z) coordinates of this point.
      */
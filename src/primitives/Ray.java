@@ -4,6 +4,8 @@ import geometries.Intersectable.GeoPoint;
 import geometries.Intersectable.Intersection;
 import renderer.SimpleRayTracer;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -12,7 +14,10 @@ import java.util.List;
  * Provides utilities for computing points along the ray and
  * finding closest intersections or geo-points.
  */
-public class Ray {
+public class Ray implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     /** The ray’s origin point. */
     private final Point p0;
     /** The ray’s normalized direction vector. */
@@ -28,6 +33,23 @@ public class Ray {
         this.dir = dir.normalize();
     }
 
+    /**
+     * Constructs a ray from an origin and the coordinates of a direction, normalizing the
+     * direction in primitive form - for generating many rays without intermediate vectors.
+     * @param p0 origin point
+     * @param dx direction X coordinate
+     * @param dy direction Y coordinate
+     * @param dz direction Z coordinate
+     * @throws IllegalArgumentException if the direction is zero
+     */
+    public Ray(Point p0, double dx, double dy, double dz) {
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0)
+            throw new IllegalArgumentException("Zero vector is not allowed");
+        this.p0 = p0;
+        this.dir = new Vector(dx / length, dy / length, dz / length);
+    }
+
     /**
      * Constructs a ray whose origin is shifted by ±DELTA along the normal
      * to avoid self-intersection artifacts.
@@ -0,0 +1,65 @@
+package primitives;
+
+/**
+ * Counter-based random numbers - a stateless generator, where every number is a hash
+ * (SplitMix64 mixing) of a key, a sample index and a dimension.<br/>
+ * There is no shared seed to update, so threads never contend on it and nothing is allocated,
+ * and the numbers of a pixel (or of any keyed entity) are the same no matter which thread or
+ * process computes them and in which order.
+ */
+public final class Rng {
+    /** Odd constant of the golden ratio, the increment of SplitMix64 */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** Don't let anyone instantiate this class. */
+    private Rng() {}
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finalizer) - a bijection where every
+     * input bit affects all the output bits
+     *
+     * @param z the number
+     * @return the scrambled number
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Random 64 bits of a key, a sample and a dimension
+     *
+     * @param key       the key, e.g. the pixel index
+     * @param sample    the sample index
+     * @param dimension the dimension of the sample (e.g. 0 for x, 1 for y)
+     * @return the random bits
+     */
+    public static long bits(long key, long sample, int dimension) {
+        return mix(mix(mix(key + GOLDEN_GAMMA) + sample * GOLDEN_GAMMA) + dimension);
+    }
+
+    /**
+     * Random number of a key, a sample and a dimension, uniform in [0,1)
+     *
+     * @param key       the key, e.g. the pixel index
+     * @param sample    the sample index
+     * @param dimension the dimension of the sample (e.g. 0 for x, 1 for y)
+     * @return the random number
+     */
+    public static double uniform(long key, long sample, int dimension) {
+        return (bits(key, sample, dimension) >>> 11) * 0x1p-53;
+    }
+
+    /**
+     * Key of a point in space, e.g. for seeding the samples around the point
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the key
+     */
+    public static long key(double x, double y, double z) {
+        return mix(mix(mix(Double.doubleToLongBits(x)) ^ Double.doubleToLongBits(y)) ^ Double.doubleToLongBits(z));
+    }
+}
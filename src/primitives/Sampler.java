@@ -0,0 +1,46 @@
+package primitives;
+
+import java.io.Serializable;
+
+/**
+ * Generator of 2D sample points in the unit square [0,1)x[0,1), used for sampling
+ * areas such as a pixel (antialiasing) or the disk of a light source (soft shadows).<br/>
+ * The same seed always gives the same points, so renders are reproducible and may be
+ * split between threads. Different seeds (e.g. different pixels) give decorrelated points.
+ */
+public interface Sampler extends Serializable {
+    /**
+     * Generates sample points
+     *
+     * @param count number of points
+     * @param seed  seed of the points
+     * @param out   array receiving the points as (x, y) pairs - at least 2 * count long
+     */
+    void generate(int count, long seed, double[] out);
+
+    /**
+     * Maps points of the unit square onto the unit disk (concentric mapping of Shirley and Chiu),
+     * keeping the relative areas and so the stratification of the points
+     *
+     * @param count number of points
+     * @param points the points as (x, y) pairs, replaced by the disk points
+     */
+    static void toDisk(int count, double[] points) {
+        for (int i = 0; i < 2 * count; i += 2) {
+            double a = 2 * points[i] - 1, b = 2 * points[i + 1] - 1;
+            double r, phi;
+            if (a == 0 && b == 0) {
+                r = 0;
+                phi = 0;
+            } else if (Math.abs(a) > Math.abs(b)) {
+                r = a;
+                phi = Math.PI / 4 * (b / a);
+            } else {
+                r = b;
+                phi = Math.PI / 2 - Math.PI / 4 * (a / b);
+            }
+            points[i] = r * Math.cos(phi);
+            points[i + 1] = r * Math.sin(phi);
+        }
+    }
+}
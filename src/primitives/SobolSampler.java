@@ -0,0 +1,88 @@
+package primitives;
+
+import java.io.Serial;
+
+/**
+ * Sobol sampler - the first two dimensions of the Sobol low-discrepancy sequence, with
+ * nested uniform (Owen) scrambling of both the points and their order, as a hash-based
+ * permutation of the bits (Burley, "Practical Hash-based Owen Scrambling", 2020).<br/>
+ * Every 2^k points (counted from the beginning) form a (0,k,2)-net: each of the 2^k
+ * elementary rectangles of area 2^-k of the unit square contains exactly one point.
+ * The scrambling keeps this property while removing the regular structure of the points.
+ */
+public class SobolSampler implements Sampler {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Direction numbers of the second dimension */
+    private static final int[] DIRECTIONS = new int[32];
+
+    static {
+        DIRECTIONS[0] = 1 << 31;
+        for (int i = 1; i < 32; ++i)
+            DIRECTIONS[i] = DIRECTIONS[i - 1] ^ (DIRECTIONS[i - 1] >>> 1);
+    }
+
+    @Override
+    public void generate(int count, long seed, double[] out) {
+        int seedIndex = hash(seed, 0), seedX = hash(seed, 1), seedY = hash(seed, 2);
+        for (int i = 0; i < count; ++i) {
+            int index = owenScramble(i, seedIndex);
+            out[2 * i] = toUnit(owenScramble(Integer.reverse(index), seedX));
+            out[2 * i + 1] = toUnit(owenScramble(sobol(index), seedY));
+        }
+    }
+
+    /**
+     * The second dimension of the Sobol sequence
+     *
+     * @param index point index
+     * @return the coordinate as a 32 bits fraction
+     */
+    private static int sobol(int index) {
+        int result = 0;
+        for (int bit = 0; index != 0; index >>>= 1, ++bit)
+            if ((index & 1) != 0) result ^= DIRECTIONS[bit];
+        return result;
+    }
+
+    /**
+     * Nested uniform scrambling of a 32 bits fraction - every bit is flipped depending on
+     * the more significant bits only, which is the Owen scrambling
+     *
+     * @param x    the fraction
+     * @param seed scrambling seed
+     * @return the scrambled fraction
+     */
+    private static int owenScramble(int x, int seed) {
+        x = Integer.reverse(x);
+        // Laine-Karras style permutation: every bit depends only on the less significant bits
+        x += seed;
+        x ^= x * 0x6c50b47c;
+        x ^= x * 0xb82f1e52;
+        x ^= x * 0xc7afe638;
+        x ^= x * 0x8d22f6e6;
+        return Integer.reverse(x);
+    }
+
+    /**
+     * Converts a 32 bits fraction to a double in [0,1)
+     *
+     * @param bits the fraction
+     * @return the double value
+     */
+    private static double toUnit(int bits) {
+        return (bits >>> 8) * 0x1p-24;
+    }
+
+    /**
+     * Derives a 32 bits seed of one scrambling from the sampler seed
+     *
+     * @param seed      the sampler seed
+     * @param dimension number of the scrambling
+     * @return the derived seed
+     */
+    private static int hash(long seed, int dimension) {
+        return (int) Rng.bits(seed, 0, dimension);
+    }
+}
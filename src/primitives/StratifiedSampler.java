@@ -0,0 +1,30 @@
+package primitives;
+
+import java.io.Serial;
+
+/**
+ * Stratified (jittered) sampler - the unit square is divided into a grid of about
+ * as many cells as points, and every point is placed randomly inside its own cell.
+ * When the count is not a product of the grid sides, the cells that get a point are chosen randomly.
+ */
+public class StratifiedSampler implements Sampler {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void generate(int count, long seed, double[] out) {
+        int rows = Math.max(1, (int) Math.sqrt(count));
+        int cols = (count + rows - 1) / rows;
+        int cells = rows * cols;
+        // random choice of count cells out of all the cells (partial Fisher-Yates shuffle)
+        int[] order = new int[cells];
+        for (int i = 0; i < cells; ++i) order[i] = i;
+        for (int i = 0; i < count; ++i) {
+            int j = i + (int) (Rng.uniform(seed, i, 2) * (cells - i));
+            int cell = order[j];
+            order[j] = order[i];
+            out[2 * i] = (cell % cols + Rng.uniform(seed, i, 0)) / cols;
+            out[2 * i + 1] = (cell / cols + Rng.uniform(seed, i, 1)) / rows;
+        }
+    }
+}
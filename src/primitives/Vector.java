@@ -2,11 +2,16 @@ package primitives;
 
 import static primitives.Util.isZero;
 
+import java.io.Serial;
+
 /**
  * The {@code Vector} class represents a non-zero vector in 3D Cartesian space.
  * It *extends* Point so that you can use a Vector anywhere a Point is expected.
  */
 public class Vector extends Point {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
     // standard unit axes:
     public static final Vector AXIS_X = new Vector(1, 0, 0);
     public static final Vector AXIS_Y = new Vector(0, 1, 0);
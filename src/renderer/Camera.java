@@ -1,13 +1,24 @@
 package renderer;
 
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
 import primitives.Color;
 import primitives.Point;
 import primitives.Ray;
+import primitives.Rng;
+import primitives.Sampler;
 import primitives.Vector;
 
-import java.util.LinkedList;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -19,7 +30,27 @@ import static primitives.Util.isZero;
  *
  * @author Nethanel Hasid and Ori Meged
  */
-public class Camera implements Cloneable {
+public class Camera implements Cloneable, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Work distribution strategies for multithreaded rendering
+    public enum RenderScheduler {
+        // Threads take one pixel at a time from a shared cursor
+        PIXEL,
+        // Tiles of pixels are rendered as work-stealing fork/join tasks, the rays of a tile traced as one batch
+        // when the pixels allow it (see isBatchable)
+        TILES
+    }
+
+    // Orders in which the tiles of the tile scheduler are rendered
+    public enum TileOrder {
+        // Along a Hilbert curve - consecutive tiles are neighbours
+        HILBERT,
+        // In rings from the image centre outwards
+        SPIRAL
+    }
+
     // Camera position in 3D space
     private Point place;
     // Camera orientation vectors
@@ -27,7 +58,7 @@ public class Camera implements Cloneable {
     // View plane dimensions and distance from camera
     private double height = 0, width = 0, distance = 0;
     // Image writer for output
-    private ImageWriter imageWriter;
+    private transient ImageWriter imageWriter;
     // Ray tracer for rendering
     private RayTracerBase rayTracer;
     // Adaptive anti-aliasing flag
@@ -36,8 +67,71 @@ public class Camera implements Cloneable {
     private int threadsCount = 1;
     // Number of rays per pixel for super sampling
     private int numberOfRays = 1;
+    // Crop window of the rendered pixels (width 0 - the whole image)
+    private int cropX = 0, cropY = 0, cropWidth = 0, cropHeight = 0;
+    // Preview scale - 1, 2, 4 or 8 image pixels per rendered pixel along each axis
+    private int previewScale = 1;
+    // Checkpoint file of the renders (null - no checkpoint)
+    private transient Path checkpoint = null;
+    // Sampler of the pixel area for super sampling (null - the ray tracer's regular grid)
+    private Sampler sampler = null;
+    // Edge-detection prepass flag - only pixels on edges are super sampled
+    private boolean edgeAntialiasing = false;
+    // Dependency tracking flag - renders record the geometries and lights used by every tile
+    private boolean dependencyTracking = false;
+    // Relighting flag - renders keep the primary hits of their samples for relighting after light edits
+    private boolean relighting = false;
+    // Rasterized visibility flag - the closest hits of the rays through the pixel centers are found by rasterization
+    private boolean rasterizedVisibility = false;
+    // The last render of the image, kept for updating it after scene edits (with dependency tracking or relighting)
+    private transient RenderJob lastRender;
+    // Noise target of variance-driven adaptive sampling (0 - disabled)
+    private double noiseTarget = 0;
+    // Minimal number of samples per pixel of variance-driven adaptive sampling
+    private static final int MIN_NOISE_SAMPLES = 4;
     // Number of spare threads to leave unused
     private static final int SPARE_THREADS = 2;
+    // Work distribution strategy for the rendering threads
+    private RenderScheduler scheduler = RenderScheduler.PIXEL;
+    // Tile edge size in pixels for the tile scheduler
+    private int tileSize = 16;
+    // Tile order for the tile scheduler
+    private TileOrder tileOrder = TileOrder.HILBERT;
+
+    // View plane grid of the last resolution rendered
+    private transient volatile ViewPlane viewPlane;
+
+    // The view plane of a resolution in primitive form: the direction from the camera to the center of
+    // pixel (0, 0) and the direction steps of one pixel right and one pixel down, so the direction of
+    // any (fractional) pixel position is found with a few multiplications and no Point/Vector objects
+    private record ViewPlane(int nX, int nY, double x0, double y0, double z0,
+                             double rightX, double rightY, double rightZ,
+                             double downX, double downY, double downZ) {
+        // Constructs the ray through a (fractional) pixel position
+        Ray ray(Point place, double j, double i) {
+            return new Ray(place,
+                    x0 + j * rightX + i * downX,
+                    y0 + j * rightY + i * downY,
+                    z0 + j * rightZ + i * downZ);
+        }
+    }
+
+    // Returns the view plane grid of a resolution, computing it only when the resolution changes
+    private ViewPlane viewPlane(int nX, int nY) {
+        ViewPlane plane = viewPlane;
+        if (plane != null && plane.nX() == nX && plane.nY() == nY) return plane;
+
+        double rx = width / nX, ry = height / nY;
+        double offsetX = -(nX - 1) / 2d * rx, offsetY = (nY - 1) / 2d * ry;
+        plane = new ViewPlane(nX, nY,
+                vTo.getX() * distance + vRight.getX() * offsetX + vUp.getX() * offsetY,
+                vTo.getY() * distance + vRight.getY() * offsetX + vUp.getY() * offsetY,
+                vTo.getZ() * distance + vRight.getZ() * offsetX + vUp.getZ() * offsetY,
+                vRight.getX() * rx, vRight.getY() * rx, vRight.getZ() * rx,
+                -vUp.getX() * ry, -vUp.getY() * ry, -vUp.getZ() * ry);
+        viewPlane = plane;
+        return plane;
+    }
 
     // Private constructor for Builder pattern
     private Camera() {}
@@ -54,37 +148,20 @@ public class Camera implements Cloneable {
 
     // Constructs a single ray through a specific pixel (j, i) on the view plane
     public Ray constructRay(int nX, int nY, int j, int i) {
-        Point pc = place.add(vTo.scale(distance));
-        double rx = width / nX;
-        double ry = height / nY;
-        double xJ = (j - (nX - 1) / 2.0) * rx;
-        double yI = -1 * (i - (nY - 1) / 2.0) * ry;
-
-        Point pij = pc;
-        if (!isZero(xJ)) pij = pij.add(vRight.scale(xJ));
-        if (!isZero(yI)) pij = pij.add(vUp.scale(yI));
-
-        return new Ray(place, pij.subtract(place));
+        return viewPlane(nX, nY).ray(place, j, i);
     }
 
     // Constructs multiple rays for super sampling through a pixel
     public List<Ray> constructRays(int nX, int nY, int j, int i) {
-        Point center = getCenterOfPixel(nX, nY, j, i);
-        List<Ray> rays = new LinkedList<>();
-        double rx = width / nX, ry = height / nY;
-        double subRx = rx / numberOfRays, subRy = ry / numberOfRays;
+        ViewPlane plane = viewPlane(nX, nY);
+        List<Ray> rays = new ArrayList<>(numberOfRays * numberOfRays);
 
         // Generate rays through sub-pixels for super sampling
-        for (int si = 0; si < numberOfRays; si++) {
-            for (int sj = 0; sj < numberOfRays; sj++) {
-                Point subP = center;
-                double x = (sj - (numberOfRays - 1) / 2d) * subRx;
-                double y = -(si - (numberOfRays - 1) / 2d) * subRy;
-                if (!isZero(x)) subP = subP.add(vRight.scale(x));
-                if (!isZero(y)) subP = subP.add(vUp.scale(y));
-                rays.add(new Ray(place, subP.subtract(place)));
-            }
-        }
+        for (int si = 0; si < numberOfRays; si++)
+            for (int sj = 0; sj < numberOfRays; sj++)
+                rays.add(plane.ray(place,
+                        j + (sj - (numberOfRays - 1) / 2d) / numberOfRays,
+                        i + (si - (numberOfRays - 1) / 2d) / numberOfRays));
         return rays;
     }
 
@@ -101,43 +178,388 @@ public class Camera implements Cloneable {
         return p;
     }
 
-    // Renders the image using the current camera configuration
-    public Camera renderImage() {
+    // Creates a render job with the current camera configuration
+    public RenderJob createRenderJob() {
         // Validate camera configuration
         if (place == null || vRight == null || vUp == null || vTo == null ||
                 distance == 0 || width == 0 || height == 0 ||
                 imageWriter == null || rayTracer == null) {
             throw new MissingResourceException("Missing camera data", Camera.class.getName(), null);
         }
+        int nX = imageWriter.getNx(), nY = imageWriter.getNy();
+        if (cropWidth == 0)
+            return new RenderJob(this, nX, nY, threadsCount, scheduler, tileSize, tileOrder,
+                    0, 0, nX, nY, previewScale);
+        if (cropX + cropWidth > nX || cropY + cropHeight > nY)
+            throw new IllegalArgumentException("Crop window is out of the image");
+        return new RenderJob(this, nX, nY, threadsCount, scheduler, tileSize, tileOrder,
+                cropX, cropY, cropWidth, cropHeight, previewScale);
+    }
 
+    // Renders the image using the current camera configuration
+    public Camera renderImage() {
+        RenderJob job = createRenderJob();
+        if (checkpoint != null) job.checkpoint(checkpoint, false, false);
+        if (dependencyTracking) job.trackDependencies();
+        if (relighting)
+            job.relightable(new RelightBuffer(rayTracer, imageWriter.getNx(), imageWriter.getNy(), numberOfRays));
+        if (dependencyTracking || relighting) lastRender = job;
+        return render(job);
+    }
+
+    // Relights the last render after edits of light sources (intensity, position, attenuation...): only the
+    // effects of the changed lights (all the lights if none are given) are computed again, from the kept
+    // primary hits of the samples
+    public Camera relight(LightSource... changed) {
+        if (lastRender == null)
+            throw new IllegalStateException("No render with relighting to update");
         long start = System.nanoTime();
-        // Initialize pixel management for multithreading
-        Pixel.initialize(imageWriter.getNy(), imageWriter.getNx(), 1);
-
-        // Rendering logic for each thread
-        Runnable renderer = () -> {
-            for (Pixel pixel = new Pixel(); pixel.nextPixel(); Pixel.pixelDone()) {
-                Color color = (numberOfRays == 1)
-                        ? rayTracer.traceRays(constructRays(imageWriter.getNx(), imageWriter.getNy(), pixel.col, pixel.row))
-                        : SuperSampling(imageWriter.getNx(), imageWriter.getNy(), pixel.col, pixel.row, numberOfRays, adaptive);
-                imageWriter.writePixel(pixel.col, pixel.row, color);
-            }
-        };
+        lastRender.relight(changed).writeTo(imageWriter);
 
-        // Create and start threads for rendering
-        List<Thread> threads = new LinkedList<>();
-        for (int i = 0; i < threadsCount; i++) {
-            threads.add(new Thread(renderer));
-        }
-        threads.forEach(Thread::start);
-        // Wait for all threads to finish
-        Pixel.waitToFinish();
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Relight time: " + ms + " ms");
+        return this;
+    }
+
+    // Renders again the tiles of the last render that used one of the geometries or light sources edited in
+    // place (materials, emission, light intensities), keeping the other pixels
+    public Camera rerender(Object... changed) {
+        return rerenderTiles(() -> lastRender.rerender(changed));
+    }
+
+    // Renders again the tiles of the last render that used one of the moved geometries, or where a moved
+    // geometry is now in view or shadows a hit, keeping the other pixels. A replaced geometry should be passed
+    // both as removed from the scene and as added, and an added or removed geometry as moved
+    public Camera rerenderMoved(Intersectable... moved) {
+        return rerenderTiles(() -> lastRender.rerenderMoved(moved));
+    }
+
+    // Runs a re-render of some tiles of the last render and writes its image
+    private Camera rerenderTiles(IntSupplier rerender) {
+        if (lastRender == null)
+            throw new IllegalStateException("No render with dependency tracking to update");
+        long start = System.nanoTime();
+        int tiles = rerender.getAsInt();
+        lastRender.writeTo(imageWriter);
+
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Re-render: " + tiles + " tiles in " + ms + " ms");
+        return this;
+    }
+
+    // Resumes a render from its checkpoint file: the tiles recorded in the file are restored,
+    // and the others are rendered (and recorded in the file)
+    public Camera resumeImage(Path checkpointFile) {
+        return render(createRenderJob().checkpoint(checkpointFile, true, false));
+    }
+
+    // Renders the image (or its crop window) with worker processes on this machine: the camera, its ray tracer
+    // and scene are serialized to the workers, which render the tiles leased to them by the coordinator
+    public Camera renderDistributed(int workers, int threadsPerWorker) {
+        if (workers < 1 || threadsPerWorker < 1)
+            throw new IllegalArgumentException("Number of workers and threads must be >= 1");
+        if (previewScale != 1)
+            throw new IllegalArgumentException("Distributed renders are at full resolution");
+        RenderJob job = createRenderJob();
+        int nX = imageWriter.getNx(), nY = imageWriter.getNy();
+        long start = System.nanoTime();
+        RenderCoordinator coordinator = cropWidth == 0
+                ? new RenderCoordinator(this, nX, nY, 0, 0, nX, nY)
+                : new RenderCoordinator(this, nX, nY, cropX, cropY, cropWidth, cropHeight);
+        coordinator.render(workers, threadsPerWorker, job.getFrameBuffer());
+        job.writeTo(imageWriter);
+
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Distributed render time: " + ms + " ms");
+        return this;
+    }
+
+    // Creates the render job of a worker's tile of a distributed render
+    RenderJob createTileJob(int nX, int nY, int threads, int x, int y, int width, int height) {
+        return new RenderJob(this, nX, nY, threads, scheduler, tileSize, tileOrder, x, y, width, height, 1);
+    }
+
+    // Runs a render job and writes its pixels to the image writer
+    private Camera render(RenderJob job) {
+        long start = System.nanoTime();
+        job.run().writeTo(imageWriter);
 
         double ms = (System.nanoTime() - start) / 1_000_000.0;
         System.out.println("Render time: " + ms + " ms");
         return this;
     }
 
+    // Renders the image progressively: one sample per pixel over the whole image first, then one more
+    // sample per pixel in every pass until the time budget is over or maxSamples is reached.
+    // With writeIntermediate, the image is written to disk after every pass (encoded on a virtual thread)
+    public Camera renderProgressive(Duration budget, int maxSamples, boolean writeIntermediate) {
+        checkProgressive(budget, maxSamples);
+        RenderJob job = createRenderJob();
+        if (checkpoint != null) job.checkpoint(checkpoint, false, true);
+        return renderProgressive(job, budget, maxSamples, writeIntermediate);
+    }
+
+    // Resumes a progressive render from its checkpoint file: the accumulated samples of the file are
+    // restored, and the render continues from the first pass that is missing in some tile
+    public Camera resumeProgressive(Path checkpointFile, Duration budget, int maxSamples, boolean writeIntermediate) {
+        checkProgressive(budget, maxSamples);
+        return renderProgressive(createRenderJob().checkpoint(checkpointFile, true, true),
+                budget, maxSamples, writeIntermediate);
+    }
+
+    // Validates the settings of a progressive render
+    private static void checkProgressive(Duration budget, int maxSamples) {
+        if (budget == null || budget.isNegative())
+            throw new IllegalArgumentException("Time budget must not be negative");
+        if (maxSamples < 1)
+            throw new IllegalArgumentException("Number of samples must be >= 1");
+    }
+
+    // Runs a progressive render job, writing intermediate images if required
+    private Camera renderProgressive(RenderJob job, Duration budget, int maxSamples, boolean writeIntermediate) {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] encoding = {CompletableFuture.completedFuture(null)};
+        job.runProgressive(budget, maxSamples, !writeIntermediate ? null : j -> {
+            // skip the intermediate image if the previous one is still being encoded
+            if (!encoding[0].isDone()) return;
+            j.writeTo(imageWriter);
+            encoding[0] = writeToImageAsync();
+        });
+        encoding[0].join();
+        job.writeTo(imageWriter);
+
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Progressive render: " + job.getPasses() + " passes in " + ms + " ms");
+        return this;
+    }
+
+    // Starts rendering the image and returns at once; the image writer is filled when the render succeeds.
+    // Cancelling the future aborts the render, a non-null deadline cancels it when it passes
+    public CompletableFuture<RenderJob> renderImageAsync(Duration deadline) {
+        return createRenderJob().runAsync(deadline, job -> job.writeTo(imageWriter));
+    }
+
+    // Starts rendering the image without a deadline and returns at once
+    public CompletableFuture<RenderJob> renderImageAsync() {
+        return renderImageAsync(null);
+    }
+
+    // Calculates the color of a single pixel
+    // (with adaptive anti-aliasing, the corner samples are shared through the render's corner cache,
+    // and with one ray the hit is taken from the render's visibility buffer when it has one)
+    Color renderPixel(int nX, int nY, int j, int i, CornerCache corners, VisibilityBuffer visibility) {
+        if (numberOfRays == 1) {
+            Ray ray = constructRay(nX, nY, j, i);
+            return rayTracer.shade(primaryHit(ray, j, i, visibility), ray);
+        }
+        if (noiseTarget > 0)
+            return noiseDrivenSampling(nX, nY, j, i);
+        if (corners != null)
+            return adaptiveRegion(nX, nY, j * corners.getResolution(), i * corners.getResolution(),
+                    corners.getResolution(), corners);
+        return sampler != null
+                ? samplerSampling(nX, nY, j, i)
+                : SuperSampling(nX, nY, j, i, numberOfRays, adaptive);
+    }
+
+    // Checks whether the pixels can be rendered in batches (see renderBatch): with a single ray per pixel
+    // traced from scratch, or with the fixed rays of the sampler - and not adaptively
+    boolean isBatchable(CornerCache corners, VisibilityBuffer visibility) {
+        return noiseTarget == 0 && corners == null && (numberOfRays == 1 ? visibility == null : sampler != null);
+    }
+
+    // Calculates the colors of a batch of pixels (e.g. the pixels of a tile), tracing the rays of all of them
+    // as one batch of the ray tracer - the colors are those of renderPixel, for a batchable camera only
+    Color[] renderBatch(int nX, int nY, int[] js, int[] is) {
+        int count = js.length;
+        Ray[] rays = new Ray[count * numberOfRays];
+        if (numberOfRays == 1)
+            for (int p = 0; p < count; ++p)
+                rays[p] = constructRay(nX, nY, js[p], is[p]);
+        else {
+            ViewPlane plane = viewPlane(nX, nY);
+            for (int p = 0; p < count; ++p) {
+                double[] samples = pixelSamples(nX, js[p], is[p], numberOfRays);
+                for (int s = 0; s < numberOfRays; ++s)
+                    rays[p * numberOfRays + s] = plane.ray(place, js[p] + samples[2 * s] - 0.5,
+                            is[p] + samples[2 * s + 1] - 0.5);
+            }
+        }
+        Color[] samples = rayTracer.traceBatch(rays);
+        if (numberOfRays == 1) return samples;
+        Color[] colors = new Color[count];
+        for (int p = 0; p < count; ++p) {
+            Color color = Color.BLACK;
+            for (int s = 0; s < numberOfRays; ++s)
+                color = color.add(samples[p * numberOfRays + s]);
+            colors[p] = color.reduce(numberOfRays);
+        }
+        return colors;
+    }
+
+    // Samples a pixel with numberOfRays rays distributed over its area by the sampler, traced as one batch
+    private Color samplerSampling(int nX, int nY, int j, int i) {
+        double[] samples = pixelSamples(nX, j, i, numberOfRays);
+        ViewPlane plane = viewPlane(nX, nY);
+        Ray[] rays = new Ray[numberOfRays];
+        for (int s = 0; s < numberOfRays; ++s)
+            rays[s] = plane.ray(place, j + samples[2 * s] - 0.5, i + samples[2 * s + 1] - 0.5);
+        Color color = Color.BLACK;
+        for (Color sample : rayTracer.traceBatch(rays))
+            color = color.add(sample);
+        return color.reduce(numberOfRays);
+    }
+
+    // Generates the sample points of a pixel, seeded by the pixel index
+    private double[] pixelSamples(int nX, int j, int i, int count) {
+        double[] samples = new double[2 * count];
+        sampler.generate(count, (long) i * nX + j, samples);
+        return samples;
+    }
+
+    // Traces a ray through a point of the view plane given in (fractional) pixel coordinates
+    private Color traceSample(int nX, int nY, double j, double i) {
+        return rayTracer.traceRay(viewPlane(nX, nY).ray(place, j, i));
+    }
+
+    // Creates the corner sample cache of a render, or returns null if adaptive anti-aliasing is not used.
+    // Pixels are divided into a sub-grid as fine as the minimal region of adaptive super sampling: the recursive
+    // sampling halves a region while it is at least twice pixel / floor(sqrt(rays)) wide, so its finest region is
+    // pixel / highestOneBit(floor(sqrt(rays))) wide (a half pixel for 9 rays, a quarter for 36 and 49 rays).
+    // adaptiveRegion halves its regions exactly, so the resolution must be a power of 2
+    CornerCache createCornerCache(int nX) {
+        return adaptive && numberOfRays > 1 && noiseTarget == 0
+                ? new CornerCache(nX, Integer.highestOneBit((int) Math.sqrt(numberOfRays)))
+                : null;
+    }
+
+    // Adaptive super sampling of a square sub-grid region with its top left corner at (gx, gy):
+    // the region is divided into four while its corner colors differ and it is larger than one sub-grid cell
+    // (its size is a power of 2, so the four halves cover it exactly)
+    private Color adaptiveRegion(int nX, int nY, int gx, int gy, int size, CornerCache corners) {
+        Color c00 = cornerSample(nX, nY, gx, gy, corners);
+        Color c10 = cornerSample(nX, nY, gx + size, gy, corners);
+        Color c01 = cornerSample(nX, nY, gx, gy + size, corners);
+        Color c11 = cornerSample(nX, nY, gx + size, gy + size, corners);
+        if (size == 1 || c00.isAlmostEquals(c10) && c00.isAlmostEquals(c01) && c00.isAlmostEquals(c11))
+            return c00.add(c10, c01, c11).reduce(4);
+
+        int half = size / 2;
+        return adaptiveRegion(nX, nY, gx, gy, half, corners)
+                .add(adaptiveRegion(nX, nY, gx + half, gy, half, corners),
+                        adaptiveRegion(nX, nY, gx, gy + half, half, corners),
+                        adaptiveRegion(nX, nY, gx + half, gy + half, half, corners))
+                .reduce(4);
+    }
+
+    // Returns the color of a sub-grid point, tracing its ray only once per render
+    private Color cornerSample(int nX, int nY, int gx, int gy, CornerCache corners) {
+        double g = corners.getResolution();
+        return corners.get(gx, gy, () -> traceSample(nX, nY, gx / g - 0.5, gy / g - 0.5));
+    }
+
+    // Samples a pixel with jittered rays (or the sampler's points) until the estimated color is within the noise target
+    // or numberOfRays samples were taken
+    private Color noiseDrivenSampling(int nX, int nY, int j, int i) {
+        int maxSamples = numberOfRays;
+        int minSamples = Math.min(MIN_NOISE_SAMPLES, maxSamples);
+        double[] samples = sampler == null ? null : pixelSamples(nX, j, i, maxSamples);
+        PixelEstimator estimator = new PixelEstimator();
+        for (int sample = 0; sample < maxSamples && !estimator.isConverged(noiseTarget, minSamples); ++sample)
+            estimator.add(samples == null
+                    ? renderSample(nX, nY, j, i, sample + 1)
+                    : traceSample(nX, nY, j + samples[2 * sample] - 0.5, i + samples[2 * sample + 1] - 0.5));
+        return estimator.getColor();
+    }
+
+    // Starts a new render of the ray tracer, which drops the state it keeps from the previous render
+    void beginRender() {
+        rayTracer.beginRender();
+    }
+
+    // Checks whether renders run the edge-detection prepass - only when pixels are super sampled
+    boolean isEdgePrepass() {
+        return edgeAntialiasing && numberOfRays > 1;
+    }
+
+    // Checks whether an edited geometry may change a pixel whose rays have not used it: the geometry is hit by
+    // the ray through the pixel center, or it is on the way from the hit of that ray to a light source
+    boolean isAffectedBy(Intersectable geometry, int nX, int nY, int j, int i) {
+        Ray ray = constructRay(nX, nY, j, i);
+        if (geometry.findIntersections(ray) != null) return true;
+        GeoPoint gp = rayTracer.findClosestIntersection(ray);
+        if (gp == null) return false;
+        Vector n = gp.geometry.getNormal(gp.point);
+        for (LightSource light : rayTracer.scene.lights) {
+            Vector l = light.getL(gp.point);
+            // a hit at the position of a point light has no direction to it
+            if (l == null) continue;
+            List<Point> hits = geometry.findIntersections(new Ray(gp.point, l.scale(-1), n));
+            if (hits == null) continue;
+            double distance = light.getDistance(gp.point);
+            for (Point hit : hits)
+                if (hit.distance(gp.point) < distance) return true;
+        }
+        return false;
+    }
+
+    // Renders a pixel with a single ray through its center and records the hit in the geometry buffer at (x, y)
+    Color renderPrepassPixel(int nX, int nY, int j, int i, GBuffer gBuffer, int x, int y, VisibilityBuffer visibility) {
+        Ray ray = constructRay(nX, nY, j, i);
+        GeoPoint gp = primaryHit(ray, j, i, visibility);
+        Color color = rayTracer.shade(gp, ray);
+        gBuffer.record(x, y, ray, gp, color);
+        return color;
+    }
+
+    // Finds the closest hit of the ray through the center of pixel (j, i), by the visibility buffer if there is one
+    private GeoPoint primaryHit(Ray ray, int j, int i, VisibilityBuffer visibility) {
+        return visibility == null ? rayTracer.findClosestIntersection(ray) : visibility.closestHit(j, i, ray);
+    }
+
+    // Rasterizes the primary visibility of a window of the image, or returns null if the render does not use it -
+    // only the rays through the pixel centers use it: renders with one ray per pixel and the edge prepass
+    VisibilityBuffer createVisibilityBuffer(int nX, int nY, int x0, int y0, int width, int height, int threads) {
+        if (!rasterizedVisibility || numberOfRays > 1 && !isEdgePrepass()) return null;
+        return new VisibilityBuffer(rayTracer,
+                new VisibilityBuffer.Projection(place, vTo, vRight, vUp, distance, this.width / nX, this.height / nY, nX, nY),
+                x0, y0, width, height, threads);
+    }
+
+    // Calculates the color of one sample of a pixel for progressive rendering
+    Color renderSample(int nX, int nY, int j, int i, int sample) {
+        return rayTracer.traceRay(sampleRay(nX, nY, j, i, sample));
+    }
+
+    // Constructs the ray of one sample of a pixel: the first sample is through the pixel center, the others
+    // are jittered over the pixel by counter-based random numbers of the pixel and the sample, so they do
+    // not depend on the thread
+    private Ray sampleRay(int nX, int nY, int j, int i, int sample) {
+        double dx = 0, dy = 0;
+        if (sample > 0) {
+            long pixel = (long) i * nX + j;
+            dx = Rng.uniform(pixel, sample, 0) - 0.5;
+            dy = Rng.uniform(pixel, sample, 1) - 0.5;
+        }
+        return viewPlane(nX, nY).ray(place, j + dx, i + dy);
+    }
+
+    // Renders a pixel for relighting: finds the primary hits of its samples (the center ray for a single ray,
+    // else the sampler's points or jittered samples) and keeps them in the relighting buffer
+    Color renderRelightablePixel(int nX, int nY, int j, int i, RelightBuffer buffer) {
+        int count = buffer.getSamples();
+        double[] points = sampler == null || count == 1 ? null : pixelSamples(nX, j, i, count);
+        Ray[] rays = new Ray[count];
+        GeoPoint[] hits = new GeoPoint[count];
+        for (int s = 0; s < count; ++s) {
+            rays[s] = count == 1 ? constructRay(nX, nY, j, i)
+                    : points == null ? sampleRay(nX, nY, j, i, s)
+                    : viewPlane(nX, nY).ray(place, j + points[2 * s] - 0.5, i + points[2 * s + 1] - 0.5);
+            hits[s] = rayTracer.findClosestIntersection(rays[s]);
+        }
+        return buffer.capture(j, i, rays, hits);
+    }
+
     // Performs super sampling or adaptive anti-aliasing for a pixel
     private Color SuperSampling(int nX, int nY, int j, int i, int rays, boolean adaptiveAliasing) {
         Point center = getCenterOfPixel(nX, nY, j, i);
@@ -156,6 +578,11 @@ public class Camera implements Cloneable {
         imageWriter.writeToImage();
     }
 
+    // Encodes and writes the rendered image to disk on a virtual thread
+    public CompletableFuture<Void> writeToImageAsync() {
+        return CompletableFuture.runAsync(imageWriter::writeToImage, RenderJob.VIRTUAL_THREADS);
+    }
+
     // Draws a grid on the image for debugging or visualization
     public Camera printGrid(int interval, Color color) {
         for (int j = 0; j < imageWriter.getNx(); j++)
@@ -228,6 +655,84 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        // Sets the crop window - only the pixels of this rectangle are rendered and written to the image,
+        // the other pixels of the image writer are kept. A width and height of 0 render the whole image
+        public Builder setCropWindow(int x, int y, int width, int height) {
+            if (x < 0 || y < 0 || width < 0 || height < 0 || (width == 0) != (height == 0))
+                throw new IllegalArgumentException("Invalid crop window");
+            camera.cropX = width == 0 ? 0 : x;
+            camera.cropY = height == 0 ? 0 : y;
+            camera.cropWidth = width;
+            camera.cropHeight = height;
+            return this;
+        }
+
+        // Sets the preview scale: 1 renders every pixel, 2, 4 or 8 render one pixel per block of
+        // 2x2, 4x4 or 8x8 pixels and fill the block with its color
+        public Builder setPreviewScale(int scale) {
+            if (scale != 1 && scale != 2 && scale != 4 && scale != 8)
+                throw new IllegalArgumentException("Preview scale must be 1, 2, 4 or 8");
+            camera.previewScale = scale;
+            return this;
+        }
+
+        // Sets the checkpoint file: renders record every completed tile in it, so that a crashed or stopped
+        // render may be continued by resumeImage / resumeProgressive. Checkpointed renders use the tile scheduler.
+        // null disables checkpointing
+        public Builder setCheckpoint(Path file) {
+            camera.checkpoint = file;
+            return this;
+        }
+
+        // Sets the sampler distributing the super sampling rays over the pixel area
+        // (e.g. stratified, Halton, Sobol or blue noise), null for the ray tracer's regular grid
+        public Builder setSampler(Sampler sampler) {
+            camera.sampler = sampler;
+            return this;
+        }
+
+        // Enables or disables the edge-detection prepass: the image is rendered with one ray per pixel
+        // first, and only pixels on geometry, normal, depth or color edges are then super sampled
+        public Builder setEdgeAntialiasing(boolean edgeAntialiasing) {
+            camera.edgeAntialiasing = edgeAntialiasing;
+            return this;
+        }
+
+        // Enables relighting: renders keep the primary hits of their samples, so the image is relit after
+        // light edits without tracing primary rays. Pixels are sampled with the number of rays (the center ray
+        // for one ray, else the sampler's points or jittered samples) - adaptive sampling, the edge prepass and
+        // the noise target are not used
+        public Builder setRelighting(boolean relighting) {
+            camera.relighting = relighting;
+            return this;
+        }
+
+        // Enables rasterized primary visibility: the closest hits of the rays through the pixel centers (one ray
+        // per pixel, or the edge prepass) are found by rasterizing the polygons, triangles and spheres of the scene
+        // into a depth buffer, and the other geometries are ray traced. Shading is not changed. Preview renders
+        // and relighting trace their rays
+        public Builder setRasterizedVisibility(boolean rasterized) {
+            camera.rasterizedVisibility = rasterized;
+            return this;
+        }
+
+        // Enables dependency tracking: renders record the geometries and lights that every tile uses,
+        // so the image may be re-rendered after scene edits by rendering only the affected tiles
+        public Builder setDependencyTracking(boolean tracking) {
+            camera.dependencyTracking = tracking;
+            return this;
+        }
+
+        // Enables variance-driven adaptive sampling: pixels are sampled until the error of their
+        // color is at most the given target (in perceptual units, 0 to 1), up to the number of rays
+        // set by setNumberOfRays. A target of 0 disables it
+        public Builder setNoiseTarget(double target) {
+            if (target < 0 || target > 1)
+                throw new IllegalArgumentException("Noise target must be between 0 and 1");
+            camera.noiseTarget = target;
+            return this;
+        }
+
         // Sets the number of threads for rendering
         public Builder setMultithreading(int threads) {
             if (threads < -2)
@@ -241,6 +746,30 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        // Sets the work distribution strategy for the rendering threads
+        public Builder setScheduler(RenderScheduler scheduler) {
+            if (scheduler == null)
+                throw new IllegalArgumentException("Scheduler must not be null");
+            camera.scheduler = scheduler;
+            return this;
+        }
+
+        // Sets the tile edge size in pixels for the tile scheduler
+        public Builder setTileSize(int size) {
+            if (size < 1)
+                throw new IllegalArgumentException("Tile size must be >= 1");
+            camera.tileSize = size;
+            return this;
+        }
+
+        // Sets the tile order for the tile scheduler
+        public Builder setTileOrder(TileOrder order) {
+            if (order == null)
+                throw new IllegalArgumentException("Tile order must not be null");
+            camera.tileOrder = order;
+            return this;
+        }
+
         // Builds and returns the Camera instance
         public Camera build() {
             if (camera.place == null || camera.vTo == null || camera.vUp == null ||
@@ -249,6 +778,9 @@ public class Camera implements Cloneable {
                 throw new MissingResourceException("Camera is missing required data", Camera.class.getName(), "build");
 
             camera.vRight = camera.vTo.crossProduct(camera.vUp).normalize();
+            // the view plane grid is recomputed on the first ray with the new settings
+            camera.viewPlane = null;
+            camera.lastRender = null;
             return camera;
         }
     }
@@ -0,0 +1,161 @@
+package renderer;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static primitives.Util.isZero;
+
+/**
+ * Camera path of an animation - keyframes of the camera location, direction and (optionally)
+ * view plane distance at given times.<br/>
+ * Between two keyframes the location and the distance are interpolated linearly, and the direction
+ * vectors are interpolated linearly and normalized, with the up vector made orthogonal to the
+ * direction again. The camera should therefore turn less than 180 degrees between two keyframes.
+ * Before the first keyframe and after the last one the camera stays at the keyframe.
+ */
+public class CameraPath {
+    /**
+     * Keyframe of the path
+     *
+     * @param time     keyframe time in seconds
+     * @param location camera location
+     * @param to       normalized direction towards the scene
+     * @param up       normalized up direction, orthogonal to the direction
+     * @param distance view plane distance, 0 if the path does not change it
+     */
+    private record Keyframe(double time, Point location, Vector to, Vector up, double distance) {
+    }
+
+    /** The keyframes in time order */
+    private final List<Keyframe> keyframes = new ArrayList<>();
+
+    /**
+     * Adds a keyframe of the camera location and direction - the view plane distance is the builder's
+     *
+     * @param time     keyframe time in seconds, after the time of the previous keyframe
+     * @param location camera location
+     * @param to       direction towards the scene
+     * @param up       up direction, orthogonal to the direction
+     * @return this path
+     */
+    public CameraPath addKeyframe(double time, Point location, Vector to, Vector up) {
+        return addKeyframe(time, location, to, up, 0);
+    }
+
+    /**
+     * Adds a keyframe of the camera location, direction and view plane distance.
+     * Either all the keyframes of a path have a distance or none of them
+     *
+     * @param time     keyframe time in seconds, after the time of the previous keyframe
+     * @param location camera location
+     * @param to       direction towards the scene
+     * @param up       up direction, orthogonal to the direction
+     * @param distance view plane distance, 0 to keep the distance of the camera builder throughout the path
+     * @return this path
+     */
+    public CameraPath addKeyframe(double time, Point location, Vector to, Vector up, double distance) {
+        if (!keyframes.isEmpty() && time <= keyframes.getLast().time())
+            throw new IllegalArgumentException("Keyframe times must be increasing");
+        if (!isZero(to.dotProduct(up)))
+            throw new IllegalArgumentException("vTo and vUp must be orthogonal");
+        if (distance < 0)
+            throw new IllegalArgumentException("Distance must not be negative");
+        if (!keyframes.isEmpty() && (distance > 0) != (keyframes.getFirst().distance() > 0))
+            throw new IllegalArgumentException("Either all the keyframes have a distance or none of them");
+        keyframes.add(new Keyframe(time, location, to.normalize(), up.normalize(), distance));
+        return this;
+    }
+
+    /**
+     * Time of the first keyframe
+     *
+     * @return the start time in seconds
+     */
+    public double getStartTime() {
+        return keyframe(0).time();
+    }
+
+    /**
+     * Time of the last keyframe
+     *
+     * @return the end time in seconds
+     */
+    public double getEndTime() {
+        return keyframe(keyframes.size() - 1).time();
+    }
+
+    /**
+     * Sets the camera location, direction and view plane distance of a time on a camera builder
+     *
+     * @param builder the camera builder
+     * @param time    time in seconds
+     * @return the camera builder
+     */
+    public Camera.Builder apply(Camera.Builder builder, double time) {
+        Keyframe a = keyframe(0);
+        int next = 1;
+        while (next < keyframes.size() && keyframes.get(next).time() <= time)
+            a = keyframes.get(next++);
+        if (next == keyframes.size() || time <= a.time()) {
+            builder.setLocation(a.location()).setDirection(a.to(), a.up());
+            if (a.distance() > 0) builder.setVpDistance(a.distance());
+            return builder;
+        }
+
+        Keyframe b = keyframes.get(next);
+        double t = (time - a.time()) / (b.time() - a.time());
+        Vector to = lerp(a.to(), b.to(), t).normalize();
+        Vector up = lerp(a.up(), b.up(), t);
+        double projection = up.dotProduct(to);
+        if (!isZero(projection)) up = up.subtract(to.scale(projection));
+        up = up.normalize();
+        builder.setLocation(lerp(a.location(), b.location(), t)).setDirection(to, up);
+        if (a.distance() > 0)
+            builder.setVpDistance(a.distance() + (b.distance() - a.distance()) * t);
+        return builder;
+    }
+
+    /**
+     * Returns a keyframe by its index
+     *
+     * @param index keyframe index
+     * @return the keyframe
+     * @throws IllegalStateException if the path has no keyframes
+     */
+    private Keyframe keyframe(int index) {
+        if (keyframes.isEmpty())
+            throw new IllegalStateException("Camera path has no keyframes");
+        return keyframes.get(index);
+    }
+
+    /**
+     * Linear interpolation of two points
+     *
+     * @param a first point
+     * @param b second point
+     * @param t interpolation parameter (0 - the first point, 1 - the second)
+     * @return the interpolated point
+     */
+    private static Point lerp(Point a, Point b, double t) {
+        return new Point(a.getX() + (b.getX() - a.getX()) * t,
+                a.getY() + (b.getY() - a.getY()) * t,
+                a.getZ() + (b.getZ() - a.getZ()) * t);
+    }
+
+    /**
+     * Linear interpolation of two vectors
+     *
+     * @param a first vector
+     * @param b second vector
+     * @param t interpolation parameter (0 - the first vector, 1 - the second)
+     * @return the interpolated vector
+     */
+    private static Vector lerp(Vector a, Vector b, double t) {
+        return new Vector(a.getX() + (b.getX() - a.getX()) * t,
+                a.getY() + (b.getY() - a.getY()) * t,
+                a.getZ() + (b.getZ() - a.getZ()) * t);
+    }
+}
@@ -0,0 +1,269 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+import primitives.Rng;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Per-render cache of the corner samples of adaptive super sampling.<br/>
+ * Every pixel is divided into a sub-grid of resolution x resolution cells, and the samples
+ * are taken at the integer points of the sub-grid over the whole image, so a corner shared by
+ * neighbouring pixels (or by neighbouring sub-regions of one pixel) has one key and is traced once.
+ * The map is split into lock-striped open-addressing tables of primitive keys and float colors,
+ * so there is no boxing and threads working on different regions rarely meet on a lock.
+ * A sample is traced outside the lock: two threads asking for the same new corner at the same
+ * moment may both trace it, but both get the color that was stored first.<br/>
+ * The memory is bounded by a few rows of pixels, whatever the image height: every stripe keeps two
+ * generations of tables, and when the current one is full it becomes the previous one and the oldest
+ * is dropped. A corner found in the previous generation moves to the current one, so the corners that
+ * the pixels around the rendered region still share stay in the cache. An evicted corner is traced
+ * again if it is needed later, and gets the same color, as the samples are deterministic.
+ */
+class CornerCache {
+    /** Number of lock stripes - a power of 2 */
+    private static final int STRIPES = 64;
+    /** Initial number of slots of every stripe - a power of 2 */
+    private static final int INITIAL_SLOTS = 1024;
+    /** Key of an empty slot */
+    private static final long EMPTY = -1;
+    /** Number of rows of pixels whose sub-grid points fit in the cache */
+    private static final int CACHED_ROWS = 8;
+
+    /**
+     * Open-addressing (linear probing) table of one generation of a stripe
+     */
+    private static class Table {
+        long[] keys = newKeys(INITIAL_SLOTS);
+        float[] colors = new float[3 * INITIAL_SLOTS];
+        int size = 0;
+    }
+
+    /**
+     * The two generations of tables of one stripe
+     */
+    private static class Stripe {
+        Table current = new Table();
+        Table previous = new Table();
+    }
+
+    /** Number of sub-grid cells per pixel along each axis */
+    private final int resolution;
+    /** Number of sub-grid points in a row of the image */
+    private final long rowPoints;
+    /** Largest number of corners in a generation of a stripe */
+    private final int stripeCapacity;
+    private final Stripe[] stripes;
+    /** Added to the keys of the corners - separates the corners of the tiles of {@link #ofTile} */
+    private final long keyOffset;
+
+    /**
+     * Creates an empty cache for an image
+     *
+     * @param nX         number of pixels in a row
+     * @param resolution number of sub-grid cells per pixel along each axis
+     */
+    CornerCache(int nX, int resolution) {
+        this.resolution = resolution;
+        this.rowPoints = (long) nX * resolution + 1;
+        this.stripeCapacity = (int) Math.min(Integer.MAX_VALUE / 8,
+                Math.max(INITIAL_SLOTS / 2, CACHED_ROWS * (resolution + 1) * rowPoints / STRIPES));
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; ++i)
+            stripes[i] = new Stripe();
+        this.keyOffset = 0;
+    }
+
+    /**
+     * Creates a view of a cache with other keys
+     *
+     * @param cache     the cache
+     * @param keyOffset added to the keys of the corners
+     */
+    private CornerCache(CornerCache cache, long keyOffset) {
+        this.resolution = cache.resolution;
+        this.rowPoints = cache.rowPoints;
+        this.stripeCapacity = cache.stripeCapacity;
+        this.stripes = cache.stripes;
+        this.keyOffset = keyOffset;
+    }
+
+    /**
+     * Returns a view of the cache whose corners are shared only by the pixels of one tile - for a render
+     * recording the dependencies of its tiles, where a corner traced by one tile must not be reused by its
+     * neighbour, which would miss the objects that the corner's rays have touched. The views share the
+     * storage of the cache, and a corner on the border of two tiles is stored once for each of them.
+     *
+     * @param tile the tile index
+     * @return the view of the tile
+     */
+    CornerCache ofTile(int tile) {
+        // the sub-grid points of an image are far fewer than 2^40
+        return new CornerCache(this, (long) (tile + 1) << 40);
+    }
+
+    /**
+     * Number of sub-grid cells per pixel along each axis
+     *
+     * @return the sub-grid resolution
+     */
+    int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the color of a sub-grid point, tracing it on the first request
+     *
+     * @param gx     sub-grid column of the point (0 to nX * resolution)
+     * @param gy     sub-grid row of the point (0 to nY * resolution)
+     * @param tracer traces the sample of the point
+     * @return the color of the sample
+     */
+    Color get(int gx, int gy, Supplier<Color> tracer) {
+        long key = gy * rowPoints + gx + keyOffset;
+        long hash = Rng.mix(key);
+        Stripe stripe = stripes[(int) hash & (STRIPES - 1)];
+        int start = (int) (hash >>> 32);
+        synchronized (stripe) {
+            Color color = lookup(stripe, key, start);
+            if (color != null) return color;
+        }
+        Color traced = tracer.get();
+        synchronized (stripe) {
+            Color color = lookup(stripe, key, start);
+            if (color != null) return color;
+            Double3 rgb = traced.getRgb();
+            return insert(stripe, key, start, (float) rgb.d1(), (float) rgb.d2(), (float) rgb.d3());
+        }
+    }
+
+    /**
+     * Finds the color of a key in the current generation of a stripe, or in the previous one - moving it
+     * to the current generation. Must be called holding the stripe's lock
+     *
+     * @param stripe the stripe of the key
+     * @param key    the key
+     * @param start  hash bits of the key for the start slot
+     * @return the color, null if the key is not in the stripe
+     */
+    private Color lookup(Stripe stripe, long key, int start) {
+        Table current = stripe.current;
+        int slot = find(current, key, start);
+        if (current.keys[slot] == key) return color(current, slot);
+        Table previous = stripe.previous;
+        slot = find(previous, key, start);
+        if (previous.keys[slot] != key) return null;
+        return insert(stripe, key, start,
+                previous.colors[3 * slot], previous.colors[3 * slot + 1], previous.colors[3 * slot + 2]);
+    }
+
+    /**
+     * Stores a color in the current generation of a stripe, starting a new generation when the current
+     * one is full. Must be called holding the stripe's lock
+     *
+     * @param stripe the stripe of the key
+     * @param key    the key, not in the current generation
+     * @param start  hash bits of the key for the start slot
+     * @param r      red component
+     * @param g      green component
+     * @param b      blue component
+     * @return the stored color
+     */
+    private Color insert(Stripe stripe, long key, int start, float r, float g, float b) {
+        if (stripe.current.size == stripeCapacity) {
+            stripe.previous = stripe.current;
+            stripe.current = new Table();
+        }
+        Table table = stripe.current;
+        if (2 * (table.size + 1) > table.keys.length) grow(table);
+        int slot = find(table, key, start);
+        table.keys[slot] = key;
+        table.colors[3 * slot] = r;
+        table.colors[3 * slot + 1] = g;
+        table.colors[3 * slot + 2] = b;
+        ++table.size;
+        return color(table, slot);
+    }
+
+    /**
+     * Number of samples in the cache - a corner may be counted in both generations of its stripe
+     *
+     * @return the sample count
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes)
+            synchronized (stripe) {
+                size += stripe.current.size + stripe.previous.size;
+            }
+        return size;
+    }
+
+    /**
+     * Largest number of samples the cache may hold
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return 2 * STRIPES * stripeCapacity;
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it should be inserted
+     *
+     * @param table the table
+     * @param key   the key
+     * @param start hash bits of the key for the start slot
+     * @return the slot index
+     */
+    private static int find(Table table, long key, int start) {
+        int mask = table.keys.length - 1;
+        int slot = start & mask;
+        while (table.keys[slot] != EMPTY && table.keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Doubles a table
+     *
+     * @param table the table
+     */
+    private static void grow(Table table) {
+        long[] oldKeys = table.keys;
+        float[] oldColors = table.colors;
+        table.keys = newKeys(2 * oldKeys.length);
+        table.colors = new float[2 * oldColors.length];
+        for (int i = 0; i < oldKeys.length; ++i)
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(table, oldKeys[i], (int) (Rng.mix(oldKeys[i]) >>> 32));
+                table.keys[slot] = oldKeys[i];
+                System.arraycopy(oldColors, 3 * i, table.colors, 3 * slot, 3);
+            }
+    }
+
+    /**
+     * Creates an array of empty keys
+     *
+     * @param length the array length
+     * @return the array
+     */
+    private static long[] newKeys(int length) {
+        long[] keys = new long[length];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    /**
+     * The color stored in a slot
+     *
+     * @param table the table
+     * @param slot  the slot index
+     * @return the color
+     */
+    private static Color color(Table table, int slot) {
+        return new Color(table.colors[3 * slot], table.colors[3 * slot + 1], table.colors[3 * slot + 2]);
+    }
+}
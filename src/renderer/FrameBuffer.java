@@ -0,0 +1,176 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frame buffer of a single render - the matrix of the rendered pixel colors.
+ * The colors are kept as primitive RGB triads without the upper limit of 255,
+ * and are copied into an {@link ImageWriter} once the render is done.
+ * The buffer also accumulates samples: a pixel color is the average of all the
+ * samples added to it, so progressive renders may refine it pass after pass.
+ * Different threads may write different pixels at the same time.
+ *
+ * @author Nethanel hasid and Ori meged
+ */
+public class FrameBuffer {
+    /** Horizontal resolution - number of pixels in a row */
+    private final int nX;
+    /** Vertical resolution - number of pixels in a column */
+    private final int nY;
+    /** Sums of the Red/Green/Blue components of the pixel samples, three consecutive numbers per pixel */
+    private final double[] rgb;
+    /** Number of samples accumulated in each pixel */
+    private final int[] samples;
+
+    /**
+     * Constructs a black frame buffer
+     *
+     * @param nX number of pixels in a row
+     * @param nY number of pixels in a column
+     */
+    public FrameBuffer(int nX, int nY) {
+        this.nX = nX;
+        this.nY = nY;
+        this.rgb = new double[3 * nX * nY];
+        this.samples = new int[nX * nY];
+    }
+
+    /**
+     * Horizontal resolution
+     *
+     * @return the number of pixels in a row
+     */
+    public int getNx() {
+        return nX;
+    }
+
+    /**
+     * Vertical resolution
+     *
+     * @return the number of pixels in a column
+     */
+    public int getNy() {
+        return nY;
+    }
+
+    /**
+     * Sets the color of a pixel, replacing all its samples
+     *
+     * @param x     X-axis index of the pixel
+     * @param y     Y-axis index of the pixel
+     * @param color the color of the pixel
+     */
+    public void setPixel(int x, int y, Color color) {
+        Double3 c = color.getRgb();
+        int index = 3 * (y * nX + x);
+        rgb[index] = c.d1();
+        rgb[index + 1] = c.d2();
+        rgb[index + 2] = c.d3();
+        samples[y * nX + x] = 1;
+    }
+
+    /**
+     * Adds a sample to the accumulated samples of a pixel
+     *
+     * @param x     X-axis index of the pixel
+     * @param y     Y-axis index of the pixel
+     * @param color the color of the sample
+     */
+    public void addSample(int x, int y, Color color) {
+        Double3 c = color.getRgb();
+        int index = 3 * (y * nX + x);
+        rgb[index] += c.d1();
+        rgb[index + 1] += c.d2();
+        rgb[index + 2] += c.d3();
+        ++samples[y * nX + x];
+    }
+
+    /**
+     * Number of samples accumulated in a pixel
+     *
+     * @param x X-axis index of the pixel
+     * @param y Y-axis index of the pixel
+     * @return the number of samples
+     */
+    public int getSamples(int x, int y) {
+        return samples[y * nX + x];
+    }
+
+    /**
+     * Returns the color of a pixel - the average of its samples
+     *
+     * @param x X-axis index of the pixel
+     * @param y Y-axis index of the pixel
+     * @return the color of the pixel, black if it has no samples
+     */
+    public Color getPixel(int x, int y) {
+        int index = 3 * (y * nX + x);
+        int count = Math.max(1, samples[y * nX + x]);
+        return new Color(rgb[index] / count, rgb[index + 1] / count, rgb[index + 2] / count);
+    }
+
+    /**
+     * Copies all the pixels into an image writer of the same resolution
+     *
+     * @param imageWriter the image writer
+     */
+    public void writeTo(ImageWriter imageWriter) {
+        for (int y = 0; y < nY; ++y)
+            for (int x = 0; x < nX; ++x)
+                imageWriter.writePixel(x, y, getPixel(x, y));
+    }
+
+    /**
+     * Size of the accumulated data of a rectangle of pixels - three color sums and a sample count per pixel
+     *
+     * @param x0 left column (inclusive)
+     * @param y0 top row (inclusive)
+     * @param x1 right column (exclusive)
+     * @param y1 bottom row (exclusive)
+     * @return the size in bytes
+     */
+    static int tileBytes(int x0, int y0, int x1, int y1) {
+        return (x1 - x0) * (y1 - y0) * (3 * Double.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Puts the accumulated data of a rectangle of pixels into a buffer, row by row
+     *
+     * @param buffer the buffer
+     * @param x0     left column (inclusive)
+     * @param y0     top row (inclusive)
+     * @param x1     right column (exclusive)
+     * @param y1     bottom row (exclusive)
+     */
+    void writeTile(ByteBuffer buffer, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; ++y)
+            for (int x = x0; x < x1; ++x) {
+                int pixel = y * nX + x;
+                buffer.putDouble(rgb[3 * pixel]).putDouble(rgb[3 * pixel + 1]).putDouble(rgb[3 * pixel + 2])
+                        .putInt(samples[pixel]);
+            }
+    }
+
+    /**
+     * Replaces the accumulated data of a rectangle of pixels by data from a buffer, row by row
+     *
+     * @param buffer the buffer
+     * @param x0     left column (inclusive)
+     * @param y0     top row (inclusive)
+     * @param x1     right column (exclusive)
+     * @param y1     bottom row (exclusive)
+     */
+    void readTile(ByteBuffer buffer, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; ++y)
+            for (int x = x0; x < x1; ++x) {
+                int pixel = y * nX + x;
+                rgb[3 * pixel] = buffer.getDouble();
+                rgb[3 * pixel + 1] = buffer.getDouble();
+                rgb[3 * pixel + 2] = buffer.getDouble();
+                samples[pixel] = buffer.getInt();
+            }
+    }
+}
@@ -0,0 +1,173 @@
+package renderer;
+
+import geometries.Geometry;
+import geometries.Intersectable.GeoPoint;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Geometry buffer of the edge-detection prepass - for every pixel it keeps what the
+ * primary ray through the pixel centre has hit: the geometry id, the surface normal,
+ * the depth along the ray and the shaded color.<br/>
+ * After the prepass, {@link #detectEdges()} marks the pixels that sit on a discontinuity
+ * with one of their neighbours - a silhouette, a crease, a depth jump or a color edge such
+ * as a shadow boundary - and only those pixels need super sampling.
+ * Different threads may record different pixels at the same time.
+ */
+class GBuffer {
+    /** Geometry id of a pixel whose ray has hit nothing */
+    private static final int BACKGROUND = -1;
+    /** Neighbour normals with a smaller cosine than this (about 25 degrees) form a crease */
+    private static final double NORMAL_COS = 0.9;
+    /** Relative depth difference of neighbours forming a depth discontinuity */
+    private static final double DEPTH_RATIO = 0.05;
+    /** Difference of a perceptual (square root) color channel forming a color edge */
+    private static final double COLOR_DIFFERENCE = 0.05;
+
+    /**
+     * Private copy of the ids a thread has seen in a buffer, so most pixels do not take the registry lock
+     */
+    private record LocalIds(GBuffer owner, Map<Geometry, Integer> ids) {
+    }
+
+    /**
+     * Local ids of the current thread - dropped by {@link #end()} after every tile and every run of a
+     * pixel thread, so the pool threads do not keep the geometries (and the scene) of a finished render
+     */
+    private static final ThreadLocal<LocalIds> LOCAL_IDS = new ThreadLocal<>();
+
+    private final int nX;
+    private final int nY;
+    /** Geometry id of every pixel */
+    private final int[] ids;
+    /** Surface normal of every pixel, three consecutive numbers per pixel */
+    private final float[] normals;
+    /** Distance along the primary ray of every pixel */
+    private final float[] depths;
+    /** Perceptual color of every pixel, three consecutive numbers per pixel */
+    private final float[] colors;
+    /** Ids of the geometries by identity - geometries may override equals */
+    private final Map<Geometry, Integer> registry = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty geometry buffer
+     *
+     * @param nX number of pixels in a row
+     * @param nY number of pixels in a column
+     */
+    GBuffer(int nX, int nY) {
+        this.nX = nX;
+        this.nY = nY;
+        this.ids = new int[nX * nY];
+        this.normals = new float[3 * nX * nY];
+        this.depths = new float[nX * nY];
+        this.colors = new float[3 * nX * nY];
+    }
+
+    /**
+     * Returns the id of a geometry, assigning a new id on its first appearance
+     *
+     * @param geometry the geometry
+     * @return the geometry id
+     */
+    int idOf(Geometry geometry) {
+        LocalIds local = LOCAL_IDS.get();
+        if (local == null || local.owner() != this)
+            LOCAL_IDS.set(local = new LocalIds(this, new IdentityHashMap<>()));
+        Map<Geometry, Integer> ids = local.ids();
+        Integer id = ids.get(geometry);
+        if (id == null) {
+            synchronized (registry) {
+                id = registry.computeIfAbsent(geometry, g -> registry.size());
+            }
+            ids.put(geometry, id);
+        }
+        return id;
+    }
+
+    /**
+     * Drops the local ids of the current thread
+     */
+    static void end() {
+        LOCAL_IDS.remove();
+    }
+
+    /**
+     * Records the primary hit of a pixel
+     *
+     * @param x     X-axis index of the pixel
+     * @param y     Y-axis index of the pixel
+     * @param ray   the primary ray through the pixel centre
+     * @param gp    the closest hit of the ray, null if it hit nothing
+     * @param color the shaded color of the hit
+     */
+    void record(int x, int y, Ray ray, GeoPoint gp, Color color) {
+        int pixel = y * nX + x;
+        if (gp == null) {
+            ids[pixel] = BACKGROUND;
+        } else {
+            ids[pixel] = idOf(gp.geometry);
+            Vector n = gp.geometry.getNormal(gp.point);
+            normals[3 * pixel] = (float) n.getX();
+            normals[3 * pixel + 1] = (float) n.getY();
+            normals[3 * pixel + 2] = (float) n.getZ();
+            depths[pixel] = (float) gp.point.distance(ray.getPoint());
+        }
+        Double3 rgb = color.getRgb();
+        colors[3 * pixel] = perceptual(rgb.d1());
+        colors[3 * pixel + 1] = perceptual(rgb.d2());
+        colors[3 * pixel + 2] = perceptual(rgb.d3());
+    }
+
+    /**
+     * Maps a color channel to a perceptual space - the square root of the channel normalized to [0, 1]
+     *
+     * @param channel the channel value
+     * @return the perceptual value
+     */
+    private static float perceptual(double channel) {
+        return (float) Math.sqrt(Math.min(1, Math.max(0, channel / 255)));
+    }
+
+    /**
+     * Marks the pixels that differ from their right or lower neighbour - both pixels of a
+     * discontinuous pair are marked
+     *
+     * @return edge mask by pixel index (y * nX + x)
+     */
+    boolean[] detectEdges() {
+        boolean[] edges = new boolean[nX * nY];
+        for (int y = 0; y < nY; ++y)
+            for (int x = 0; x < nX; ++x) {
+                int pixel = y * nX + x;
+                if (x + 1 < nX && isDiscontinuous(pixel, pixel + 1))
+                    edges[pixel] = edges[pixel + 1] = true;
+                if (y + 1 < nY && isDiscontinuous(pixel, pixel + nX))
+                    edges[pixel] = edges[pixel + nX] = true;
+            }
+        return edges;
+    }
+
+    /**
+     * Checks whether two neighbour pixels are on different sides of a discontinuity
+     *
+     * @param a index of the first pixel
+     * @param b index of the second pixel
+     * @return true if the pixels are discontinuous
+     */
+    private boolean isDiscontinuous(int a, int b) {
+        if (ids[a] != ids[b]) return true;
+        for (int c = 0; c < 3; ++c)
+            if (Math.abs(colors[3 * a + c] - colors[3 * b + c]) > COLOR_DIFFERENCE) return true;
+        if (ids[a] == BACKGROUND) return false;
+        double cos = normals[3 * a] * normals[3 * b] + normals[3 * a + 1] * normals[3 * b + 1]
+                + normals[3 * a + 2] * normals[3 * b + 2];
+        return cos < NORMAL_COS
+                || Math.abs(depths[a] - depths[b]) > DEPTH_RATIO * Math.min(depths[a], depths[b]);
+    }
+}
@@ -1,124 +1,221 @@
 package renderer;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Pixel is a helper class. It is used for multi-threading in the renderer and
  * for follow up its progress.<br/>
  * There is a main follow up object and several secondary objects - one in each
- * thread.
+ * thread. The main object holds the progress data of a single render, so several
+ * renders may run at the same time, each one with its own main object.
  *
  * @author Dan
  *
  */
 class Pixel {
-    private static int maxRows = 0;
-    private static int maxCols = 0;
-    private static long totalPixels = 0l;
-
-    private static volatile int cRow = 0;
-    private static volatile int cCol = -1;
-    private static volatile long pixels = 0l;
-    private static volatile long last = -1l;
-    private static volatile int lastPrinted = -1;
-
-    private static boolean print = false;
-    private static long printInterval = 100l;
+    private final int maxRows;
+    private final int maxCols;
+    private final long totalPixels;
+
+    private volatile int cRow = 0;
+    private volatile int cCol = -1;
+    private volatile long pixels = 0l;
+    private volatile long last = -1l;
+    private volatile int lastPrinted = -1;
+    private volatile boolean stopped = false;
+    /** Number of the threads rendering pixels of the render, guarded by the pixel lock */
+    private int renderers = 0;
+
+    private final boolean print;
+    private final long printInterval;
     private static final String PRINT_FORMAT = "%5.1f%%\r";
-    private static Object mutexNext = new Object();
-    private static Object mutexPixels = new Object();
+    private final Object mutexNext = new Object();
+    /**
+     * Guards the pixel count - a lock rather than a monitor, so a virtual thread waiting for the render
+     * does not pin its carrier thread
+     */
+    private final ReentrantLock lockPixels = new ReentrantLock();
+    /** Signalled when the last pixel is done, the render is stopped or the last thread is done */
+    private final Condition finished = lockPixels.newCondition();
+
+    /** The main follow up object of this (secondary) object */
+    private final Pixel main;
 
     int row;
     int col;
 
     /**
-     * Initialize pixel data for multi-threading
+     * Initialize a main follow up object for multi-threading
      *
      * @param maxRows  the amount of pixel rows
      * @param maxCols  the amount of pixel columns
      * @param interval print time interval in seconds, 0 if printing is not required
      */
-    static void initialize(int maxRows, int maxCols, double interval) {
-        Pixel.maxRows = maxRows;
-        Pixel.maxCols = maxCols;
-        Pixel.totalPixels = (long) maxRows * maxCols;
-        cRow = 0;
-        cCol = -1;
-        pixels = 0;
-        printInterval = (int) (interval * 1000);
-        print = printInterval != 0;
-        last = -1l;
+    Pixel(int maxRows, int maxCols, double interval) {
+        this.maxRows = maxRows;
+        this.maxCols = maxCols;
+        this.totalPixels = (long) maxRows * maxCols;
+        this.printInterval = (int) (interval * 1000);
+        this.print = printInterval != 0;
+        this.main = this;
+    }
+
+    /**
+     * Initialize a secondary object - for a single thread
+     *
+     * @param main the main follow up object of the render
+     */
+    Pixel(Pixel main) {
+        this.maxRows = main.maxRows;
+        this.maxCols = main.maxCols;
+        this.totalPixels = main.totalPixels;
+        this.printInterval = main.printInterval;
+        this.print = main.print;
+        this.main = main;
     }
 
     /**
      * Function for thread-safe manipulating of main follow up Pixel object - this
-     * function is critical section for all the threads, and static data is the
+     * function is critical section for all the threads, and main object data is the
      * shared data of this critical section.<br/>
      * The function provides next available pixel number each call.
      *
      * @return true if next pixel is allocated, false if there are no more pixels
      */
     public boolean nextPixel() {
-        synchronized (mutexNext) {
-            if (cRow == maxRows)
+        synchronized (main.mutexNext) {
+            if (main.cRow == maxRows)
                 return false;
-            ++cCol;
-            if (cCol < maxCols) {
-                row = cRow;
-                col = cCol;
+            ++main.cCol;
+            if (main.cCol < maxCols) {
+                row = main.cRow;
+                col = main.cCol;
                 return true;
             }
-            cCol = 0;
-            ++cRow;
-            if (cRow < maxRows) {
-                row = cRow;
-                col = cCol;
+            main.cCol = 0;
+            ++main.cRow;
+            if (main.cRow < maxRows) {
+                row = main.cRow;
+                col = main.cCol;
                 return true;
             }
             return false;
         }
     }
 
+    /**
+     * Register the thread of this (secondary) object as rendering pixels - it must call
+     * {@link #threadDone()} when it stops taking pixels
+     */
+    void threadStarted() {
+        main.lockPixels.lock();
+        try {
+            ++main.renderers;
+        } finally {
+            main.lockPixels.unlock();
+        }
+    }
+
+    /**
+     * Unregister the thread of this (secondary) object - it does not render pixels any more
+     */
+    void threadDone() {
+        main.lockPixels.lock();
+        try {
+            if (--main.renderers == 0)
+                main.finished.signalAll();
+        } finally {
+            main.lockPixels.unlock();
+        }
+    }
+
     /**
      * Finish pixel processing
      */
-    static void pixelDone() {
-        synchronized (mutexPixels) {
-            ++pixels;
+    void pixelDone() {
+        main.lockPixels.lock();
+        try {
+            if (++main.pixels == totalPixels)
+                main.finished.signalAll();
+        } finally {
+            main.lockPixels.unlock();
         }
     }
 
     /**
-     * Wait for all pixels to be done and print the progress percentage - must be
-     * run from the main thread
+     * Stop the render - no more pixels are provided, and the waiting main thread
+     * is released as soon as the pixels that are still processed are done
      */
-    public static void waitToFinish() {
+    void stop() {
+        synchronized (main.mutexNext) {
+            main.cRow = maxRows;
+        }
+        main.lockPixels.lock();
+        try {
+            main.stopped = true;
+            main.finished.signalAll();
+        } finally {
+            main.lockPixels.unlock();
+        }
+    }
+
+    /**
+     * Number of pixels that have been finished
+     *
+     * @return the pixel count
+     */
+    long pixelsDone() {
+        return main.pixels;
+    }
+
+    /**
+     * Wait for all pixels to be done (or for the render to be stopped) and print the
+     * progress percentage - must be run from the main thread. The thread is blocked until
+     * the last pixel is done, it wakes up only for printing the progress. A stopped render
+     * is waited for until its threads have finished the pixels they are processing, so
+     * no pixel is written after the method returns.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted - the render is stopped
+     */
+    public void waitToFinish() throws InterruptedException {
         if (print)
             System.out.printf(PRINT_FORMAT, 0d);
 
-        while (last < totalPixels) {
-            printPixel();
-            try {
-                Thread.sleep(printInterval);
-            } catch (InterruptedException ignore) {
-                if (print)
-                    System.out.print("");
+        main.lockPixels.lock();
+        try {
+            while (main.pixels < totalPixels && !main.stopped) {
+                if (print) main.finished.await(printInterval, TimeUnit.MILLISECONDS);
+                else main.finished.await();
+                printPixel();
             }
+            while (main.stopped && main.renderers > 0)
+                main.finished.await();
+        } catch (InterruptedException e) {
+            stop();
+            while (main.renderers > 0)
+                main.finished.awaitUninterruptibly();
+            throw e;
+        } finally {
+            main.lockPixels.unlock();
         }
-        if (print)
+        if (print && !main.stopped)
             System.out.println("100.0%");
     }
 
     /**
      * Print pixel progress percentage
      */
-    public static void printPixel() {
-        long current = pixels;
-        if (print && last != current) {
+    public void printPixel() {
+        long current = main.pixels;
+        if (print && main.last != current) {
             int percentage = (int) (1000l * current / totalPixels);
-            if (lastPrinted != percentage) {
-                last = current;
-                lastPrinted = percentage;
+            if (main.lastPrinted != percentage) {
+                main.last = current;
+                main.lastPrinted = percentage;
                 System.out.println( percentage / 10d + "%");
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+/**
+ * PixelEstimator is a helper class for variance-driven adaptive sampling of a pixel.
+ * It keeps the running mean of the samples' colors, and the running mean and variance
+ * (Welford's algorithm) of every channel in a perceptual space - the square root of the
+ * channel normalized to [0, 1], which is close to the display gamma. Sampling may stop
+ * once the confidence interval of the mean is within the noise target in all the channels,
+ * so flat regions converge after a few samples while edges and soft shadows get more.
+ */
+class PixelEstimator {
+    /** Color channel upper limit used for the perceptual normalization */
+    private static final double MAX_CHANNEL = 255d;
+    /** Z value of the two-sided 95% confidence interval */
+    private static final double CONFIDENCE_Z = 1.96;
+
+    private int count = 0;
+    /** Sum of the samples' colors in linear space */
+    private final double[] sum = new double[3];
+    /** Running mean of every channel in perceptual space */
+    private final double[] mean = new double[3];
+    /** Running sum of squared differences from the mean of every channel in perceptual space */
+    private final double[] m2 = new double[3];
+
+    /**
+     * Adds a sample to the estimator
+     *
+     * @param color the color of the sample
+     */
+    void add(Color color) {
+        Double3 rgb = color.getRgb();
+        ++count;
+        update(0, rgb.d1());
+        update(1, rgb.d2());
+        update(2, rgb.d3());
+    }
+
+    /**
+     * Welford update of a single channel
+     *
+     * @param channel channel index
+     * @param value   channel value of the new sample
+     */
+    private void update(int channel, double value) {
+        sum[channel] += value;
+        double p = Math.sqrt(Math.min(1, Math.max(0, value / MAX_CHANNEL)));
+        double delta = p - mean[channel];
+        mean[channel] += delta / count;
+        m2[channel] += delta * (p - mean[channel]);
+    }
+
+    /**
+     * Number of samples added so far
+     *
+     * @return the sample count
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Checks whether the estimated pixel color is accurate enough - the 95% confidence
+     * half-interval of the perceptual mean is at most the noise target in every channel
+     *
+     * @param noiseTarget allowed error of the mean in perceptual units (0 to 1)
+     * @param minSamples  minimal number of samples before the estimate is trusted
+     * @return true if sampling may stop
+     */
+    boolean isConverged(double noiseTarget, int minSamples) {
+        if (count < Math.max(2, minSamples)) return false;
+        // squared half-interval: z^2 * variance / n, with the sample variance m2 / (n - 1)
+        double limit = noiseTarget * noiseTarget * count * (count - 1) / (CONFIDENCE_Z * CONFIDENCE_Z);
+        return m2[0] <= limit && m2[1] <= limit && m2[2] <= limit;
+    }
+
+    /**
+     * The estimated color of the pixel - the mean of the samples
+     *
+     * @return the mean color, black if there are no samples
+     */
+    Color getColor() {
+        return count == 0 ? Color.BLACK : new Color(sum[0] / count, sum[1] / count, sum[2] / count);
+    }
+}
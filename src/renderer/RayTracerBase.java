@@ -1,10 +1,14 @@
 package renderer;
 
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
 import primitives.Color;
 import primitives.*;
 import primitives.Ray;
 import scene.Scene;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -12,7 +16,9 @@ import java.util.List;
  *
  * @author Ori meged and Nethanel hasid
  */
-public abstract class RayTracerBase {
+public abstract class RayTracerBase implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
 
     /**
@@ -44,6 +50,79 @@ public abstract class RayTracerBase {
      */
     public abstract Color traceRays(List<Ray> rays);
 
+    /**
+     * Traces a batch of rays and computes the color of every ray. Tracers that process the rays of
+     * a batch together (breadth-first) override it; by default every ray is traced on its own.
+     *
+     * @param rays the rays
+     * @return the colors of the rays, in the order of the rays
+     */
+    public Color[] traceBatch(Ray[] rays) {
+        Color[] colors = new Color[rays.length];
+        for (int r = 0; r < rays.length; ++r)
+            colors[r] = traceRay(rays[r]);
+        return colors;
+    }
+
+    /**
+     * Starts a new render of the scene: the state that the tracer keeps across rays (e.g. caches of scene
+     * objects) is dropped, as the scene may have been edited since the previous render. The render jobs call
+     * it before every render and re-render. By default the tracer keeps no such state.
+     */
+    public void beginRender() {
+    }
+
+    /**
+     * Finds the closest intersection of a ray with the geometries of the scene
+     *
+     * @param ray the ray
+     * @return the closest intersection, or null if the ray hits nothing
+     */
+    public GeoPoint findClosestIntersection(Ray ray) {
+        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
+        return intersections == null ? null : ray.findClosestGeoPoint(intersections);
+    }
+
+    /**
+     * Calculates the color of a ray whose closest intersection has already been found,
+     * so that {@link #traceRay(Ray)} is the same as shading the result of {@link #findClosestIntersection(Ray)}
+     *
+     * @param gp  the closest intersection of the ray, or null if the ray hits nothing
+     * @param ray the ray
+     * @return the color of the ray
+     */
+    public abstract Color shade(GeoPoint gp, Ray ray);
+
+    /**
+     * Calculates the color of a primary hit without the effects of the light sources.
+     * For a hit that is {@link #isLightSeparable separable by lights}, its color is this color
+     * plus the {@link #shadeLight effects} of all the light sources.
+     *
+     * @param gp the primary hit
+     * @return the color of the hit without the light sources
+     */
+    public abstract Color shadeUnlit(GeoPoint gp);
+
+    /**
+     * Calculates the effect of a single light source on a primary hit, including its shadow
+     *
+     * @param gp    the primary hit
+     * @param ray   the primary ray
+     * @param n     the surface normal at the hit
+     * @param light the light source
+     * @return the color added by the light source
+     */
+    public abstract Color shadeLight(GeoPoint gp, Ray ray, Vector n, LightSource light);
+
+    /**
+     * Checks whether the color of a primary hit is the sum of its unlit color and the effects of the
+     * light sources - the light sources are not seen through secondary rays (reflection or refraction)
+     *
+     * @param gp the primary hit
+     * @return true if the hit may be relit light by light
+     */
+    public abstract boolean isLightSeparable(GeoPoint gp);
+
     /**
      * Checks the color of the pixel with the help of individual rays and averages between
      * them and only if necessary continues to send beams of rays in recursion
@@ -0,0 +1,293 @@
+package renderer;
+
+import geometries.Geometry;
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geometry buffer of the primary hits of every sample of a render, for relighting the image when
+ * only the light sources change (intensity, position, attenuation...).<br/>
+ * For every sample it keeps the hit point, the surface normal, the ray direction and the geometry id
+ * in primitive arrays, and for every pixel the sum of its samples' colors without the lights and the
+ * sum of every light's effect. Relighting recomputes only the effects of the changed lights - their
+ * diffuse and specular terms and their shadow rays - from the stored hits, with no primary rays.
+ * Samples whose material reflects or refracts see the lights through secondary rays, so they are
+ * shaded again completely on every relight.
+ * Different threads may capture and relight different pixels at the same time.
+ */
+class RelightBuffer {
+    /** Geometry id of a sample that has hit nothing */
+    private static final int BACKGROUND = -1;
+
+    private final RayTracerBase rayTracer;
+    private final int nX;
+    /** Number of samples of every pixel */
+    private final int samples;
+    /** The light sources of the scene when the buffer was created, in scene order */
+    private final LightSource[] lights;
+
+    /** Geometry id of every sample */
+    private final int[] ids;
+    /** Whether the color of every sample is separable by lights (see {@link RayTracerBase#isLightSeparable}) */
+    private final boolean[] separable;
+    /** Hit point of every sample, three consecutive numbers per sample */
+    private final double[] points;
+    /** Surface normal at the hit of every sample, three consecutive numbers per sample */
+    private final float[] normals;
+    /** Ray direction of every sample, three consecutive numbers per sample */
+    private final float[] directions;
+    /** Sum of the unlit colors (and background) of the separable samples of every pixel, three numbers per pixel */
+    private final double[] unlit;
+    /** Sum of every light's effect on the separable samples of every pixel, 3 * lights numbers per pixel */
+    private final double[] lit;
+    /** The geometries by id - copied on every new geometry, so the shading reads it without a lock */
+    private volatile Geometry[] geometries = new Geometry[0];
+    /** Ids of the geometries by identity - geometries may override equals */
+    private final Map<Geometry, Integer> registry = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty buffer of an image
+     *
+     * @param rayTracer the ray tracer shading the samples
+     * @param nX        number of pixels in a row
+     * @param nY        number of pixels in a column
+     * @param samples   number of samples of every pixel
+     */
+    RelightBuffer(RayTracerBase rayTracer, int nX, int nY, int samples) {
+        this.rayTracer = rayTracer;
+        this.nX = nX;
+        this.samples = samples;
+        this.lights = rayTracer.scene.lights.toArray(new LightSource[0]);
+        int count = nX * nY * samples;
+        this.ids = new int[count];
+        this.separable = new boolean[count];
+        this.points = new double[3 * count];
+        this.normals = new float[3 * count];
+        this.directions = new float[3 * count];
+        this.unlit = new double[3 * nX * nY];
+        this.lit = new double[3 * lights.length * nX * nY];
+    }
+
+    /**
+     * Number of samples of every pixel
+     *
+     * @return the sample count
+     */
+    int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Stores the primary hits of the samples of a pixel and shades the pixel
+     *
+     * @param j    X-axis index of the pixel
+     * @param i    Y-axis index of the pixel
+     * @param rays the primary rays of the samples
+     * @param hits the closest hits of the rays, null for a ray that hits nothing
+     * @return the color of the pixel
+     */
+    Color capture(int j, int i, Ray[] rays, GeoPoint[] hits) {
+        int pixel = i * nX + j;
+        double[] base = new double[3];
+        for (int s = 0; s < samples; ++s) {
+            int sample = pixel * samples + s;
+            GeoPoint gp = hits[s];
+            if (gp == null) {
+                ids[sample] = BACKGROUND;
+                add(base, 0, rayTracer.shade(null, rays[s]));
+                continue;
+            }
+            ids[sample] = idOf(gp.geometry);
+            separable[sample] = rayTracer.isLightSeparable(gp);
+            store(points, sample, gp.point);
+            store(normals, sample, gp.geometry.getNormal(gp.point));
+            store(directions, sample, rays[s].getDirection());
+            if (separable[sample]) add(base, 0, rayTracer.shadeUnlit(gp));
+        }
+        System.arraycopy(base, 0, unlit, 3 * pixel, 3);
+        boolean[] all = new boolean[lights.length];
+        Arrays.fill(all, true);
+        return relight(j, i, all);
+    }
+
+    /**
+     * Recomputes the effects of some lights on a pixel and returns its new color
+     *
+     * @param j       X-axis index of the pixel
+     * @param i       Y-axis index of the pixel
+     * @param changed marks of the changed lights by light index
+     * @return the color of the pixel
+     */
+    Color relight(int j, int i, boolean[] changed) {
+        int pixel = i * nX + j;
+        double[] sum = new double[3];
+        add(sum, unlit, 3 * pixel);
+        for (int l = 0; l < lights.length; ++l) {
+            int offset = 3 * (pixel * lights.length + l);
+            if (changed[l]) {
+                double[] effect = new double[3];
+                for (int s = 0; s < samples; ++s) {
+                    int sample = pixel * samples + s;
+                    if (ids[sample] != BACKGROUND && separable[sample])
+                        add(effect, 0, rayTracer.shadeLight(hit(sample), ray(sample), normal(sample), lights[l]));
+                }
+                System.arraycopy(effect, 0, lit, offset, 3);
+            }
+            add(sum, lit, offset);
+        }
+        for (int s = 0; s < samples; ++s) {
+            int sample = pixel * samples + s;
+            if (ids[sample] != BACKGROUND && !separable[sample])
+                add(sum, 0, rayTracer.shade(hit(sample), ray(sample)));
+        }
+        return new Color(sum[0] / samples, sum[1] / samples, sum[2] / samples);
+    }
+
+    /**
+     * Marks the given lights by their index in the buffer
+     *
+     * @param changed the changed lights, all the lights if none are given
+     * @return marks by light index
+     * @throws IllegalStateException    if the lights of the scene have been added or removed
+     * @throws IllegalArgumentException if a light is not in the scene
+     */
+    boolean[] lightMarks(LightSource... changed) {
+        List<LightSource> current = rayTracer.scene.lights;
+        if (current.size() != lights.length)
+            throw new IllegalStateException("Lights were added or removed - the image must be rendered again");
+        for (int l = 0; l < lights.length; ++l)
+            if (current.get(l) != lights[l])
+                throw new IllegalStateException("Lights were replaced - the image must be rendered again");
+        boolean[] marks = new boolean[lights.length];
+        if (changed.length == 0) Arrays.fill(marks, true);
+        for (LightSource light : changed) {
+            int l = 0;
+            while (l < lights.length && lights[l] != light) ++l;
+            if (l == lights.length)
+                throw new IllegalArgumentException("The light is not in the scene");
+            marks[l] = true;
+        }
+        return marks;
+    }
+
+    /**
+     * Returns the id of a geometry, assigning a new id on its first appearance
+     *
+     * @param geometry the geometry
+     * @return the geometry id
+     */
+    private int idOf(Geometry geometry) {
+        synchronized (registry) {
+            return registry.computeIfAbsent(geometry, g -> {
+                Geometry[] table = Arrays.copyOf(geometries, geometries.length + 1);
+                table[table.length - 1] = g;
+                geometries = table;
+                return table.length - 1;
+            });
+        }
+    }
+
+    /**
+     * The stored hit of a sample
+     *
+     * @param sample the sample index
+     * @return the hit
+     */
+    private GeoPoint hit(int sample) {
+        return new GeoPoint(geometries[ids[sample]], new Point(points[3 * sample], points[3 * sample + 1], points[3 * sample + 2]));
+    }
+
+    /**
+     * A ray of the stored direction of a sample - only its direction is used by the shading
+     *
+     * @param sample the sample index
+     * @return the ray
+     */
+    private Ray ray(int sample) {
+        return new Ray(Point.ZERO, vector(directions, sample));
+    }
+
+    /**
+     * The stored surface normal of a sample
+     *
+     * @param sample the sample index
+     * @return the normal
+     */
+    private Vector normal(int sample) {
+        return vector(normals, sample);
+    }
+
+    /**
+     * Reads a stored vector
+     *
+     * @param array  the array of the vectors
+     * @param sample the sample index
+     * @return the vector
+     */
+    private static Vector vector(float[] array, int sample) {
+        return new Vector(array[3 * sample], array[3 * sample + 1], array[3 * sample + 2]);
+    }
+
+    /**
+     * Stores the coordinates of a point
+     *
+     * @param array  the array of the points
+     * @param sample the sample index
+     * @param point  the point
+     */
+    private static void store(double[] array, int sample, Point point) {
+        array[3 * sample] = point.getX();
+        array[3 * sample + 1] = point.getY();
+        array[3 * sample + 2] = point.getZ();
+    }
+
+    /**
+     * Stores the coordinates of a vector
+     *
+     * @param array  the array of the vectors
+     * @param sample the sample index
+     * @param vector the vector
+     */
+    private static void store(float[] array, int sample, Vector vector) {
+        array[3 * sample] = (float) vector.getX();
+        array[3 * sample + 1] = (float) vector.getY();
+        array[3 * sample + 2] = (float) vector.getZ();
+    }
+
+    /**
+     * Adds a color to a sum of three channels
+     *
+     * @param sum    the sum
+     * @param offset offset of the channels in the sum
+     * @param color  the color
+     */
+    private static void add(double[] sum, int offset, Color color) {
+        Double3 rgb = color.getRgb();
+        sum[offset] += rgb.d1();
+        sum[offset + 1] += rgb.d2();
+        sum[offset + 2] += rgb.d3();
+    }
+
+    /**
+     * Adds three channels of an array to a sum
+     *
+     * @param sum    the sum
+     * @param array  the array
+     * @param offset offset of the channels in the array
+     */
+    private static void add(double[] sum, double[] array, int offset) {
+        sum[0] += array[offset];
+        sum[1] += array[offset + 1];
+        sum[2] += array[offset + 2];
+    }
+}
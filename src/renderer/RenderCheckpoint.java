@@ -0,0 +1,326 @@
+package renderer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Checkpoint file of a render, for resuming a crashed or stopped render.<br/>
+ * The file starts with a header (magic number, frame buffer size, tile size and render mode),
+ * followed by two fixed slots per tile. A slot holds the record of a completed pass of its tile:
+ * the tile index, the pass number, the accumulated color sums and sample counts of the tile pixels
+ * and a checksum. A record is written when its tile is done, with a single positional write of a buffer
+ * prepared by the rendering thread, so checkpointing costs about as much as copying the tile, and the
+ * file size does not grow with the passes of a progressive render. The passes of a tile alternate between
+ * its two slots, so writing a pass overwrites the pass before the previous one, and a record torn by a crash
+ * while writing leaves the previous pass of the tile intact. On resume the latest valid record of every tile
+ * is restored into the frame buffer. The random numbers of the render are counter-based, so the pass number
+ * is the whole generator state.
+ */
+class RenderCheckpoint implements Closeable {
+    /** Magic number of a checkpoint file - "RCK2" */
+    private static final int MAGIC = 0x52434B32;
+    /** Header size in bytes - five integers */
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    /** Record header size in bytes - tile index and pass number */
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    /** Record trailer size in bytes - the checksum */
+    private static final int RECORD_TRAILER_BYTES = Integer.BYTES;
+    /** Number of slots of every tile */
+    private static final int SLOTS = 2;
+
+    private final FileChannel channel;
+    private final int nX;
+    private final int nY;
+    private final int tileSize;
+    private final int tilesX;
+    /** Size of a slot in bytes - the record size of a whole tile */
+    private final int slotBytes;
+    /** Latest restored pass of every tile, -1 for a tile without a record */
+    private final int[] tilePasses;
+
+    /**
+     * Creates a checkpoint over an open channel
+     *
+     * @param channel  the file channel
+     * @param nX       frame buffer width
+     * @param nY       frame buffer height
+     * @param tileSize tile edge size
+     */
+    private RenderCheckpoint(FileChannel channel, int nX, int nY, int tileSize) {
+        this.channel = channel;
+        this.nX = nX;
+        this.nY = nY;
+        this.tileSize = tileSize;
+        this.tilesX = (nX + tileSize - 1) / tileSize;
+        this.slotBytes = recordBytes(0, 0, tileSize, tileSize);
+        this.tilePasses = new int[tilesX * ((nY + tileSize - 1) / tileSize)];
+        Arrays.fill(tilePasses, -1);
+    }
+
+    /**
+     * Creates a new checkpoint file, replacing an existing one
+     *
+     * @param path        the file path
+     * @param frame       the frame buffer of the render
+     * @param tileSize    tile edge size
+     * @param progressive whether the render is progressive
+     * @return the checkpoint
+     */
+    static RenderCheckpoint create(Path path, FrameBuffer frame, int tileSize, boolean progressive) {
+        try {
+            FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+            RenderCheckpoint checkpoint = new RenderCheckpoint(channel, frame.getNx(), frame.getNy(), tileSize);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(frame.getNx()).putInt(frame.getNy()).putInt(tileSize)
+                    .putInt(progressive ? 1 : 0).flip();
+            checkpoint.write(header, 0);
+            return checkpoint;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Opens an existing checkpoint file and restores its tiles into the frame buffer.
+     * Further records are written into the slots of the file.
+     *
+     * @param path        the file path
+     * @param frame       the frame buffer of the render
+     * @param tileSize    tile edge size
+     * @param progressive whether the render is progressive
+     * @return the checkpoint
+     * @throws IllegalArgumentException if the file does not belong to a render of these settings
+     */
+    static RenderCheckpoint resume(Path path, FrameBuffer frame, int tileSize, boolean progressive) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, READ, WRITE);
+            RenderCheckpoint checkpoint = new RenderCheckpoint(channel, frame.getNx(), frame.getNy(), tileSize);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            checkpoint.read(header, 0);
+            if (header.position() < HEADER_BYTES || header.getInt(0) != MAGIC
+                    || header.getInt(4) != frame.getNx() || header.getInt(8) != frame.getNy()
+                    || header.getInt(12) != tileSize || header.getInt(16) != (progressive ? 1 : 0))
+                throw new IllegalArgumentException("Checkpoint " + path + " does not match the render");
+            checkpoint.restore(frame);
+            return checkpoint;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the latest valid record of every tile into the frame buffer - a slot that has not been written,
+     * or whose record is partial or torn, is skipped
+     *
+     * @param frame the frame buffer
+     * @throws IOException on a read error
+     */
+    private void restore(FrameBuffer frame) throws IOException {
+        for (int tile = 0; tile < tilePasses.length; ++tile) {
+            int x0 = tileX(tile), y0 = tileY(tile);
+            int x1 = Math.min(x0 + tileSize, nX), y1 = Math.min(y0 + tileSize, nY);
+            ByteBuffer latest = null;
+            for (int slot = 0; slot < SLOTS; ++slot) {
+                ByteBuffer record = ByteBuffer.allocate(recordBytes(x0, y0, x1, y1));
+                read(record, slotPosition(tile, slot));
+                if (record.hasRemaining() || !isValid(record, tile)) continue;
+                int pass = record.getInt(Integer.BYTES);
+                if (pass > tilePasses[tile]) {
+                    tilePasses[tile] = pass;
+                    latest = record;
+                }
+            }
+            if (latest != null)
+                frame.readTile(latest.position(RECORD_HEADER_BYTES), x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Checks that a record read from a slot of a tile is complete and belongs to the tile
+     *
+     * @param record the record, of the record size of the tile
+     * @param tile   the tile index
+     * @return true if the record is valid
+     */
+    private static boolean isValid(ByteBuffer record, int tile) {
+        int end = record.capacity() - RECORD_TRAILER_BYTES;
+        return record.getInt(0) == tile && record.getInt(Integer.BYTES) >= 0 && record.getInt(end) == checksum(record);
+    }
+
+    /**
+     * Checksum of a record - of all its bytes but the trailer
+     *
+     * @param record the record
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(0, record.capacity() - RECORD_TRAILER_BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Index of the tile with the given top left pixel
+     *
+     * @param x0 tile left column
+     * @param y0 tile top row
+     * @return the tile index
+     */
+    int tileIndex(int x0, int y0) {
+        return y0 / tileSize * tilesX + x0 / tileSize;
+    }
+
+    /**
+     * Latest restored pass of a tile
+     *
+     * @param tile the tile index
+     * @return the pass number, -1 if the tile has not been restored
+     */
+    int tilePass(int tile) {
+        return tilePasses[tile];
+    }
+
+    /**
+     * Latest restored pass of the tile of a pixel
+     *
+     * @param x pixel column
+     * @param y pixel row
+     * @return the pass number, -1 if the tile has not been restored
+     */
+    int pixelPass(int x, int y) {
+        return tilePasses[tileIndex(x, y)];
+    }
+
+    /**
+     * First pass not restored in all the tiles
+     *
+     * @return the pass number
+     */
+    int firstIncompletePass() {
+        return Arrays.stream(tilePasses).min().orElse(-1) + 1;
+    }
+
+    /**
+     * Writes the record of a completed tile into its slot for the pass. May be called by several threads
+     * at the same time. The slot holds the pass before the previous one, so the previous pass must have been
+     * flushed by {@link #force()} before writing the tile again.
+     *
+     * @param frame the frame buffer
+     * @param x0    tile left column (inclusive)
+     * @param y0    tile top row (inclusive)
+     * @param x1    tile right column (exclusive)
+     * @param y1    tile bottom row (exclusive)
+     * @param pass  the completed pass
+     */
+    void record(FrameBuffer frame, int x0, int y0, int x1, int y1, int pass) {
+        int tile = tileIndex(x0, y0);
+        ByteBuffer record = ByteBuffer.allocate(recordBytes(x0, y0, x1, y1)).putInt(tile).putInt(pass);
+        frame.writeTile(record, x0, y0, x1, y1);
+        record.putInt(checksum(record)).flip();
+        try {
+            write(record, slotPosition(tile, pass % SLOTS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes the records written so far to the storage device
+     */
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a whole buffer at a file position - the positional writes of several threads do not interfere
+     *
+     * @param buffer   the buffer
+     * @param position the file position
+     * @throws IOException on a write error
+     */
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Reads into a buffer from a file position until the buffer is full or the file ends
+     *
+     * @param buffer   the buffer
+     * @param position the file position
+     * @throws IOException on a read error
+     */
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) return;
+            position += n;
+        }
+    }
+
+    /**
+     * File position of a slot of a tile
+     *
+     * @param tile the tile index
+     * @param slot the slot of the tile
+     * @return the file position
+     */
+    private long slotPosition(int tile, int slot) {
+        return HEADER_BYTES + ((long) tile * SLOTS + slot) * slotBytes;
+    }
+
+    /**
+     * Size of the record of a rectangle of pixels
+     *
+     * @param x0 left column (inclusive)
+     * @param y0 top row (inclusive)
+     * @param x1 right column (exclusive)
+     * @param y1 bottom row (exclusive)
+     * @return the size in bytes
+     */
+    private static int recordBytes(int x0, int y0, int x1, int y1) {
+        return RECORD_HEADER_BYTES + FrameBuffer.tileBytes(x0, y0, x1, y1) + RECORD_TRAILER_BYTES;
+    }
+
+    private int tileX(int tile) {
+        return tile % tilesX * tileSize;
+    }
+
+    private int tileY(int tile) {
+        return tile / tilesX * tileSize;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+            // the original error is reported
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Coordinator of a render distributed over worker processes.<br/>
+ * The coordinator serializes the camera (with its ray tracer and scene) once, starts worker JVMs
+ * ({@link RenderWorker}) on the same machine and leases image tiles to them over localhost sockets.
+ * Every worker renders its tile with its own threads and sends the pixel colors back, and the
+ * coordinator assembles them into a frame buffer. A tile leased to a worker that dies (its connection
+ * breaks) or hangs (the tile is not returned within the lease timeout) is returned to the queue and leased
+ * again to another worker.<br/>
+ * The protocol is plain data over TCP, so workers could connect from other machines as well:
+ * <ul>
+ * <li>coordinator to worker, on connection: image width and height, length of the serialized camera, the camera</li>
+ * <li>coordinator to worker, lease: tile x0, y0, x1, y1 (exclusive ends); x0 = -1 ends the session</li>
+ * <li>worker to coordinator, result: the tile rectangle followed by its pixel colors (r, g, b doubles, row by row)</li>
+ * </ul>
+ */
+public class RenderCoordinator {
+    /** Time to wait for a started worker to connect, in milliseconds */
+    private static final int CONNECT_TIMEOUT = 60_000;
+    /** Default time to wait for the result of a leased tile, in milliseconds - a slower worker is hung */
+    private static final int LEASE_TIMEOUT = 600_000;
+    /** Lease message that ends a worker session */
+    static final int END_OF_LEASES = -1;
+    /** Edge size of a leased tile - large enough for the worker threads to share it */
+    private static final int LEASE_SIZE = 64;
+
+    private final Camera camera;
+    private final int nX;
+    private final int nY;
+    /** The rendered window of the image */
+    private final int cropX, cropY, cropWidth, cropHeight;
+
+    /** Tiles waiting for a lease, as {x0, y0, x1, y1} */
+    private final Deque<int[]> pending = new ArrayDeque<>();
+    /** Number of the tiles that have not been assembled yet */
+    private int remaining;
+    /** Number of the workers whose sessions are still running */
+    private int liveWorkers;
+    /** Connections of the worker sessions, closed when the render is interrupted */
+    private final List<Socket> sockets = new ArrayList<>();
+    /** Set when the render is interrupted - no more tiles are leased */
+    private boolean cancelled = false;
+    /** Lock of the tile queue, the counters and the connections */
+    private final Object mutex = new Object();
+    /** Time to wait for the result of a leased tile, in milliseconds */
+    private int leaseTimeout = LEASE_TIMEOUT;
+
+    /**
+     * Creates a coordinator of a render of a window of the image
+     *
+     * @param camera     the camera to render
+     * @param nX         image width
+     * @param nY         image height
+     * @param cropX      left column of the rendered window
+     * @param cropY      top row of the rendered window
+     * @param cropWidth  width of the rendered window
+     * @param cropHeight height of the rendered window
+     */
+    RenderCoordinator(Camera camera, int nX, int nY, int cropX, int cropY, int cropWidth, int cropHeight) {
+        this.camera = camera;
+        this.nX = nX;
+        this.nY = nY;
+        this.cropX = cropX;
+        this.cropY = cropY;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+    }
+
+    /**
+     * Sets the time to wait for the result of a leased tile - a worker that takes longer is treated as dead
+     *
+     * @param timeout the lease timeout
+     * @return this coordinator
+     */
+    RenderCoordinator setLeaseTimeout(Duration timeout) {
+        leaseTimeout = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis()));
+        return this;
+    }
+
+    /**
+     * Renders the window with worker processes on this machine and waits for the render to finish
+     *
+     * @param workers          number of worker processes
+     * @param threadsPerWorker number of rendering threads of every worker
+     * @param frame            frame buffer of the window receiving the pixels
+     * @throws IllegalStateException if all the workers died before the window was done
+     * @throws CancellationException if the thread is interrupted - the sessions are stopped first, so no
+     *                               pixel is written into the frame buffer any more
+     */
+    void render(int workers, int threadsPerWorker, FrameBuffer frame) {
+        int x1 = cropX + cropWidth, y1 = cropY + cropHeight;
+        for (int y = cropY; y < y1; y += LEASE_SIZE)
+            for (int x = cropX; x < x1; x += LEASE_SIZE)
+                pending.add(new int[]{x, y, Math.min(x + LEASE_SIZE, x1), Math.min(y + LEASE_SIZE, y1)});
+        remaining = pending.size();
+        byte[] cameraBytes = serialize(camera);
+
+        List<Process> processes = new ArrayList<>();
+        List<Thread> sessions = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            for (int i = 0; i < workers; ++i)
+                processes.add(startWorker(server.getLocalPort(), threadsPerWorker));
+            for (int i = 0; i < workers && !isDone(); ++i) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    break; // the remaining workers have not started
+                }
+                socket.setSoTimeout(leaseTimeout);
+                synchronized (mutex) {
+                    ++liveWorkers;
+                    sockets.add(socket);
+                }
+                sessions.add(Thread.ofVirtual().start(() -> session(socket, cameraBytes, frame)));
+            }
+            waitForTiles();
+            for (Thread session : sessions)
+                session.join();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            stopSessions(sessions);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The distributed render was interrupted");
+        } finally {
+            for (Process process : processes)
+                process.destroy();
+        }
+        if (!isDone())
+            throw new IllegalStateException("All the render workers failed, " + remaining + " tiles are missing");
+    }
+
+    /**
+     * Starts a worker JVM with the class path of this JVM
+     *
+     * @param port    coordinator port
+     * @param threads number of rendering threads of the worker
+     * @return the worker process
+     * @throws IOException if the process cannot be started
+     */
+    private static Process startWorker(int port, int threads) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RenderWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(port), Integer.toString(threads))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Serves one worker: sends it the camera and leases it tiles one after the other until
+     * there are no more tiles. If the connection breaks, the leased tile is returned to the queue.
+     *
+     * @param socket      the worker connection
+     * @param cameraBytes the serialized camera
+     * @param frame       the frame buffer receiving the tiles
+     */
+    private void session(Socket socket, byte[] cameraBytes, FrameBuffer frame) {
+        int[] tile = null;
+        try (socket) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeInt(nX);
+            out.writeInt(nY);
+            out.writeInt(cameraBytes.length);
+            out.write(cameraBytes);
+            while ((tile = lease()) != null) {
+                for (int v : tile)
+                    out.writeInt(v);
+                out.flush();
+                readTile(in, tile, frame);
+                tileDone();
+                tile = null;
+            }
+            out.writeInt(END_OF_LEASES);
+            out.flush();
+        } catch (IOException e) {
+            // the worker is dead or hung (a read timeout) - its tile is leased again to another worker
+            if (tile != null) release(tile);
+        } finally {
+            synchronized (mutex) {
+                --liveWorkers;
+                mutex.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Reads the result of a leased tile into the frame buffer of the window
+     *
+     * @param in    the worker input
+     * @param tile  the leased tile
+     * @param frame the frame buffer
+     * @throws IOException if the connection breaks or the result is not of the leased tile
+     */
+    private void readTile(DataInputStream in, int[] tile, FrameBuffer frame) throws IOException {
+        for (int v : tile)
+            if (in.readInt() != v) throw new IOException("Unexpected tile from a worker");
+        for (int y = tile[1]; y < tile[3]; ++y)
+            for (int x = tile[0]; x < tile[2]; ++x)
+                frame.setPixel(x - cropX, y - cropY, new Color(in.readDouble(), in.readDouble(), in.readDouble()));
+    }
+
+    /**
+     * Takes the next tile to lease, waiting while all the tiles are leased to other (live) workers
+     *
+     * @return the tile, or null when all the tiles are done
+     */
+    private int[] lease() {
+        synchronized (mutex) {
+            while (pending.isEmpty() && remaining > 0 && !cancelled) {
+                try {
+                    mutex.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return cancelled ? null : pending.poll();
+        }
+    }
+
+    /**
+     * Returns the tile of a dead worker to the queue
+     *
+     * @param tile the tile
+     */
+    private void release(int[] tile) {
+        synchronized (mutex) {
+            pending.addFirst(tile);
+            mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Counts an assembled tile
+     */
+    private void tileDone() {
+        synchronized (mutex) {
+            if (--remaining == 0) mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Checks whether all the tiles have been assembled
+     *
+     * @return true if the image is done
+     */
+    private boolean isDone() {
+        synchronized (mutex) {
+            return remaining == 0;
+        }
+    }
+
+    /**
+     * Waits until all the tiles are assembled or all the workers are dead
+     *
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private void waitForTiles() throws InterruptedException {
+        synchronized (mutex) {
+            while (remaining > 0 && liveWorkers > 0)
+                mutex.wait();
+            // wake the sessions waiting for a lease that will never come
+            mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the sessions of an interrupted render: no more tiles are leased, the connections are closed,
+     * so the sessions waiting for a result fail at once, and the sessions are joined
+     *
+     * @param sessions the session threads
+     */
+    private void stopSessions(List<Thread> sessions) {
+        synchronized (mutex) {
+            cancelled = true;
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // the session fails with the closed connection anyway
+                }
+            }
+            mutex.notifyAll();
+        }
+        for (Thread session : sessions) {
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    session.join();
+                    joined = true;
+                } catch (InterruptedException ignored) {
+                    // the interrupt status is restored by the caller
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes the camera with its ray tracer and scene
+     *
+     * @param camera the camera
+     * @return the serialized camera
+     */
+    private static byte[] serialize(Camera camera) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(camera);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
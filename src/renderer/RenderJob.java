@@ -0,0 +1,720 @@
+package renderer;
+
+import geometries.Intersectable;
+import lighting.LightSource;
+import primitives.Color;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * A single render of a camera as a first-class object.
+ * <p>
+ * The job owns all the state of the render - its progress and its {@link FrameBuffer} -
+ * so several jobs (of the same camera or of different cameras) may run at the same time
+ * in one JVM. The rendering threads are taken from shared pools that are reused by all the
+ * jobs, instead of starting new threads for each render.
+ * </p>
+ * <p>
+ * A job may also run asynchronously: {@link #runAsync(Duration, Consumer)} returns a future at once,
+ * and the render may be cancelled (by the future or by {@link #cancel()}) or given a deadline.
+ * The CPU work always runs on the bounded shared pools - virtual threads are used only for
+ * coordinating the job and for I/O such as encoding the image.
+ * </p>
+ *
+ * @author Nethanel hasid and Ori meged
+ */
+public class RenderJob {
+    /** Deadline value of a pass that is never stopped for time */
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    /** Shared work-stealing pools by parallelism, reused by all the jobs */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+    /** Virtual threads for coordination and I/O - never for the rendering itself */
+    static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** The camera producing the pixel colors */
+    private final Camera camera;
+    /** The rendered pixels */
+    private final FrameBuffer frame;
+    /** Horizontal resolution of the image */
+    private final int imageNx;
+    /** Vertical resolution of the image */
+    private final int imageNy;
+    /** Left column of the rendered window of the image */
+    private final int cropX;
+    /** Top row of the rendered window of the image */
+    private final int cropY;
+    /** Width of the rendered window of the image */
+    private final int cropWidth;
+    /** Height of the rendered window of the image */
+    private final int cropHeight;
+    /** Preview scale - every frame buffer pixel stands for a scale x scale block of image pixels */
+    private final int scale;
+    /** Number of threads rendering the job */
+    private final int threads;
+    /** Work distribution strategy */
+    private final Camera.RenderScheduler scheduler;
+    /** Tile edge size for the tile scheduler */
+    private final int tileSize;
+    /** Tile order for the tile scheduler */
+    private final Camera.TileOrder tileOrder;
+    /** Checkpoint file of the render, null if the render is not checkpointed */
+    private RenderCheckpoint checkpoint = null;
+    /** Scene dependencies of the tiles, null if the render does not track them */
+    private TileDependencies dependencies = null;
+    /** Geometry buffer of the edge prepass, kept only by a job tracking dependencies */
+    private GBuffer gBuffer = null;
+    /** Primary hits of the samples for relighting, null if the render does not keep them */
+    private RelightBuffer relightBuffer = null;
+    /** Marks of the tiles to render by tile index, null for all the tiles */
+    private boolean[] dirtyTiles = null;
+    /** Number of the pixels rendered so far by the running scheduler */
+    private volatile LongSupplier pixelsDone = () -> 0;
+    /** Number of progressive passes completed so far */
+    private volatile int passes = 0;
+    /** Set when the job is cancelled */
+    private volatile boolean cancelled = false;
+    /** Stops the running scheduler */
+    private volatile Runnable stopScheduler = () -> {};
+
+    /**
+     * Creates a render job of the whole image - the settings are taken from the camera when the job is created
+     *
+     * @param camera    the camera producing the pixel colors
+     * @param nX        number of pixels in a row
+     * @param nY        number of pixels in a column
+     * @param threads   number of rendering threads
+     * @param scheduler work distribution strategy
+     * @param tileSize  tile edge size for the tile scheduler
+     * @param tileOrder tile order for the tile scheduler
+     */
+    RenderJob(Camera camera, int nX, int nY, int threads,
+              Camera.RenderScheduler scheduler, int tileSize, Camera.TileOrder tileOrder) {
+        this(camera, nX, nY, threads, scheduler, tileSize, tileOrder, 0, 0, nX, nY, 1);
+    }
+
+    /**
+     * Creates a render job of a window of the image at a preview scale. The frame buffer holds
+     * one pixel per scale x scale block of the window - the image pixel in the middle of the block,
+     * rendered exactly as in a full render - and the blocks are filled with it when written.
+     *
+     * @param camera     the camera producing the pixel colors
+     * @param nX         number of pixels in a row of the image
+     * @param nY         number of pixels in a column of the image
+     * @param threads    number of rendering threads
+     * @param scheduler  work distribution strategy
+     * @param tileSize   tile edge size for the tile scheduler
+     * @param tileOrder  tile order for the tile scheduler
+     * @param cropX      left column of the rendered window
+     * @param cropY      top row of the rendered window
+     * @param cropWidth  width of the rendered window
+     * @param cropHeight height of the rendered window
+     * @param scale      preview scale (1 for full resolution)
+     */
+    RenderJob(Camera camera, int nX, int nY, int threads,
+              Camera.RenderScheduler scheduler, int tileSize, Camera.TileOrder tileOrder,
+              int cropX, int cropY, int cropWidth, int cropHeight, int scale) {
+        this.camera = camera;
+        this.imageNx = nX;
+        this.imageNy = nY;
+        this.cropX = cropX;
+        this.cropY = cropY;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+        this.scale = scale;
+        this.frame = new FrameBuffer((cropWidth + scale - 1) / scale, (cropHeight + scale - 1) / scale);
+        this.threads = threads;
+        this.scheduler = scheduler;
+        this.tileSize = tileSize;
+        this.tileOrder = tileOrder;
+    }
+
+    /**
+     * Returns the shared pool of a given parallelism, creating it on first use.
+     * The parallelism is bounded by the number of available processors.
+     *
+     * @param parallelism number of threads of the pool
+     * @return the shared pool
+     */
+    static ForkJoinPool sharedPool(int parallelism) {
+        return POOLS.computeIfAbsent(Math.min(parallelism, Runtime.getRuntime().availableProcessors()),
+                ForkJoinPool::new);
+    }
+
+    /**
+     * Makes the render write a checkpoint file, or resume from one. A checkpointed render uses the
+     * tile scheduler, as the tiles are the units of the checkpoint. Must be called before running the job.
+     *
+     * @param path        the checkpoint file
+     * @param resume      true for restoring the completed tiles of the file and continuing it,
+     *                    false for starting a new file
+     * @param progressive whether the job is run progressively
+     * @return this job
+     */
+    RenderJob checkpoint(Path path, boolean resume, boolean progressive) {
+        checkpoint = resume
+                ? RenderCheckpoint.resume(path, frame, tileSize, progressive)
+                : RenderCheckpoint.create(path, frame, tileSize, progressive);
+        return this;
+    }
+
+    /**
+     * Renders one pixel (or one sample of a pixel) of a pass over the image
+     */
+    @FunctionalInterface
+    private interface PixelTask {
+        void render(int x, int y);
+    }
+
+    /**
+     * Renders all the pixels into the frame buffer and waits for the render to finish.
+     * When the camera runs the edge-detection prepass, the image is rendered with one ray
+     * per pixel first, and then only the pixels on edges are rendered again with super sampling.
+     * If the job is cancelled the method returns as soon as the pixels in progress are done.
+     *
+     * @return this job
+     * @throws CancellationException if the thread is interrupted while waiting - the job is cancelled
+     */
+    public RenderJob run() {
+        try {
+            renderPixels();
+            return this;
+        } finally {
+            if (checkpoint != null) checkpoint.close();
+        }
+    }
+
+    /**
+     * Renders the pixels of the tiles to render (all the tiles, or the dirty ones of a re-render)
+     * into the frame buffer, with the edge-detection prepass when the camera runs it. The ray tracer starts
+     * a new render first, as the scene may have been edited since its previous render
+     */
+    private void renderPixels() {
+        camera.beginRender();
+        if (relightBuffer != null) {
+            renderPass((x, y) -> frame.setPixel(x, y, camera.renderRelightablePixel(
+                    imageNx, imageNy, imageX(x), imageY(y), relightBuffer)), NO_DEADLINE, 1, 0);
+            return;
+        }
+        CornerCache corners = camera.createCornerCache(imageNx);
+        // a preview renders only some pixels of the window, so it is not worth rasterizing
+        VisibilityBuffer visibility = scale > 1 ? null
+                : camera.createVisibilityBuffer(imageNx, imageNy, cropX, cropY, cropWidth, cropHeight, threads);
+        if (!camera.isEdgePrepass()) {
+            // the tile scheduler traces the rays of a whole tile as one batch when the camera allows it
+            TileScheduler.TileRenderer batch = camera.isBatchable(corners, visibility) ? this::renderBatch : null;
+            renderPass((x, y) -> frame.setPixel(x, y, camera.renderPixel(imageNx, imageNy, imageX(x), imageY(y),
+                    cornersOf(corners, x, y), visibility)), batch, NO_DEADLINE, 1, 0);
+            return;
+        }
+        // Edge-detection prepass: one ray per pixel, then super sampling of the edge pixels only.
+        // The prepass covers the restored tiles too (for the edges between tiles) without changing them.
+        // A job tracking dependencies keeps its geometry buffer, so a re-render compares the dirty
+        // tiles with their clean neighbours
+        GBuffer pixels = gBuffer != null ? gBuffer : new GBuffer(frame.getNx(), frame.getNy());
+        if (dependencies != null) gBuffer = pixels;
+        renderPass((x, y) -> {
+            Color color = camera.renderPrepassPixel(imageNx, imageNy, imageX(x), imageY(y), pixels, x, y,
+                    visibility);
+            if (checkpoint == null || checkpoint.pixelPass(x, y) < 0) frame.setPixel(x, y, color);
+        }, NO_DEADLINE, 0, -1);
+        if (cancelled) return;
+        boolean[] edges = pixels.detectEdges();
+        renderPass((x, y) -> {
+            if (edges[y * frame.getNx() + x])
+                frame.setPixel(x, y, camera.renderPixel(imageNx, imageNy, imageX(x), imageY(y),
+                        cornersOf(corners, x, y), null));
+        }, NO_DEADLINE, 1, 0);
+    }
+
+    /**
+     * The corner cache of a frame buffer pixel. A job tracking dependencies shares the corners only among
+     * the pixels of a tile (see {@link CornerCache#ofTile}), as the rays of a corner are recorded in the
+     * dependencies of the tile that traces it
+     *
+     * @param corners the corner cache of the render, may be null
+     * @param x       frame buffer column
+     * @param y       frame buffer row
+     * @return the corner cache of the pixel
+     */
+    private CornerCache cornersOf(CornerCache corners, int x, int y) {
+        return corners == null || dependencies == null ? corners : corners.ofTile(dependencies.tileIndex(x, y));
+    }
+
+    /**
+     * Makes the render keep the primary hits of its samples for relighting. Must be called before running the job.
+     *
+     * @param buffer the buffer of the primary hits
+     * @return this job
+     */
+    RenderJob relightable(RelightBuffer buffer) {
+        relightBuffer = buffer;
+        return this;
+    }
+
+    /**
+     * Relights the frame buffer after edits of light sources: the effects of the changed lights are
+     * computed again from the kept primary hits, with no primary rays
+     *
+     * @param changed the changed light sources, all the lights if none are given
+     * @return this job
+     * @throws IllegalStateException if the job has not kept its primary hits
+     */
+    RenderJob relight(LightSource... changed) {
+        if (relightBuffer == null)
+            throw new IllegalStateException("The render has not kept its primary hits");
+        boolean[] marks = relightBuffer.lightMarks(changed);
+        checkpoint = null;
+        camera.beginRender();
+        renderPass((x, y) -> frame.setPixel(x, y, relightBuffer.relight(imageX(x), imageY(y), marks)),
+                NO_DEADLINE, 0, -1);
+        return this;
+    }
+
+    /**
+     * Makes the render record the scene dependencies of every tile, for re-rendering after scene edits.
+     * A job tracking dependencies uses the tile scheduler, as the tiles are the units of the dependencies.
+     * Must be called before running the job.
+     *
+     * @return this job
+     */
+    RenderJob trackDependencies() {
+        dependencies = new TileDependencies(frame.getNx(), frame.getNy(), tileSize);
+        return this;
+    }
+
+    /**
+     * Renders again the tiles affected by geometries or light sources edited in place (materials,
+     * emission, light intensities), keeping the other pixels of the frame buffer. The affected tiles
+     * are those whose rays have used an edited object in the previous render.
+     *
+     * @param changed the edited geometries and light sources
+     * @return the number of tiles rendered again
+     * @throws IllegalStateException if the job has not tracked dependencies
+     */
+    int rerender(Object... changed) {
+        return rerenderTiles(dependentTiles(changed));
+    }
+
+    /**
+     * Renders again the tiles affected by moved, added or removed geometries, keeping the other pixels
+     * of the frame buffer. The affected tiles are those whose rays have used a moved geometry in the
+     * previous render, and those where a moved geometry is now hit by the ray through a pixel centre or
+     * shadows its hit (a geometry moved into view or into the light) - only the tiles not already affected
+     * are probed for these. Reflections of a moved geometry on tiles that did not use it before are not found.
+     *
+     * @param moved the moved geometries
+     * @return the number of tiles rendered again
+     * @throws IllegalStateException if the job has not tracked dependencies
+     */
+    int rerenderMoved(Intersectable... moved) {
+        boolean[] dirty = dependentTiles((Object[]) moved);
+        for (Intersectable geometry : moved)
+            markAffected(geometry, dirty);
+        return rerenderTiles(dirty);
+    }
+
+    /**
+     * Marks the tiles whose rays have used one of the edited objects in the previous render
+     *
+     * @param changed the edited geometries and light sources
+     * @return the marks by tile index
+     * @throws IllegalStateException if the job has not tracked dependencies
+     */
+    private boolean[] dependentTiles(Object... changed) {
+        if (dependencies == null)
+            throw new IllegalStateException("The render has not tracked its dependencies");
+        return dependencies.dependents(changed);
+    }
+
+    /**
+     * Renders again the marked tiles, recording their new dependencies
+     *
+     * @param dirty the marks by tile index
+     * @return the number of tiles rendered again
+     */
+    private int rerenderTiles(boolean[] dirty) {
+        checkpoint = null;
+        int count = 0;
+        for (int tile = 0; tile < dirty.length; ++tile)
+            if (dirty[tile]) {
+                dependencies.clear(tile);
+                ++count;
+            }
+        if (count == 0) return 0;
+        dirtyTiles = dirty;
+        try {
+            renderPixels();
+        } finally {
+            dirtyTiles = null;
+        }
+        return count;
+    }
+
+    /**
+     * Marks the tiles with a pixel that a geometry may change (see {@link Camera#isAffectedBy}).
+     * The tiles already marked are not probed, and the probe of a tile stops at its first affected pixel
+     *
+     * @param geometry the geometry
+     * @param marks    marks by tile index
+     */
+    private void markAffected(Intersectable geometry, boolean[] marks) {
+        int nX = frame.getNx(), nY = frame.getNy();
+        int tilesX = (nX + tileSize - 1) / tileSize;
+        // the tiles are probed in parallel - every mark is set only by the probe of its own tile
+        sharedPool(threads).submit(() -> IntStream.range(0, marks.length).parallel().filter(tile -> !marks[tile])
+                .forEach(tile -> {
+                    int x0 = tile % tilesX * tileSize, y0 = tile / tilesX * tileSize;
+                    int x1 = Math.min(x0 + tileSize, nX), y1 = Math.min(y0 + tileSize, nY);
+                    for (int y = y0; y < y1 && !marks[tile]; ++y)
+                        for (int x = x0; x < x1 && !marks[tile]; ++x)
+                            marks[tile] = camera.isAffectedBy(geometry, imageNx, imageNy, imageX(x), imageY(y));
+                })).join();
+    }
+
+    /**
+     * Renders the image progressively: the first pass renders one sample per pixel over the
+     * whole image, and every following pass adds one more sample per pixel into the frame
+     * buffer, until the time budget is over or the sample cap is reached. A pass that is
+     * still running when the budget is over is stopped, so some pixels may have one sample
+     * more than others. The first pass is always completed.
+     *
+     * @param budget     wall-clock time budget of the render
+     * @param maxSamples maximal number of samples per pixel
+     * @param afterPass  action run after every pass (e.g. writing an intermediate image), may be null
+     * @return this job
+     */
+    public RenderJob runProgressive(Duration budget, int maxSamples, Consumer<RenderJob> afterPass) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        camera.beginRender();
+        try {
+            // a resumed render continues from the first pass that some tile has not completed
+            int first = checkpoint == null ? 0 : checkpoint.firstIncompletePass();
+            passes = first;
+            for (int pass = first; pass < maxSamples && !cancelled; ++pass) {
+                final int sample = pass;
+                renderPass((x, y) -> frame.addSample(x, y,
+                                camera.renderSample(imageNx, imageNy, imageX(x), imageY(y), sample)),
+                        pass == 0 ? NO_DEADLINE : deadline, 0, pass);
+                // a stopped pass returns only after its pixels in progress are done, so the frame is settled here
+                passes = pass + 1;
+                if (checkpoint != null) checkpoint.force();
+                if (afterPass != null && !cancelled) afterPass.accept(this);
+                if (System.nanoTime() - deadline > 0) break;
+            }
+            return this;
+        } finally {
+            if (checkpoint != null) checkpoint.close();
+        }
+    }
+
+    /**
+     * Runs one pass over all the pixels with the job's scheduler and waits for it to finish
+     *
+     * @param task     the pixel task
+     * @param deadline time (in {@link System#nanoTime()} terms) when the pass is stopped,
+     *                 or {@link #NO_DEADLINE}
+     * @param interval progress print time interval in seconds, 0 if printing is not required
+     * @param pass     number of the pass in the checkpoint: the tiles restored with this pass (or a later one)
+     *                 are skipped and the completed tiles are recorded; -1 for a pass that is not checkpointed
+     */
+    private void renderPass(PixelTask task, long deadline, double interval, int pass) {
+        renderPass(task, null, deadline, interval, pass);
+    }
+
+    /**
+     * Runs one pass over all the pixels with the job's scheduler and waits for it to finish, rendering
+     * every tile of the tile scheduler at once by a batch task if there is one
+     *
+     * @param task     the pixel task
+     * @param batch    the task rendering all the pixels of a tile, or null for rendering the tiles pixel by pixel
+     * @param deadline time (in {@link System#nanoTime()} terms) when the pass is stopped,
+     *                 or {@link #NO_DEADLINE}
+     * @param interval progress print time interval in seconds, 0 if printing is not required
+     * @param pass     number of the pass in the checkpoint: the tiles restored with this pass (or a later one)
+     *                 are skipped and the completed tiles are recorded; -1 for a pass that is not checkpointed
+     */
+    private void renderPass(PixelTask task, TileScheduler.TileRenderer batch, long deadline, double interval,
+                            int pass) {
+        int nX = frame.getNx(), nY = frame.getNy();
+        ForkJoinPool pool = sharedPool(threads);
+        if (scheduler == Camera.RenderScheduler.TILES || checkpoint != null || dependencies != null) {
+            // Render tiles as work-stealing fork/join tasks
+            TileScheduler tiles = new TileScheduler(nX, nY, tileSize, tileOrder);
+            pixelsDone = tiles::pixelsDone;
+            stopScheduler = tiles::stop;
+            if (cancelled) return;
+            try {
+                tiles.render(pool, (x0, y0, x1, y1) -> {
+                    boolean recorded = checkpoint != null && pass >= 0;
+                    if (recorded && checkpoint.tilePass(checkpoint.tileIndex(x0, y0)) >= pass) return;
+                    if (dirtyTiles != null && !dirtyTiles[dependencies.tileIndex(x0, y0)]) return;
+                    if (dependencies != null) dependencies.begin(x0, y0);
+                    try {
+                        if (batch != null) {
+                            if (cancelled || overdue(deadline)) {
+                                tiles.stop();
+                                return;
+                            }
+                            batch.render(x0, y0, x1, y1);
+                        } else {
+                            for (int i = y0; i < y1; i++) {
+                                if (cancelled || overdue(deadline)) {
+                                    tiles.stop();
+                                    return;
+                                }
+                                for (int j = x0; j < x1; j++)
+                                    task.render(j, i);
+                            }
+                        }
+                    } finally {
+                        if (dependencies != null) TileDependencies.end();
+                        GBuffer.end();
+                    }
+                    if (recorded) checkpoint.record(frame, x0, y0, x1, y1, pass);
+                }, interval);
+            } catch (InterruptedException e) {
+                interrupted();
+            }
+        } else {
+            // Threads take one pixel at a time from the job's main follow up object
+            Pixel main = new Pixel(nY, nX, interval);
+            pixelsDone = main::pixelsDone;
+            stopScheduler = main::stop;
+            if (cancelled) return;
+            // the pool swallows the exceptions of its runnables - the first failure stops the pass and is rethrown
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Runnable renderer = () -> {
+                Pixel pixel = new Pixel(main);
+                pixel.threadStarted();
+                try {
+                    for (; pixel.nextPixel(); pixel.pixelDone()) {
+                        if (overdue(deadline)) {
+                            main.stop();
+                            return;
+                        }
+                        task.render(pixel.col, pixel.row);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    main.stop();
+                } finally {
+                    GBuffer.end();
+                    pixel.threadDone();
+                }
+            };
+            for (int i = 0; i < threads; i++)
+                pool.execute(renderer);
+            try {
+                main.waitToFinish();
+            } catch (InterruptedException e) {
+                interrupted();
+            }
+            Throwable e = failure.get();
+            if (e instanceof RuntimeException re) throw re;
+            if (e instanceof Error error) throw error;
+            if (e != null) throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cancels the job when the thread waiting for a pass is interrupted, keeping the interrupt status
+     * of the thread, and fails the render instead of leaving a partial frame
+     *
+     * @throws CancellationException always
+     */
+    private void interrupted() {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new CancellationException("The render was interrupted");
+    }
+
+    /**
+     * Renders the pixels of a tile of the frame buffer with one batch of rays (see {@link Camera#renderBatch})
+     *
+     * @param x0 first frame buffer column (inclusive)
+     * @param y0 first frame buffer row (inclusive)
+     * @param x1 last frame buffer column (exclusive)
+     * @param y1 last frame buffer row (exclusive)
+     */
+    private void renderBatch(int x0, int y0, int x1, int y1) {
+        int width = x1 - x0, count = width * (y1 - y0);
+        int[] columns = new int[count], rows = new int[count];
+        for (int p = 0; p < count; ++p) {
+            columns[p] = imageX(x0 + p % width);
+            rows[p] = imageY(y0 + p / width);
+        }
+        Color[] colors = camera.renderBatch(imageNx, imageNy, columns, rows);
+        for (int p = 0; p < count; ++p)
+            frame.setPixel(x0 + p % width, y0 + p / width, colors[p]);
+    }
+
+    /**
+     * Image column of a frame buffer column - the middle of its block, inside the window
+     *
+     * @param x frame buffer column
+     * @return image column
+     */
+    private int imageX(int x) {
+        return Math.min(cropX + x * scale + scale / 2, cropX + cropWidth - 1);
+    }
+
+    /**
+     * Image row of a frame buffer row - the middle of its block, inside the window
+     *
+     * @param y frame buffer row
+     * @return image row
+     */
+    private int imageY(int y) {
+        return Math.min(cropY + y * scale + scale / 2, cropY + cropHeight - 1);
+    }
+
+    /**
+     * Writes the rendered pixels into their window of the image, filling the block of every pixel
+     * at a preview scale (nearest upsampling). The image pixels out of the window are not changed.
+     *
+     * @param imageWriter the image writer
+     */
+    public void writeTo(ImageWriter imageWriter) {
+        for (int y = 0; y < frame.getNy(); ++y)
+            for (int x = 0; x < frame.getNx(); ++x) {
+                Color color = frame.getPixel(x, y);
+                int x0 = cropX + x * scale, y0 = cropY + y * scale;
+                int x1 = Math.min(x0 + scale, cropX + cropWidth), y1 = Math.min(y0 + scale, cropY + cropHeight);
+                for (int i = y0; i < y1; ++i)
+                    for (int j = x0; j < x1; ++j)
+                        imageWriter.writePixel(j, i, color);
+            }
+    }
+
+    /**
+     * Checks whether a deadline has passed
+     *
+     * @param deadline time in {@link System#nanoTime()} terms, or {@link #NO_DEADLINE}
+     * @return true if the deadline has passed
+     */
+    private static boolean overdue(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Starts rendering the job and returns at once. The job is coordinated by a virtual
+     * thread while its pixels are rendered by the shared pool.<br/>
+     * Cancelling the returned future cancels the render; when the deadline passes the render
+     * is cancelled and the future fails with {@link TimeoutException}. The future is completed only
+     * after the pixels in progress are done, so no pixel is written once it is done, and cancelling
+     * it waits for them.
+     *
+     * @param deadline maximal duration of the render, null for no deadline
+     * @param whenDone action run by the coordinating thread after a successful render and before
+     *                 the future is completed (e.g. copying the frame to an image writer), may be null
+     * @return the future of the job
+     */
+    public CompletableFuture<RenderJob> runAsync(Duration deadline, Consumer<RenderJob> whenDone) {
+        CompletableFuture<Void> rendered = new CompletableFuture<>();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture<RenderJob> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                RenderJob.this.cancel();
+                rendered.join();
+                // the coordinating thread may have cancelled the future when the render stopped
+                return super.cancel(mayInterruptIfRunning) || isCancelled();
+            }
+        };
+        if (deadline != null)
+            CompletableFuture.delayedExecutor(deadline.toNanos(), TimeUnit.NANOSECONDS, VIRTUAL_THREADS)
+                    .execute(() -> {
+                        if (rendered.isDone()) return;
+                        timedOut.set(true);
+                        cancel();
+                    });
+        VIRTUAL_THREADS.execute(() -> {
+            try {
+                run();
+                rendered.complete(null);
+                if (timedOut.get()) {
+                    future.completeExceptionally(new TimeoutException("The render deadline has passed"));
+                } else if (cancelled) {
+                    future.cancel(false);
+                } else {
+                    if (whenDone != null) whenDone.accept(this);
+                    future.complete(this);
+                }
+            } catch (Throwable e) {
+                rendered.complete(null);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts rendering the job without a deadline and returns at once
+     *
+     * @return the future of the job
+     * @see #runAsync(Duration, Consumer)
+     */
+    public CompletableFuture<RenderJob> runAsync() {
+        return runAsync(null, null);
+    }
+
+    /**
+     * Cancels the job - the pixels that have not been started are skipped
+     * and a waiting {@link #run()} returns once the pixels in progress are done
+     */
+    public void cancel() {
+        cancelled = true;
+        stopScheduler.run();
+    }
+
+    /**
+     * Checks whether the job has been cancelled
+     *
+     * @return true if the job has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * The frame buffer of the job
+     *
+     * @return the rendered pixels
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frame;
+    }
+
+    /**
+     * Number of progressive passes completed so far - the number of samples of most pixels
+     *
+     * @return the number of passes
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Progress of the render (of the current pass of a progressive render)
+     *
+     * @return the part of the pixels rendered so far, from 0 to 1
+     */
+    public double getProgress() {
+        return (double) pixelsDone.getAsLong() / ((long) frame.getNx() * frame.getNy());
+    }
+}
@@ -0,0 +1,74 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.Socket;
+
+/**
+ * Worker process of a distributed render (see {@link RenderCoordinator}).<br/>
+ * The worker connects to the coordinator, receives the serialized camera and renders the tiles
+ * leased to it with its own rendering threads, sending back the colors of every tile,
+ * until the coordinator ends the session.<br/>
+ * When the camera runs the edge-detection prepass, every tile is rendered with a margin of one
+ * pixel, so the edges between the tile and its neighbours are detected as in a render of the whole image.
+ */
+public class RenderWorker {
+    /**
+     * Private constructor - the class only has a main program
+     */
+    private RenderWorker() {
+    }
+
+    /**
+     * Worker main program
+     *
+     * @param args coordinator host, coordinator port and number of rendering threads
+     * @throws IOException            if the connection fails
+     * @throws ClassNotFoundException if the camera cannot be deserialized
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        if (args.length != 3)
+            throw new IllegalArgumentException("Usage: RenderWorker <host> <port> <threads>");
+        int threads = Integer.parseInt(args[2]);
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            int nX = in.readInt(), nY = in.readInt();
+            byte[] cameraBytes = new byte[in.readInt()];
+            in.readFully(cameraBytes);
+            Camera camera;
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(cameraBytes))) {
+                camera = (Camera) objects.readObject();
+            }
+            int margin = camera.isEdgePrepass() ? 1 : 0;
+            int x0;
+            while ((x0 = in.readInt()) != RenderCoordinator.END_OF_LEASES) {
+                int y0 = in.readInt(), x1 = in.readInt(), y1 = in.readInt();
+                int jobX = Math.max(x0 - margin, 0), jobY = Math.max(y0 - margin, 0);
+                FrameBuffer frame = camera.createTileJob(nX, nY, threads, jobX, jobY,
+                                Math.min(x1 + margin, nX) - jobX, Math.min(y1 + margin, nY) - jobY)
+                        .run().getFrameBuffer();
+                out.writeInt(x0);
+                out.writeInt(y0);
+                out.writeInt(x1);
+                out.writeInt(y1);
+                for (int y = y0; y < y1; ++y)
+                    for (int x = x0; x < x1; ++x) {
+                        Double3 rgb = frame.getPixel(x - jobX, y - jobY).getRgb();
+                        out.writeDouble(rgb.d1());
+                        out.writeDouble(rgb.d2());
+                        out.writeDouble(rgb.d3());
+                    }
+                out.flush();
+            }
+        }
+    }
+}
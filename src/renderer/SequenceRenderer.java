@@ -0,0 +1,181 @@
+package renderer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Renderer of an animation - the frames of a camera path at a frame rate.<br/>
+ * Frames are pipelined: while frame N is encoded (and written) on a virtual thread, the tiles of
+ * frame N+1 are already rendered on the rendering pool. At most one frame is encoded at a time,
+ * so the memory of the sequence is bounded by two frames.
+ * The frames are written as numbered PNG images, or as a raw stream of 8-bit RGB pixels.
+ * The render time of every frame and the throughput of the sequence are reported.
+ */
+public class SequenceRenderer {
+    /** Builder of the camera - every frame sets the camera path parameters of its time on it */
+    private final Camera.Builder builder;
+    private final CameraPath path;
+    private final int nX;
+    private final int nY;
+    /** Frames per second */
+    private double frameRate = 24;
+    /** Render time of every frame of the last sequence in milliseconds, encoding not included */
+    private double[] frameTimes = new double[0];
+
+    /**
+     * Writes the pixels of a rendered frame
+     */
+    @FunctionalInterface
+    private interface FrameSink {
+        /**
+         * Write a frame
+         *
+         * @param job         the render job of the frame
+         * @param imageWriter the image writer of the frame
+         * @throws IOException if the frame cannot be written
+         */
+        void write(RenderJob job, ImageWriter imageWriter) throws IOException;
+    }
+
+    /**
+     * Creates a sequence renderer
+     *
+     * @param builder camera builder with all the settings except the camera path parameters
+     * @param path    the camera path
+     * @param nX      number of pixels in a row of every frame
+     * @param nY      number of pixels in a column of every frame
+     */
+    public SequenceRenderer(Camera.Builder builder, CameraPath path, int nX, int nY) {
+        if (nX <= 0 || nY <= 0)
+            throw new IllegalArgumentException("Frame resolution must be positive");
+        this.builder = builder;
+        this.path = path;
+        this.nX = nX;
+        this.nY = nY;
+    }
+
+    /**
+     * Sets the frame rate
+     *
+     * @param frameRate frames per second
+     * @return this renderer
+     */
+    public SequenceRenderer setFrameRate(double frameRate) {
+        if (frameRate <= 0)
+            throw new IllegalArgumentException("Frame rate must be positive");
+        this.frameRate = frameRate;
+        return this;
+    }
+
+    /**
+     * Number of frames of the sequence - the frames cover the camera path from its first keyframe
+     * to its last one
+     *
+     * @return the frame count
+     */
+    public int getFrameCount() {
+        return (int) Math.floor((path.getEndTime() - path.getStartTime()) * frameRate + 1e-9) + 1;
+    }
+
+    /**
+     * Render time of every frame of the last sequence, without the encoding (which overlaps the next frame)
+     *
+     * @return frame times in milliseconds
+     */
+    public double[] getFrameTimes() {
+        return frameTimes.clone();
+    }
+
+    /**
+     * Renders the sequence into numbered PNG images: {@code <baseName>_0000.png}, {@code <baseName>_0001.png}...
+     *
+     * @param baseName image name prefix
+     * @return this renderer
+     */
+    public SequenceRenderer renderImages(String baseName) {
+        return render(baseName, (job, imageWriter) -> {
+            job.writeTo(imageWriter);
+            imageWriter.writeToImage();
+        });
+    }
+
+    /**
+     * Renders the sequence into a raw frame stream: the frames one after the other, every frame
+     * row by row with three bytes (red, green, blue) per pixel. The stream is not closed.
+     *
+     * @param out the stream
+     * @return this renderer
+     */
+    public SequenceRenderer renderStream(OutputStream out) {
+        DataOutputStream data = new DataOutputStream(out);
+        return render("frame", (job, imageWriter) -> {
+            FrameBuffer frame = job.getFrameBuffer();
+            byte[] row = new byte[3 * frame.getNx()];
+            for (int y = 0; y < frame.getNy(); ++y) {
+                for (int x = 0; x < frame.getNx(); ++x) {
+                    java.awt.Color color = frame.getPixel(x, y).getColor();
+                    row[3 * x] = (byte) color.getRed();
+                    row[3 * x + 1] = (byte) color.getGreen();
+                    row[3 * x + 2] = (byte) color.getBlue();
+                }
+                data.write(row);
+            }
+            data.flush();
+        });
+    }
+
+    /**
+     * Renders the frames, encoding every frame while the next one is rendered, and prints the throughput
+     *
+     * @param baseName image name prefix of the frames
+     * @param sink     writer of the frames
+     * @return this renderer
+     */
+    private SequenceRenderer render(String baseName, FrameSink sink) {
+        int frames = getFrameCount();
+        frameTimes = new double[frames];
+        CompletableFuture<Void> encoding = CompletableFuture.completedFuture(null);
+        long start = System.nanoTime();
+        for (int k = 0; k < frames; ++k) {
+            ImageWriter imageWriter = new ImageWriter(String.format("%s_%04d", baseName, k), nX, nY);
+            Camera camera = path.apply(builder, path.getStartTime() + k / frameRate)
+                    .setImageWriter(imageWriter).build();
+            long frameStart = System.nanoTime();
+            RenderJob job = camera.createRenderJob().run();
+            frameTimes[k] = (System.nanoTime() - frameStart) / 1_000_000.0;
+            System.out.println("Frame " + k + ": " + frameTimes[k] + " ms");
+            // one frame is encoded at a time - wait for the previous one before encoding this one
+            join(encoding);
+            encoding = CompletableFuture.runAsync(() -> {
+                try {
+                    sink.write(job, imageWriter);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, RenderJob.VIRTUAL_THREADS);
+        }
+        join(encoding);
+
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Sequence: " + frames + " frames in " + ms + " ms, "
+                + frames * 1000 / ms + " frames/s, " + (double) nX * nY * frames / (ms * 1000) + " Mpixels/s");
+        return this;
+    }
+
+    /**
+     * Waits for the encoding of a frame, rethrowing its failure
+     *
+     * @param encoding the encoding of the frame
+     */
+    private static void join(CompletableFuture<Void> encoding) {
+        try {
+            encoding.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package renderer;
 
+import geometries.Geometry;
 import geometries.Intersectable.GeoPoint;
 import lighting.LightSource;
+import lighting.LightTree;
 import primitives.*;
 import primitives.Vector;
 import renderer.RayTracerBase;
 import scene.Scene;
 
+import java.io.Serial;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.awt.Color.BLACK;
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * A basic ray tracer that calculates local and global illumination,
@@ -19,18 +25,51 @@ import static primitives.Util.alignZero;
  * @author Nethanel hasid and Ori Meged
  */
 public class SimpleRayTracer extends RayTracerBase {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     // Small offset to avoid self-intersection
     public static final double DELTA = 0.1;
     // Maximum recursion depth for global effects
-    private static final int MAX_CALC_COLOR_LEVEL = 10;
+    protected static final int MAX_CALC_COLOR_LEVEL = 10;
     // Minimum contribution threshold for recursion
-    private static final double MIN_CALC_COLOR_K = 0.001;
+    protected static final double MIN_CALC_COLOR_K = 0.001;
     // Initial transparency/reflection coefficient
-    private static final Double3 INITIAL_K = Double3.ONE;
+    protected static final Double3 INITIAL_K = Double3.ONE;
 
     // Number of points for soft shadow sampling
-    private int numberOfPoints = 80;
+    protected int numberOfPoints = 80;
+    // Adaptive soft shadows flag - the whole light disk is sampled only where probes of it disagree
+    protected boolean adaptiveShadows = false;
+    // Largest region of the light disk that adaptive soft shadows sample fully instead of splitting it
+    private static final int MIN_SHADOW_REGION = 4;
+    // Directions of the probes of a light disk region
+    private static final double[][] PROBE_DIRECTIONS = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
+    // Number of lights sampled at every hit from the light tree, 0 for shading all the lights
+    protected int lightSamples = 0;
+    // The light tree of the scene lights, rebuilt for every render and when the light list of the scene
+    // is replaced or resized
+    private transient volatile LightTree lightTree;
+    // Number of shadow rays traced so far
+    private final LongAdder shadowRays = new LongAdder();
+    // Number of shadow rays blocked by the last occluder of their light, without a scene query
+    private final LongAdder occluderCacheHits = new LongAdder();
+    // The last opaque occluders of the shadow rays toward the lights that a thread has found in one render
+    private static final class OccluderCache {
+        private final Map<LightSource, Geometry> occluders = new IdentityHashMap<>();
+        // The render of the occluders
+        private long render = -1;
+    }
+
+    // The last opaque occluder of the shadow rays toward each light, per thread - shadow rays toward a light
+    // from neighbouring points usually hit the same blocker (recreated lazily after deserialization)
+    private transient ThreadLocal<OccluderCache> lastOccluders = newOccluderCache();
+    // Number of the current render - the occluders cached in earlier renders are dropped, as the scene may have
+    // been edited between the renders
+    private final AtomicLong render = new AtomicLong();
+    // The coordinates of the sample points of a light disk, per thread - a light fills them for every shaded point
+    // instead of allocating its points (recreated lazily after deserialization)
+    private transient ThreadLocal<double[]> samplePoints = newSampleBuffer();
 
     // Constructor initializing the scene
     public SimpleRayTracer(Scene scene) {
@@ -43,11 +82,51 @@ public class SimpleRayTracer extends RayTracerBase {
         return this;
     }
 
+    // Enables or disables adaptive soft shadows: the light disk is probed at its rim first, and a region of it
+    // is refined (split in two and probed again) only while its probes disagree
+    public SimpleRayTracer setAdaptiveShadows(boolean adaptive) {
+        this.adaptiveShadows = adaptive;
+        return this;
+    }
+
+    // Enables stochastic light sampling: every hit shades the given number of lights, sampled from a light tree
+    // by their importance and weighted by the inverse of their probability, so the estimate stays unbiased and
+    // its cost doesn't grow with the number of lights (0 shades all the lights)
+    public SimpleRayTracer setLightSampling(int lightSamples) {
+        if (lightSamples < 0) throw new IllegalArgumentException("Number of sampled lights must not be negative");
+        this.lightSamples = lightSamples;
+        return this;
+    }
+
+    // Returns the number of shadow rays traced so far
+    public long getShadowRayCount() {
+        return shadowRays.sum();
+    }
+
+    // Returns the part of the shadow rays that were blocked by the last occluder of their light
+    public double getOccluderCacheHitRate() {
+        long rays = shadowRays.sum();
+        return rays == 0 ? 0 : (double) occluderCacheHits.sum() / rays;
+    }
+
+    // Starts a new render - the occluders cached so far are not used any more, and the light tree is built
+    // again, as lights may have been replaced or edited (attenuation, intensity, position) in place
+    @Override
+    public void beginRender() {
+        render.incrementAndGet();
+        lightTree = null;
+    }
+
     // Traces a single ray and returns the resulting color
     @Override
     public Color traceRay(Ray ray) {
-        GeoPoint closestPoint = findClosestIntersection(ray);
-        return closestPoint == null ? scene.background : calcColor(closestPoint, ray);
+        return shade(findClosestIntersection(ray), ray);
+    }
+
+    // Calculates the color of a ray from its already found closest intersection
+    @Override
+    public Color shade(GeoPoint gp, Ray ray) {
+        return gp == null ? scene.background : calcColor(gp, ray);
     }
 
     // Traces a list of rays (for super sampling) and averages the color
@@ -61,12 +140,6 @@ public class SimpleRayTracer extends RayTracerBase {
         return color.reduce(rays.size());
     }
 
-    // Finds the closest intersection point of a ray with the scene geometries
-    private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-        return intersections == null ? null : ray.findClosestGeoPoint(intersections);
-    }
-
     // Calculates the color at a given intersection point (including ambient light)
     private Color calcColor(GeoPoint gp, Ray ray) {
         return calcColor(gp, ray, MAX_CALC_COLOR_LEVEL, INITIAL_K).add(scene.ambientLight.getIntensity());
@@ -80,29 +153,79 @@ public class SimpleRayTracer extends RayTracerBase {
 
     // Calculates local lighting effects (diffuse, specular, emission, shadows)
     private Color calcLocalEffects(GeoPoint gp, Ray ray, Double3 k) {
+        TileDependencies.touch(gp.geometry);
         Color color = gp.geometry.getEmission();
         Vector v = ray.getDirection(), n = gp.geometry.getNormal(gp.point);
         double nv = alignZero(n.dotProduct(v));
         if (nv == 0) return color;
 
-        Material mat = gp.geometry.getMaterial();
-        for (LightSource light : scene.lights) {
-            Vector l = light.getL(gp.point).normalize();
-            double nl = alignZero(n.dotProduct(l));
-            if (nl * nv > 0) {
-                Double3 ktr = hitPercentageColor(gp, light, n, l);
-                if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-                    Color Li = light.getIntensity(gp.point).scale(ktr);
-                    color = color.add(
-                            Li.scale(calcDiffusive(mat, nl)),
-                            Li.scale(calcSpecular(mat, n, l, nl, v))
-                    );
-                }
+        if (lightSamples > 0) {
+            touchSampledLights(gp.point);
+            for (LightTree.LightSample sample : sampleLights(gp.point)) {
+                color = color.add(calcLightEffect(gp, sample.light(), n, v, nv, k.scale(sample.weight()))
+                        .scale(sample.weight()));
             }
+            return color;
+        }
+        for (LightSource light : scene.lights) {
+            TileDependencies.touch(light);
+            color = color.add(calcLightEffect(gp, light, n, v, nv, k));
         }
         return color;
     }
 
+    // Samples the lights to shade at a point from the light tree
+    protected List<LightTree.LightSample> sampleLights(Point point) {
+        return lightTree().sample(point, Rng.key(point.getX(), point.getY(), point.getZ()), lightSamples);
+    }
+
+    // Reports to the recorded tile every light that the samples of a point may choose - an edit of any of them
+    // changes the shaded lights or their weights, not only an edit of the sampled ones
+    protected void touchSampledLights(Point point) {
+        if (TileDependencies.isRecording()) lightTree().forEachReaching(point, TileDependencies::touch);
+    }
+
+    // Returns the light tree of the scene lights, building it on first use in a render and when the light list
+    // is replaced or resized
+    private LightTree lightTree() {
+        LightTree tree = lightTree;
+        if (tree == null || !tree.isBuiltFrom(scene.lights)) lightTree = tree = new LightTree(scene.lights);
+        return tree;
+    }
+
+    // Calculates the diffuse and specular effect of a single light at a point, including its shadow
+    private Color calcLightEffect(GeoPoint gp, LightSource light, Vector n, Vector v, double nv, Double3 k) {
+        Vector l = light.getL(gp.point).normalize();
+        double nl = alignZero(n.dotProduct(l));
+        if (nl * nv <= 0) return Color.BLACK;
+        Double3 ktr = hitPercentageColor(gp, light, n, l);
+        if (ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
+        Material mat = gp.geometry.getMaterial();
+        Color Li = light.getIntensity(gp.point).scale(ktr);
+        return Li.scale(calcDiffusive(mat, nl)).add(Li.scale(calcSpecular(mat, n, l, nl, v)));
+    }
+
+    // The color of a primary hit without the light sources: its emission and the ambient light
+    @Override
+    public Color shadeUnlit(GeoPoint gp) {
+        return gp.geometry.getEmission().add(scene.ambientLight.getIntensity());
+    }
+
+    // The effect of a single light source on a primary hit with a known normal
+    @Override
+    public Color shadeLight(GeoPoint gp, Ray ray, Vector n, LightSource light) {
+        Vector v = ray.getDirection();
+        double nv = alignZero(n.dotProduct(v));
+        return nv == 0 ? Color.BLACK : calcLightEffect(gp, light, n, v, nv, INITIAL_K);
+    }
+
+    // A hit is separable by lights when its material has no reflection or refraction to trace
+    @Override
+    public boolean isLightSeparable(GeoPoint gp) {
+        Material mat = gp.geometry.getMaterial();
+        return mat.getKR().lowerThan(MIN_CALC_COLOR_K) && mat.getKT().lowerThan(MIN_CALC_COLOR_K);
+    }
+
     // Calculates global lighting effects (reflection and refraction)
     private Color calcGlobalEffects(GeoPoint gp, Ray ray, int level, Double3 k) {
         Material mat = gp.geometry.getMaterial();
@@ -121,7 +244,7 @@ public class SimpleRayTracer extends RayTracerBase {
     }
 
     // Constructs a reflected ray from a point
-    private Ray constructReflectedRay(GeoPoint gp, Vector v, Vector n) {
+    protected Ray constructReflectedRay(GeoPoint gp, Vector v, Vector n) {
         double nv = n.dotProduct(v);
         if (nv == 0) return null;
         Vector r = v.subtract(n.scale(2 * nv));
@@ -129,19 +252,19 @@ public class SimpleRayTracer extends RayTracerBase {
     }
 
     // Constructs a refracted ray from a point
-    private Ray constructRefractedRay(GeoPoint gp, Vector v, Vector n) {
+    protected Ray constructRefractedRay(GeoPoint gp, Vector v, Vector n) {
         return v.length() == 0 ? null : new Ray(gp.point, v, n);
     }
 
     // Calculates the specular reflection component
-    private Double3 calcSpecular(Material mat, Vector n, Vector l, double nl, Vector v) {
+    protected Double3 calcSpecular(Material mat, Vector n, Vector l, double nl, Vector v) {
         Vector r = l.subtract(n.scale(2 * nl));
         double vr = alignZero(-v.dotProduct(r));
         return vr <= 0 ? Double3.ZERO : mat.getKS().scale(Math.pow(vr, mat.getShininess()));
     }
 
     // Calculates the diffusive reflection component
-    private Double3 calcDiffusive(Material mat, double nl) {
+    protected Double3 calcDiffusive(Material mat, double nl) {
         return mat.getKD().scale(Math.abs(nl));
     }
 
@@ -149,35 +272,206 @@ public class SimpleRayTracer extends RayTracerBase {
     private Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n) {
         Vector lDir = l.scale(-1);
         if (lDir.length() == 0) return Double3.ZERO;
-        Ray ray = new Ray(gp.point, lDir, n);
+        return transmittance(new Ray(gp.point, lDir, n), gp.point, light.getDistance(gp.point), light);
+    }
+
+    // Calculates the transparency factor of the occluders of a shadow ray from a point up to the light distance.
+    // The last opaque occluder of the light found in the current render is tested first, and if it is still
+    // opaque it blocks the ray without a scene query
+    protected Double3 transmittance(Ray ray, Point point, double distToLight, LightSource light) {
+        shadowRays.increment();
+        if (lastOccluders == null) lastOccluders = newOccluderCache();
+        OccluderCache cache = lastOccluders.get();
+        long current = render.get();
+        if (cache.render != current) {
+            cache.occluders.clear();
+            cache.render = current;
+        }
+        Map<LightSource, Geometry> occluders = cache.occluders;
+        Geometry occluder = occluders.get(light);
+        if (occluder != null && occluder.getMaterial().getKT().equals(Double3.ZERO)
+                && blocks(occluder, ray, point, distToLight)) {
+            occluderCacheHits.increment();
+            TileDependencies.touch(occluder);
+            return Double3.ZERO;
+        }
+
         List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
         if (intersections == null) return Double3.ONE;
 
         Double3 ktr = INITIAL_K;
-        double distToLight = light.getDistance(gp.point);
         for (GeoPoint inter : intersections) {
-            if (alignZero(inter.point.distance(gp.point) - distToLight) <= 0) {
-                ktr = ktr.product(inter.geometry.getMaterial().getKT());
+            if (alignZero(inter.point.distance(point) - distToLight) <= 0) {
+                TileDependencies.touch(inter.geometry);
+                Double3 kt = inter.geometry.getMaterial().getKT();
+                if (kt.equals(Double3.ZERO)) occluders.put(light, inter.geometry);
+                ktr = ktr.product(kt);
                 if (ktr.equals(Double3.ZERO)) break;
             }
         }
         return ktr;
     }
 
+    // Checks if an opaque geometry blocks a shadow ray from a point before the light distance
+    private static boolean blocks(Geometry occluder, Ray ray, Point point, double distToLight) {
+        List<GeoPoint> intersections = occluder.findGeoIntersections(ray);
+        if (intersections == null) return false;
+        for (GeoPoint inter : intersections)
+            if (alignZero(inter.point.distance(point) - distToLight) <= 0) return true;
+        return false;
+    }
+
+    // Creates the per-thread caches of the last occluders of the lights
+    private static ThreadLocal<OccluderCache> newOccluderCache() {
+        return ThreadLocal.withInitial(OccluderCache::new);
+    }
+
     // Calculates the average transparency for soft shadows using multiple sample points
     private Double3 hitPercentageColor(GeoPoint gp, LightSource light, Vector n, Vector l) {
-        Point[] samplePoints = light.getPoints(gp.point, numberOfPoints);
-        if (samplePoints == null) return transparency(gp, light, l, n);
+        double[] samples = sampleBuffer();
+        int count = light.getPoints(gp.point, numberOfPoints, samples);
+        if (count == 0) return transparency(gp, light, l, n);
+        if (adaptiveShadows) return adaptiveHitPercentage(gp, light, n, samples, count);
 
         Double3 average = Double3.ZERO;
-        for (Point pt : samplePoints) {
-            Vector dir = gp.point.subtract(pt);
-            if (dir.length() == 0) continue;
-            average = average.add(transparency(gp, light, dir.normalize(), n).reduce(samplePoints.length));
+        for (int s = 0; s < count; ++s) {
+            Vector dir = sampleDirection(gp.point, samples, s);
+            if (dir == null) continue;
+            average = average.add(transparency(gp, light, dir, n).reduce(count));
         }
         return average;
     }
 
+    // Returns the buffer of the sample point coordinates of the current thread, large enough for the light disks
+    protected double[] sampleBuffer() {
+        if (samplePoints == null) samplePoints = newSampleBuffer();
+        double[] buffer = samplePoints.get();
+        if (buffer.length < 3 * numberOfPoints) samplePoints.set(buffer = new double[3 * numberOfPoints]);
+        return buffer;
+    }
+
+    // Creates the per-thread buffers of the sample point coordinates
+    private static ThreadLocal<double[]> newSampleBuffer() {
+        return ThreadLocal.withInitial(() -> new double[0]);
+    }
+
+    // Returns the normalized direction from a sample point of a light disk to a point, null for a sample point
+    // at the point itself
+    protected static Vector sampleDirection(Point point, double[] samples, int s) {
+        double x = point.getX() - samples[3 * s], y = point.getY() - samples[3 * s + 1],
+                z = point.getZ() - samples[3 * s + 2];
+        return isZero(x) && isZero(y) && isZero(z) ? null : new Vector(x, y, z).normalize();
+    }
+
+    // Calculates the average transparency for soft shadows adaptively: the sample points are split into a k-d tree
+    // of regions of the light disk, and a region whose probes (its extreme points) all have the same transparency
+    // gives it to all its points; the average is then summed as the full sampling sums it
+    protected Double3 adaptiveHitPercentage(GeoPoint gp, LightSource light, Vector n, double[] samples, int count) {
+        Double3[] values = new Double3[count];
+        boolean[] traced = new boolean[count];
+        int[] order = new int[count];
+        for (int s = 0; s < count; ++s) order[s] = s;
+        refineShadow(gp, light, n, samples, order, 0, count, values, traced);
+
+        Double3 average = Double3.ZERO;
+        for (Double3 value : values)
+            if (value != null) average = average.add(value.reduce(count));
+        return average;
+    }
+
+    // Refines a region of the light disk - the sample points order[from..to) - by its probes
+    private void refineShadow(GeoPoint gp, LightSource light, Vector n, double[] samples,
+                              int[] order, int from, int to, Double3[] values, boolean[] traced) {
+        // the probes are the extreme points of the region along the probe directions and its middle point
+        int axis = 0;
+        double largest = -1;
+        Double3 probe = sampleTransparency(gp, light, n, samples, middlePoint(samples, order, from, to),
+                values, traced);
+        boolean agree = probe != null;
+        for (int d = 0; d < PROBE_DIRECTIONS.length; ++d) {
+            int min = order[from], max = order[from];
+            for (int s = from + 1; s < to; ++s) {
+                if (project(samples, order[s], d) < project(samples, min, d)) min = order[s];
+                if (project(samples, order[s], d) > project(samples, max, d)) max = order[s];
+            }
+            double extent = project(samples, max, d) - project(samples, min, d);
+            if (extent > largest) {
+                largest = extent;
+                axis = d;
+            }
+            Double3 low = sampleTransparency(gp, light, n, samples, min, values, traced);
+            Double3 high = sampleTransparency(gp, light, n, samples, max, values, traced);
+            if (low == null || high == null || !low.equals(probe) || !high.equals(probe)) agree = false;
+        }
+
+        if (agree) {
+            for (int s = from; s < to; ++s)
+                if (!traced[order[s]]) values[order[s]] = probe;
+        } else if (to - from <= MIN_SHADOW_REGION) {
+            for (int s = from; s < to; ++s)
+                sampleTransparency(gp, light, n, samples, order[s], values, traced);
+        } else {
+            // split the region in two at the median of its longest axis (an insertion sort - regions are small)
+            for (int s = from + 1; s < to; ++s) {
+                int point = order[s];
+                double key = project(samples, point, axis);
+                int t = s;
+                for (; t > from && project(samples, order[t - 1], axis) > key; --t)
+                    order[t] = order[t - 1];
+                order[t] = point;
+            }
+            int middle = (from + to) / 2;
+            refineShadow(gp, light, n, samples, order, from, middle, values, traced);
+            refineShadow(gp, light, n, samples, order, middle, to, values, traced);
+        }
+    }
+
+    // Returns the transparency toward one sample point of the light disk, tracing its shadow ray only once
+    // (null for a sample point at the shaded point itself, which the average skips)
+    private Double3 sampleTransparency(GeoPoint gp, LightSource light, Vector n, double[] samples, int s,
+                                       Double3[] values, boolean[] traced) {
+        if (traced[s]) return values[s];
+        traced[s] = true;
+        Vector dir = sampleDirection(gp.point, samples, s);
+        values[s] = dir == null ? null : transparency(gp, light, dir, n);
+        return values[s];
+    }
+
+    // Returns the sample point of a region that is nearest to the mean of its points
+    private static int middlePoint(double[] samples, int[] order, int from, int to) {
+        double x = 0, y = 0, z = 0;
+        for (int s = from; s < to; ++s) {
+            x += samples[3 * order[s]];
+            y += samples[3 * order[s] + 1];
+            z += samples[3 * order[s] + 2];
+        }
+        x /= to - from;
+        y /= to - from;
+        z /= to - from;
+        int middle = order[from];
+        double nearest = distanceSquared(samples, middle, x, y, z);
+        for (int s = from + 1; s < to; ++s) {
+            double distance = distanceSquared(samples, order[s], x, y, z);
+            if (distance < nearest) {
+                nearest = distance;
+                middle = order[s];
+            }
+        }
+        return middle;
+    }
+
+    // Returns the squared distance of a sample point from a point
+    private static double distanceSquared(double[] samples, int s, double x, double y, double z) {
+        double dx = samples[3 * s] - x, dy = samples[3 * s + 1] - y, dz = samples[3 * s + 2] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // Projects a sample point on a probe direction
+    private static double project(double[] samples, int s, int direction) {
+        double[] d = PROBE_DIRECTIONS[direction];
+        return samples[3 * s] * d[0] + samples[3 * s + 1] * d[1] + samples[3 * s + 2] * d[2];
+    }
+
     // Checks if a point is in a list of points
     private boolean isInList(List<Point> list, Point point) {
         return list.contains(point);
@@ -226,13 +520,13 @@ public class SimpleRayTracer extends RayTracerBase {
         List<Color> colors = new ArrayList<>();
         int numX = (int) Math.ceil(w / minW);
         int numY = (int) Math.ceil(h / minH);
-        Random rand = new Random();
+        long key = Rng.key(center.getX(), center.getY(), center.getZ());
 
         // Generate random sample points within the region
         for (int i = 0; i < numY; i++) {
             for (int j = 0; j < numX; j++) {
-                double offsetX = minW * j + rand.nextDouble() * minW;
-                double offsetY = minH * i + rand.nextDouble() * minH;
+                double offsetX = minW * j + Rng.uniform(key, (long) i * numX + j, 0) * minW;
+                double offsetY = minH * i + Rng.uniform(key, (long) i * numX + j, 1) * minH;
                 Point p = center.add(right.scale(offsetX - w / 2)).add(up.scale(offsetY - h / 2));
                 if (prev == null || !isInList(prev, p)) {
                     Vector dir = p.subtract(camLoc);
@@ -0,0 +1,161 @@
+package renderer;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Scene dependencies of the tiles of a render - for every tile, the set of the geometries and
+ * light sources that the rays of its pixels have touched, as a bitset over object ids.<br/>
+ * The ray tracer reports every object it uses with {@link #touch(Object)}: the geometry of every
+ * shaded hit (primary, reflected or refracted), every occluder found by a shadow ray and every
+ * light source evaluated at a hit. The report goes to the tile that the current thread renders,
+ * set by {@link #begin(int, int)}, and is ignored when no tile is being recorded. A tile is rendered
+ * by a single thread, so its bitset is never shared. The recording state of the thread is dropped by
+ * {@link #end()}, so the pool threads do not keep the dependencies (and the scene) of a finished render.<br/>
+ * After an edit of some objects, only the tiles whose sets contain one of them must be rendered again.
+ */
+class TileDependencies {
+    /**
+     * Recording state of a thread: the bitset of its current tile, and a private copy of the
+     * ids it has seen in the tile, so most reports do not take the registry lock
+     */
+    private static final class Recorder {
+        private final TileDependencies owner;
+        private final Map<Object, Integer> ids = new IdentityHashMap<>();
+        private final BitSet tile;
+
+        private Recorder(TileDependencies owner, BitSet tile) {
+            this.owner = owner;
+            this.tile = tile;
+        }
+    }
+
+    /** Recorder of the current thread - null when the thread does not render a recorded tile */
+    private static final ThreadLocal<Recorder> RECORDER = new ThreadLocal<>();
+
+    private final int tileSize;
+    private final int tilesX;
+    /** Dependencies of every tile by tile index (row * tilesX + column), null until the tile is rendered */
+    private final BitSet[] tiles;
+    /** Ids of the objects by identity - geometries may override equals */
+    private final Map<Object, Integer> registry = new IdentityHashMap<>();
+
+    /**
+     * Creates the dependencies of a frame with no tile recorded
+     *
+     * @param nX       number of pixels in a row of the frame
+     * @param nY       number of pixels in a column of the frame
+     * @param tileSize tile edge size in pixels
+     */
+    TileDependencies(int nX, int nY, int tileSize) {
+        this.tileSize = tileSize;
+        this.tilesX = (nX + tileSize - 1) / tileSize;
+        this.tiles = new BitSet[tilesX * ((nY + tileSize - 1) / tileSize)];
+    }
+
+    /**
+     * Reports that the current thread's ray has used an object
+     *
+     * @param object the geometry or the light source
+     */
+    static void touch(Object object) {
+        Recorder recorder = RECORDER.get();
+        if (recorder == null) return;
+        Integer id = recorder.ids.get(object);
+        if (id == null) {
+            id = recorder.owner.idOf(object);
+            recorder.ids.put(object, id);
+        }
+        recorder.tile.set(id);
+    }
+
+    /**
+     * Checks whether the current thread renders a recorded tile - for skipping reports that are costly to find
+     *
+     * @return true if the reports of the thread are recorded
+     */
+    static boolean isRecording() {
+        return RECORDER.get() != null;
+    }
+
+    /**
+     * Starts recording a tile in the current thread - the reports are added to the tile's set
+     *
+     * @param x0 first pixel column of the tile
+     * @param y0 first pixel row of the tile
+     */
+    void begin(int x0, int y0) {
+        int tile = tileIndex(x0, y0);
+        if (tiles[tile] == null) tiles[tile] = new BitSet();
+        RECORDER.set(new Recorder(this, tiles[tile]));
+    }
+
+    /**
+     * Stops recording in the current thread and drops its recording state
+     */
+    static void end() {
+        RECORDER.remove();
+    }
+
+    /**
+     * Forgets the dependencies of a tile before it is rendered again
+     *
+     * @param tile the tile index
+     */
+    void clear(int tile) {
+        tiles[tile] = null;
+    }
+
+    /**
+     * Number of tiles of the frame
+     *
+     * @return the tile count
+     */
+    int tileCount() {
+        return tiles.length;
+    }
+
+    /**
+     * Index of the tile of a pixel
+     *
+     * @param x pixel column
+     * @param y pixel row
+     * @return the tile index
+     */
+    int tileIndex(int x, int y) {
+        return y / tileSize * tilesX + x / tileSize;
+    }
+
+    /**
+     * Marks the tiles that depend on at least one of the given objects
+     *
+     * @param objects the geometries and light sources
+     * @return the marks by tile index
+     */
+    boolean[] dependents(Object... objects) {
+        BitSet changed = new BitSet();
+        synchronized (registry) {
+            for (Object object : objects) {
+                Integer id = registry.get(object);
+                if (id != null) changed.set(id);
+            }
+        }
+        boolean[] marks = new boolean[tiles.length];
+        for (int tile = 0; tile < tiles.length; ++tile)
+            marks[tile] = tiles[tile] != null && tiles[tile].intersects(changed);
+        return marks;
+    }
+
+    /**
+     * Returns the id of an object, assigning a new id on its first appearance
+     *
+     * @param object the object
+     * @return the object id
+     */
+    private int idOf(Object object) {
+        synchronized (registry) {
+            return registry.computeIfAbsent(object, o -> registry.size());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package renderer;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TileScheduler is a helper class for multi-threaded rendering. It splits the image
+ * into square tiles, orders them along a Hilbert curve or a spiral from the image centre,
+ * and renders them as fork/join tasks on a work-stealing {@link ForkJoinPool}.<br/>
+ * Unlike {@link Pixel} there is no shared cursor to lock: a thread takes a whole range of
+ * tiles and idle threads steal the other half of it. Since both orders keep consecutive tiles
+ * close to each other, every stolen range is a compact image region. Progress is counted
+ * with a {@link LongAdder}, so finishing a tile never contends with the other threads.
+ */
+class TileScheduler {
+    /**
+     * Renders the pixels of one tile
+     */
+    @FunctionalInterface
+    interface TileRenderer {
+        /**
+         * Render the pixels of a tile
+         *
+         * @param x0 first pixel column (inclusive)
+         * @param y0 first pixel row (inclusive)
+         * @param x1 last pixel column (exclusive)
+         * @param y1 last pixel row (exclusive)
+         */
+        void render(int x0, int y0, int x1, int y1);
+    }
+
+    private final int nX;
+    private final int nY;
+    private final int tileSize;
+    private final int tilesX;
+    /** Tile indices (row * tilesX + column) in rendering order */
+    private final int[] order;
+    /** Number of pixels that have been rendered so far */
+    private final LongAdder pixelsDone = new LongAdder();
+    /** Set when the render is stopped - the remaining tiles are skipped */
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a scheduler for an image
+     *
+     * @param nX       number of pixel columns
+     * @param nY       number of pixel rows
+     * @param tileSize tile edge size in pixels
+     * @param tileOrder the order of the tiles
+     */
+    TileScheduler(int nX, int nY, int tileSize, Camera.TileOrder tileOrder) {
+        this.nX = nX;
+        this.nY = nY;
+        this.tileSize = tileSize;
+        this.tilesX = (nX + tileSize - 1) / tileSize;
+        int tilesY = (nY + tileSize - 1) / tileSize;
+        this.order = tileOrder == Camera.TileOrder.SPIRAL ? spiralOrder(tilesX, tilesY) : hilbertOrder(tilesX, tilesY);
+    }
+
+    /**
+     * Orders the tiles along a Hilbert curve covering the tile grid
+     *
+     * @param tilesX number of tile columns
+     * @param tilesY number of tile rows
+     * @return tile indices in curve order
+     */
+    static int[] hilbertOrder(int tilesX, int tilesY) {
+        int n = 1;
+        while (n < Math.max(tilesX, tilesY)) n <<= 1;
+        int[] result = new int[tilesX * tilesY];
+        int count = 0;
+        for (long d = 0; d < (long) n * n; ++d) {
+            // convert the distance along the curve to coordinates
+            int x = 0, y = 0;
+            long t = d;
+            for (int s = 1; s < n; s <<= 1) {
+                int rx = (int) (1 & (t / 2));
+                int ry = (int) (1 & (t ^ rx));
+                if (ry == 0) {
+                    if (rx == 1) {
+                        x = s - 1 - x;
+                        y = s - 1 - y;
+                    }
+                    int tmp = x;
+                    x = y;
+                    y = tmp;
+                }
+                x += s * rx;
+                y += s * ry;
+                t /= 4;
+            }
+            if (x < tilesX && y < tilesY)
+                result[count++] = y * tilesX + x;
+        }
+        return result;
+    }
+
+    /**
+     * Orders the tiles in rings around the image centre, each ring walked by angle
+     *
+     * @param tilesX number of tile columns
+     * @param tilesY number of tile rows
+     * @return tile indices from the centre outwards
+     */
+    static int[] spiralOrder(int tilesX, int tilesY) {
+        double cx = (tilesX - 1) / 2d, cy = (tilesY - 1) / 2d;
+        Integer[] tiles = new Integer[tilesX * tilesY];
+        for (int i = 0; i < tiles.length; ++i) tiles[i] = i;
+        Arrays.sort(tiles, Comparator
+                .comparingDouble((Integer t) -> Math.max(Math.abs(t % tilesX - cx), Math.abs(t / tilesX - cy)))
+                .thenComparingDouble(t -> Math.atan2(t / tilesX - cy, t % tilesX - cx)));
+        return Arrays.stream(tiles).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Fork/join task rendering a range of tiles in order, splitting it in halves
+     * so that idle threads can steal one half
+     */
+    private class TileTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        /** The tile renderer - tasks are only run in memory, never serialized */
+        private final transient TileRenderer renderer;
+
+        TileTask(int from, int to, TileRenderer renderer) {
+            this.from = from;
+            this.to = to;
+            this.renderer = renderer;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped) return;
+            if (to - from == 1) {
+                int tile = order[from];
+                int x0 = tile % tilesX * tileSize, y0 = tile / tilesX * tileSize;
+                int x1 = Math.min(x0 + tileSize, nX), y1 = Math.min(y0 + tileSize, nY);
+                renderer.render(x0, y0, x1, y1);
+                pixelsDone.add((long) (x1 - x0) * (y1 - y0));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(from, middle, renderer), new TileTask(middle, to, renderer));
+        }
+    }
+
+    /**
+     * Render all the tiles on the pool and wait for them to finish (or for the render to be stopped),
+     * printing the progress percentage
+     *
+     * @param pool     the pool running the tile tasks
+     * @param renderer the tile renderer
+     * @param interval print time interval in seconds, 0 if printing is not required
+     * @throws InterruptedException if the waiting thread is interrupted - the remaining tiles are skipped
+     */
+    void render(ForkJoinPool pool, TileRenderer renderer, double interval) throws InterruptedException {
+        if (order.length == 0) return;
+        ForkJoinTask<Void> task = pool.submit(new TileTask(0, order.length, renderer));
+        long printInterval = (long) (interval * 1000);
+        long total = (long) nX * nY;
+        int lastPrinted = -1;
+        while (true) {
+            try {
+                if (printInterval == 0) {
+                    task.get();
+                } else {
+                    task.get(printInterval, TimeUnit.MILLISECONDS);
+                    if (!stopped) System.out.println("100.0%");
+                }
+                return;
+            } catch (TimeoutException e) {
+                int percentage = (int) (1000L * pixelsDone.sum() / total);
+                if (percentage != lastPrinted) {
+                    lastPrinted = percentage;
+                    System.out.println(percentage / 10d + "%");
+                }
+            } catch (InterruptedException e) {
+                // the tiles in progress are still waited for, so no pixel is written after the render is left
+                stop();
+                task.quietlyJoin();
+                throw e;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stop the render - the tiles that have not been started are skipped, and the waiting
+     * {@link #render} returns once the tiles in progress are done
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Number of pixels rendered so far
+     *
+     * @return the pixel count
+     */
+    long pixelsDone() {
+        return pixelsDone.sum();
+    }
+}
@@ -0,0 +1,357 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import geometries.Polygon;
+import geometries.Sphere;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Primary visibility of a window of the image found by rasterization instead of ray tracing - for every
+ * pixel center, the id of the closest geometry and its depth along the camera direction (a z-buffer).<br/>
+ * Polygons and triangles are projected and rasterized with edge functions and perspective-correct depth,
+ * and spheres by their screen-space bounds with an analytic ray test per pixel. Every other geometry
+ * (and a polygon or sphere that is not entirely in front of the camera) is kept in a fallback group
+ * that is ray traced.<br/>
+ * The hit of a pixel is the exact intersection of its ray with the rasterized geometry, together with
+ * the hits of the fallback group, so it is the hit that ray tracing finds. If the exact intersection
+ * misses the rasterized geometry (a pixel center on its edge), the pixel is ray traced.
+ * The buffer is filled once, by bands of rows in parallel, and is only read afterwards.
+ */
+class VisibilityBuffer {
+    /**
+     * Camera projection of an image resolution
+     *
+     * @param place    camera location
+     * @param vTo      camera direction
+     * @param vRight   camera right direction
+     * @param vUp      camera up direction
+     * @param distance view plane distance
+     * @param rx       pixel width on the view plane
+     * @param ry       pixel height on the view plane
+     * @param nX       number of pixels in a row
+     * @param nY       number of pixels in a column
+     */
+    record Projection(Point place, Vector vTo, Vector vRight, Vector vUp, double distance,
+                      double rx, double ry, int nX, int nY) {
+    }
+
+    /** Geometry id of a pixel that no rasterized geometry covers */
+    private static final int NONE = -1;
+    /** Minimal depth of a rasterized vertex - nearer geometries are ray traced */
+    private static final double NEAR = 1e-6;
+    /**
+     * Tolerance of the barycentric coordinates of a covered pixel center - a pixel center on an edge is
+     * covered in spite of the rounding of the projection, and the exact intersection decides
+     */
+    private static final double EDGE = 1e-8;
+    /** Number of rows of a rasterized band */
+    private static final int BAND = 16;
+
+    private final RayTracerBase rayTracer;
+    private final int x0;
+    private final int y0;
+    private final int width;
+    private final int height;
+    /** Id of the closest rasterized geometry of every pixel of the window */
+    private final int[] ids;
+    /** Depth of the closest rasterized geometry of every pixel of the window */
+    private final double[] depths;
+    /** The rasterized geometries by id */
+    private final List<Intersectable> geometries = new ArrayList<>();
+    /** Geometries that are ray traced, null if there are none */
+    private final Geometries fallback;
+
+    /** Screen position and inverse depth of the vertices of the rasterized triangles, 9 numbers per triangle */
+    private double[] triangles = new double[0];
+    /** Geometry id of every rasterized triangle */
+    private int[] triangleIds = new int[0];
+    private int triangleCount = 0;
+    /** Camera space center, squared radius and screen bounds of the rasterized spheres, 8 numbers per sphere */
+    private double[] spheres = new double[0];
+    /** Geometry id of every rasterized sphere */
+    private int[] sphereIds = new int[0];
+    private int sphereCount = 0;
+
+    private final Projection projection;
+    /** Image position of the view plane center */
+    private final double centerX;
+    private final double centerY;
+
+    /**
+     * Rasterizes the geometries of the scene into a window of the image
+     *
+     * @param rayTracer  the ray tracer of the scene
+     * @param projection the camera projection of the image
+     * @param x0         left column of the window
+     * @param y0         top row of the window
+     * @param width      width of the window
+     * @param height     height of the window
+     * @param threads    number of threads rasterizing the bands of the window
+     */
+    VisibilityBuffer(RayTracerBase rayTracer, Projection projection,
+                     int x0, int y0, int width, int height, int threads) {
+        this.rayTracer = rayTracer;
+        this.projection = projection;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.width = width;
+        this.height = height;
+        this.centerX = (projection.nX() - 1) / 2d;
+        this.centerY = (projection.nY() - 1) / 2d;
+        this.ids = new int[width * height];
+        this.depths = new double[width * height];
+        Arrays.fill(ids, NONE);
+        Arrays.fill(depths, Double.POSITIVE_INFINITY);
+
+        List<Intersectable> traced = new ArrayList<>();
+        collect(rayTracer.scene.geometries, traced);
+        fallback = traced.isEmpty() ? null : new Geometries(traced.toArray(new Intersectable[0]));
+
+        int bands = (height + BAND - 1) / BAND;
+        RenderJob.sharedPool(threads).submit(() -> IntStream.range(0, bands).parallel().forEach(band ->
+                rasterize(y0 + band * BAND, Math.min(y0 + (band + 1) * BAND, y0 + height)))).join();
+    }
+
+    /**
+     * Finds the closest hit of the ray through the center of a pixel of the window
+     *
+     * @param j   X-axis index of the pixel
+     * @param i   Y-axis index of the pixel
+     * @param ray the ray through the pixel center
+     * @return the closest hit, or null if the ray hits nothing
+     */
+    GeoPoint closestHit(int j, int i, Ray ray) {
+        if (j < x0 || j >= x0 + width || i < y0 || i >= y0 + height)
+            return rayTracer.findClosestIntersection(ray);
+        int id = ids[(i - y0) * width + j - x0];
+        List<GeoPoint> hits = new ArrayList<>();
+        if (id != NONE) {
+            List<GeoPoint> covered = geometries.get(id).findGeoIntersections(ray);
+            if (covered == null) return rayTracer.findClosestIntersection(ray);
+            hits.addAll(covered);
+        }
+        if (fallback != null) {
+            List<GeoPoint> traced = fallback.findGeoIntersections(ray);
+            if (traced != null) hits.addAll(traced);
+        }
+        return ray.findClosestGeoPoint(hits);
+    }
+
+    /**
+     * The closest rasterized geometry of a pixel of the window
+     *
+     * @param j X-axis index of the pixel
+     * @param i Y-axis index of the pixel
+     * @return the geometry, or null if no rasterized geometry covers the pixel center
+     */
+    Intersectable geometryAt(int j, int i) {
+        int id = ids[(i - y0) * width + j - x0];
+        return id == NONE ? null : geometries.get(id);
+    }
+
+    /**
+     * Depth of the closest rasterized geometry of a pixel of the window along the camera direction
+     *
+     * @param j X-axis index of the pixel
+     * @param i Y-axis index of the pixel
+     * @return the depth, infinity if no rasterized geometry covers the pixel center
+     */
+    double depthAt(int j, int i) {
+        return depths[(i - y0) * width + j - x0];
+    }
+
+    /**
+     * Adds the geometries of a group (recursively) to the rasterized ones or to the traced ones
+     *
+     * @param geometry the geometry or the group
+     * @param traced   the geometries to ray trace
+     */
+    private void collect(Intersectable geometry, List<Intersectable> traced) {
+        if (geometry instanceof Geometries group) {
+            for (Intersectable member : group.getGeometries()) collect(member, traced);
+        } else if (!(geometry instanceof Polygon polygon && addPolygon(polygon))
+                && !(geometry instanceof Sphere sphere && addSphere(sphere))) {
+            traced.add(geometry);
+        }
+    }
+
+    /**
+     * Projects a polygon as a fan of triangles
+     *
+     * @param polygon the polygon
+     * @return false if a vertex is not in front of the camera, so the polygon must be ray traced
+     */
+    private boolean addPolygon(Polygon polygon) {
+        List<Point> vertices = polygon.getVertices();
+        double[] screen = new double[3 * vertices.size()];
+        for (int v = 0; v < vertices.size(); ++v) {
+            double[] camera = toCamera(vertices.get(v));
+            if (camera[2] < NEAR) return false;
+            screen[3 * v] = centerX + camera[0] * projection.distance() / (camera[2] * projection.rx());
+            screen[3 * v + 1] = centerY - camera[1] * projection.distance() / (camera[2] * projection.ry());
+            screen[3 * v + 2] = 1 / camera[2];
+        }
+        int id = geometries.size();
+        geometries.add(polygon);
+        for (int v = 1; v < vertices.size() - 1; ++v) {
+            if (triangleCount == triangleIds.length) {
+                triangleIds = Arrays.copyOf(triangleIds, Math.max(16, 2 * triangleCount));
+                triangles = Arrays.copyOf(triangles, 9 * triangleIds.length);
+            }
+            System.arraycopy(screen, 0, triangles, 9 * triangleCount, 3);
+            System.arraycopy(screen, 3 * v, triangles, 9 * triangleCount + 3, 6);
+            triangleIds[triangleCount++] = id;
+        }
+        return true;
+    }
+
+    /**
+     * Projects the screen bounds of a sphere - the bounds of the camera space box around it
+     *
+     * @param sphere the sphere
+     * @return false if the sphere is not entirely in front of the camera, so it must be ray traced
+     */
+    private boolean addSphere(Sphere sphere) {
+        double[] center = toCamera(sphere.getCenter());
+        double r = sphere.getRadius();
+        if (center[2] - r < NEAR) return false;
+        double minJ = Double.POSITIVE_INFINITY, maxJ = Double.NEGATIVE_INFINITY;
+        double minI = Double.POSITIVE_INFINITY, maxI = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; ++corner) {
+            double z = center[2] + ((corner & 4) == 0 ? -r : r);
+            double j = centerX + (center[0] + ((corner & 1) == 0 ? -r : r)) * projection.distance() / (z * projection.rx());
+            double i = centerY - (center[1] + ((corner & 2) == 0 ? -r : r)) * projection.distance() / (z * projection.ry());
+            minJ = Math.min(minJ, j);
+            maxJ = Math.max(maxJ, j);
+            minI = Math.min(minI, i);
+            maxI = Math.max(maxI, i);
+        }
+        if (sphereCount == sphereIds.length) {
+            sphereIds = Arrays.copyOf(sphereIds, Math.max(16, 2 * sphereCount));
+            spheres = Arrays.copyOf(spheres, 8 * sphereIds.length);
+        }
+        double[] record = {center[0], center[1], center[2], r * r, minJ, maxJ, minI, maxI};
+        System.arraycopy(record, 0, spheres, 8 * sphereCount, 8);
+        sphereIds[sphereCount++] = geometries.size();
+        geometries.add(sphere);
+        return true;
+    }
+
+    /**
+     * Rasterizes all the triangles and spheres into a band of rows of the window
+     *
+     * @param top    first row of the band
+     * @param bottom row after the last row of the band
+     */
+    private void rasterize(int top, int bottom) {
+        for (int t = 0; t < triangleCount; ++t)
+            rasterizeTriangle(9 * t, triangleIds[t], top, bottom);
+        for (int s = 0; s < sphereCount; ++s)
+            rasterizeSphere(8 * s, sphereIds[s], top, bottom);
+    }
+
+    /**
+     * Rasterizes a triangle into a band of rows: a pixel center inside the triangle (or on its edge,
+     * see {@link #EDGE}) takes the triangle if it is nearer than the current depth of the pixel
+     *
+     * @param offset offset of the triangle in the triangle array
+     * @param id     geometry id of the triangle
+     * @param top    first row of the band
+     * @param bottom row after the last row of the band
+     */
+    private void rasterizeTriangle(int offset, int id, int top, int bottom) {
+        double ja = triangles[offset], ia = triangles[offset + 1], za = triangles[offset + 2];
+        double jb = triangles[offset + 3], ib = triangles[offset + 4], zb = triangles[offset + 5];
+        double jc = triangles[offset + 6], ic = triangles[offset + 7], zc = triangles[offset + 8];
+        int fromI = Math.max(top, (int) Math.ceil(Math.min(ia, Math.min(ib, ic))));
+        int toI = Math.min(bottom - 1, (int) Math.floor(Math.max(ia, Math.max(ib, ic))));
+        int fromJ = Math.max(x0, (int) Math.ceil(Math.min(ja, Math.min(jb, jc))));
+        int toJ = Math.min(x0 + width - 1, (int) Math.floor(Math.max(ja, Math.max(jb, jc))));
+        if (fromI > toI || fromJ > toJ) return;
+        double area = (jb - ja) * (ic - ia) - (ib - ia) * (jc - ja);
+        // an edge-on triangle is not hit by the rays
+        if (area == 0) return;
+
+        for (int i = fromI; i <= toI; ++i)
+            for (int j = fromJ; j <= toJ; ++j) {
+                // barycentric coordinates by the edge functions, positive inside for both windings
+                double a = ((jb - j) * (ic - i) - (ib - i) * (jc - j)) / area;
+                double b = ((jc - j) * (ia - i) - (ic - i) * (ja - j)) / area;
+                double c = 1 - a - b;
+                if (a < -EDGE || b < -EDGE || c < -EDGE) continue;
+                depth(j, i, 1 / (a * za + b * zb + c * zc), id);
+            }
+    }
+
+    /**
+     * Rasterizes a sphere into a band of rows: every pixel in its screen bounds is tested by the
+     * ray through its center
+     *
+     * @param offset offset of the sphere in the sphere array
+     * @param id     geometry id of the sphere
+     * @param top    first row of the band
+     * @param bottom row after the last row of the band
+     */
+    private void rasterizeSphere(int offset, int id, int top, int bottom) {
+        double cx = spheres[offset], cy = spheres[offset + 1], cz = spheres[offset + 2], r2 = spheres[offset + 3];
+        int fromJ = Math.max(x0, (int) Math.ceil(spheres[offset + 4]));
+        int toJ = Math.min(x0 + width - 1, (int) Math.floor(spheres[offset + 5]));
+        int fromI = Math.max(top, (int) Math.ceil(spheres[offset + 6]));
+        int toI = Math.min(bottom - 1, (int) Math.floor(spheres[offset + 7]));
+        double d = projection.distance();
+        double c = cx * cx + cy * cy + cz * cz - r2;
+
+        for (int i = fromI; i <= toI; ++i)
+            for (int j = fromJ; j <= toJ; ++j) {
+                // the ray direction in camera space, with the view plane distance as its depth
+                double u = (j - centerX) * projection.rx(), w = -(i - centerY) * projection.ry();
+                double a = u * u + w * w + d * d;
+                double b = u * cx + w * cy + d * cz;
+                double discriminant = b * b - a * c;
+                if (discriminant <= 0) continue;
+                // the camera is out of the sphere, so the nearer root is the visible hit
+                depth(j, i, (b - Math.sqrt(discriminant)) / a * d, id);
+            }
+    }
+
+    /**
+     * Keeps a geometry at a pixel if it is nearer than the current one
+     *
+     * @param j     X-axis index of the pixel
+     * @param i     Y-axis index of the pixel
+     * @param depth depth of the geometry at the pixel
+     * @param id    geometry id
+     */
+    private void depth(int j, int i, double depth, int id) {
+        int pixel = (i - y0) * width + j - x0;
+        if (depth < depths[pixel]) {
+            depths[pixel] = depth;
+            ids[pixel] = id;
+        }
+    }
+
+    /**
+     * Camera space coordinates of a point - along the right, up and view directions
+     *
+     * @param point the point
+     * @return the coordinates
+     */
+    private double[] toCamera(Point point) {
+        Point place = projection.place();
+        double x = point.getX() - place.getX(), y = point.getY() - place.getY(), z = point.getZ() - place.getZ();
+        Vector right = projection.vRight(), up = projection.vUp(), to = projection.vTo();
+        return new double[]{
+                x * right.getX() + y * right.getY() + z * right.getZ(),
+                x * up.getX() + y * up.getY() + z * up.getZ(),
+                x * to.getX() + y * to.getY() + z * to.getZ()};
+    }
+}
@@ -0,0 +1,414 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import lighting.LightSource;
+import lighting.LightTree;
+import primitives.*;
+import primitives.Vector;
+import scene.Scene;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static primitives.Util.alignZero;
+
+/**
+ * A ray tracer that processes the rays of a batch breadth-first (as a wavefront) instead of
+ * recursing depth-first per ray. Every bounce of the batch is a separate stage: the closest hits
+ * of all the rays of the bounce are found, then the shadow rays of all the hits are queued and
+ * traced, and then the reflected and refracted rays of all the hits make the queue of the next
+ * bounce. Each stage is a tight loop over the queue arrays, so the same geometry and light code
+ * runs over and over instead of interleaving primary, shadow and secondary work.<br/>
+ * The color of a ray is accumulated along its paths with per-path weights - the product of the
+ * reflection and refraction coefficients along the path - which are also the recursion
+ * coefficients of {@link SimpleRayTracer}, so the colors are the colors of the recursive tracer
+ * (up to the rounding of the order of the sums).<br/>
+ * Optionally, the reflected and refracted rays of every bounce are sorted for coherence before they are
+ * traced: they are binned by the cell of their origin in a grid over the origins of the bounce and by
+ * the octant of their direction, so rays that start close to each other and go the same way are traced
+ * one after the other. The tracer counts how many consecutive secondary rays, in the order they are
+ * traced, share a bin - see {@link #getCoherence()}.
+ *
+ * @author Nethanel hasid and Ori Meged
+ */
+public class WavefrontRayTracer extends SimpleRayTracer {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // The rays of one bounce of a batch, with the index of the batch ray of their path and the path weight
+    private static final class PathQueue {
+        private final Ray[] rays;
+        private final int[] origins;
+        // Path weights, three numbers per ray
+        private final double[] weights;
+        private int size = 0;
+
+        private PathQueue(int capacity) {
+            rays = new Ray[capacity];
+            origins = new int[capacity];
+            weights = new double[3 * capacity];
+        }
+
+        private void add(Ray ray, int origin, Double3 weight) {
+            rays[size] = ray;
+            origins[size] = origin;
+            weights[3 * size] = weight.d1();
+            weights[3 * size + 1] = weight.d2();
+            weights[3 * size + 2] = weight.d3();
+            ++size;
+        }
+
+        private Double3 weight(int path) {
+            return new Double3(weights[3 * path], weights[3 * path + 1], weights[3 * path + 2]);
+        }
+
+        // Bins of the rays: the octant of the direction, then the Morton index of the origin cell
+        // in a GRID x GRID x GRID grid over the bounding box of the origins
+        private int[] bins() {
+            double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+            double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (int p = 0; p < size; ++p) {
+                Point o = rays[p].getPoint();
+                double[] c = {o.getX(), o.getY(), o.getZ()};
+                for (int a = 0; a < 3; ++a) {
+                    min[a] = Math.min(min[a], c[a]);
+                    max[a] = Math.max(max[a], c[a]);
+                }
+            }
+            int[] bins = new int[size];
+            for (int p = 0; p < size; ++p) {
+                Point o = rays[p].getPoint();
+                Vector d = rays[p].getDirection();
+                int morton = interleave(cell(o.getX(), min[0], max[0]))
+                        | interleave(cell(o.getY(), min[1], max[1])) << 1
+                        | interleave(cell(o.getZ(), min[2], max[2])) << 2;
+                int octant = (d.getX() < 0 ? 1 : 0) | (d.getY() < 0 ? 2 : 0) | (d.getZ() < 0 ? 4 : 0);
+                bins[p] = octant << 3 * GRID_BITS | morton;
+            }
+            return bins;
+        }
+
+        // Reorders the rays by bins with a counting sort, keeping the order of the rays of a bin
+        private PathQueue sorted(int[] bins) {
+            int[] starts = new int[BINS + 1];
+            for (int p = 0; p < size; ++p) ++starts[bins[p] + 1];
+            for (int b = 0; b < BINS; ++b) starts[b + 1] += starts[b];
+            PathQueue result = new PathQueue(size);
+            result.size = size;
+            for (int p = 0; p < size; ++p) {
+                int q = starts[bins[p]]++;
+                result.rays[q] = rays[p];
+                result.origins[q] = origins[p];
+                System.arraycopy(weights, 3 * p, result.weights, 3 * q, 3);
+            }
+            return result;
+        }
+
+        // The grid cell of a coordinate in a range
+        private static int cell(double value, double min, double max) {
+            return max <= min ? 0 : Math.min(GRID - 1, (int) ((value - min) / (max - min) * GRID));
+        }
+
+        // Spreads the bits of a cell index to every third bit
+        private static int interleave(int cell) {
+            int result = 0;
+            for (int bit = 0; bit < GRID_BITS; ++bit)
+                result |= (cell >> bit & 1) << 3 * bit;
+            return result;
+        }
+    }
+
+    // The lights that may affect the hits of a bounce: the hit, the light and its direction, the number
+    // of shadow rays of the pair and the sum of their transparency factors
+    private static final class LightQueue {
+        private int[] paths = new int[16];
+        private LightSource[] lights = new LightSource[16];
+        private Vector[] directions = new Vector[16];
+        private double[] nl = new double[16];
+        private double[] distances = new double[16];
+        private int[] samples = new int[16];
+        // Weights of the effects of sampled lights, 1 when all the lights are shaded
+        private double[] weights = new double[16];
+        // Sums of the transparency factors of the shadow rays, three numbers per entry
+        private double[] ktr = new double[48];
+        private int size = 0;
+
+        private int add(int path, LightSource light, Vector l, double nl, double distance, int samples,
+                        double weight) {
+            if (size == paths.length) {
+                int capacity = 2 * size;
+                paths = Arrays.copyOf(paths, capacity);
+                lights = Arrays.copyOf(lights, capacity);
+                directions = Arrays.copyOf(directions, capacity);
+                this.nl = Arrays.copyOf(this.nl, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+                this.samples = Arrays.copyOf(this.samples, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                ktr = Arrays.copyOf(ktr, 3 * capacity);
+            }
+            paths[size] = path;
+            lights[size] = light;
+            directions[size] = l;
+            this.nl[size] = nl;
+            distances[size] = distance;
+            this.samples[size] = samples;
+            weights[size] = weight;
+            return size++;
+        }
+    }
+
+    // The shadow rays of a bounce, with the light queue entry of each
+    private static final class ShadowQueue {
+        private Ray[] rays = new Ray[16];
+        private int[] entries = new int[16];
+        private int size = 0;
+
+        private void add(Ray ray, int entry) {
+            if (size == rays.length) {
+                rays = Arrays.copyOf(rays, 2 * size);
+                entries = Arrays.copyOf(entries, 2 * size);
+            }
+            rays[size] = ray;
+            entries[size++] = entry;
+        }
+    }
+
+    // Number of bits of a cell index of the origin grid of the coherence bins
+    private static final int GRID_BITS = 3;
+    // Number of cells of the origin grid along an axis
+    private static final int GRID = 1 << GRID_BITS;
+    // Number of coherence bins - 8 octants times the cells of the origin grid
+    private static final int BINS = 8 << 3 * GRID_BITS;
+
+    // Coherence sorting flag - secondary rays are sorted by origin cell and direction octant before they are traced
+    private boolean coherenceSorting = false;
+    // Number of pairs of consecutively traced secondary rays in the same bin
+    private final LongAdder coherentPairs = new LongAdder();
+    // Number of pairs of consecutively traced secondary rays
+    private final LongAdder rayPairs = new LongAdder();
+
+    // Constructor initializing the scene
+    public WavefrontRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    // Sets the number of points for soft shadow calculation
+    @Override
+    public WavefrontRayTracer setNumberOfPoints(int numberOfPoints) {
+        super.setNumberOfPoints(numberOfPoints);
+        return this;
+    }
+
+    // Enables or disables adaptive soft shadows
+    @Override
+    public WavefrontRayTracer setAdaptiveShadows(boolean adaptive) {
+        super.setAdaptiveShadows(adaptive);
+        return this;
+    }
+
+    // Sets the number of lights sampled at every hit, 0 for shading all the lights
+    @Override
+    public WavefrontRayTracer setLightSampling(int lightSamples) {
+        super.setLightSampling(lightSamples);
+        return this;
+    }
+
+    // Enables or disables the sorting of the secondary rays of every bounce for coherence
+    public WavefrontRayTracer setCoherenceSorting(boolean sorting) {
+        this.coherenceSorting = sorting;
+        return this;
+    }
+
+    // Returns the coherence of the secondary rays traced so far: the fraction of the pairs of consecutively
+    // traced rays that have the same origin cell and direction octant (0 if no secondary rays were traced)
+    public double getCoherence() {
+        long pairs = rayPairs.sum();
+        return pairs == 0 ? 0 : (double) coherentPairs.sum() / pairs;
+    }
+
+    // Traces a single ray as a batch of one ray
+    @Override
+    public Color traceRay(Ray ray) {
+        return trace(new Ray[]{ray}, null)[0];
+    }
+
+    // Calculates the color of a ray from its already found closest intersection, as a batch of one ray
+    @Override
+    public Color shade(GeoPoint gp, Ray ray) {
+        return trace(new Ray[]{ray}, new GeoPoint[]{gp})[0];
+    }
+
+    // Traces a list of rays (for super sampling) as one batch and averages the color
+    @Override
+    public Color traceRays(List<Ray> rays) {
+        Color color = Color.BLACK;
+        for (Color sample : trace(rays.toArray(new Ray[0]), null))
+            color = color.add(sample);
+        return color.reduce(rays.size());
+    }
+
+    // Traces a batch of rays breadth-first
+    @Override
+    public Color[] traceBatch(Ray[] rays) {
+        return trace(rays, null);
+    }
+
+    // Traces a batch of rays bounce by bounce - the closest hits of the batch rays may be given
+    private Color[] trace(Ray[] rays, GeoPoint[] primaryHits) {
+        double[] sums = new double[3 * rays.length];
+        PathQueue queue = new PathQueue(rays.length);
+        for (int r = 0; r < rays.length; ++r)
+            queue.add(rays[r], r, INITIAL_K);
+
+        GeoPoint[] hits = primaryHits;
+        for (int level = MAX_CALC_COLOR_LEVEL; queue.size > 0; --level) {
+            if (hits == null) hits = closestHits(queue);
+            Vector[] normals = shadeLocal(queue, hits, level == MAX_CALC_COLOR_LEVEL, sums);
+            queue = level == 1 ? new PathQueue(0) : secondaryRays(queue, hits, normals);
+            hits = null;
+        }
+
+        Color[] colors = new Color[rays.length];
+        for (int r = 0; r < rays.length; ++r)
+            colors[r] = new Color(sums[3 * r], sums[3 * r + 1], sums[3 * r + 2]);
+        return colors;
+    }
+
+    // Finds the closest hits of all the rays of a bounce
+    private GeoPoint[] closestHits(PathQueue queue) {
+        GeoPoint[] hits = new GeoPoint[queue.size];
+        for (int p = 0; p < queue.size; ++p)
+            hits[p] = findClosestIntersection(queue.rays[p]);
+        return hits;
+    }
+
+    // Adds the local effects of all the hits of a bounce (background, emission, ambient light for the batch
+    // rays, and the diffuse and specular effects of the lights through their shadow rays) and returns the normals
+    private Vector[] shadeLocal(PathQueue queue, GeoPoint[] hits, boolean primary, double[] sums) {
+        Vector[] normals = new Vector[queue.size];
+        LightQueue lights = new LightQueue();
+        ShadowQueue shadows = new ShadowQueue();
+        for (int p = 0; p < queue.size; ++p) {
+            GeoPoint gp = hits[p];
+            if (gp == null) {
+                accumulate(sums, queue, p, scene.background);
+                continue;
+            }
+            TileDependencies.touch(gp.geometry);
+            accumulate(sums, queue, p, gp.geometry.getEmission());
+            if (primary) accumulate(sums, queue, p, scene.ambientLight.getIntensity());
+            Vector v = queue.rays[p].getDirection(), n = gp.geometry.getNormal(gp.point);
+            normals[p] = n;
+            double nv = alignZero(n.dotProduct(v));
+            if (nv == 0) continue;
+
+            if (lightSamples > 0) {
+                touchSampledLights(gp.point);
+                for (LightTree.LightSample sample : sampleLights(gp.point))
+                    queueLight(p, gp, n, nv, sample.light(), sample.weight(), lights, shadows);
+            } else
+                for (LightSource light : scene.lights)
+                    queueLight(p, gp, n, nv, light, 1, lights, shadows);
+        }
+
+        // the shadow rays of all the hits
+        for (int s = 0; s < shadows.size; ++s) {
+            int entry = shadows.entries[s];
+            Double3 t = transmittance(shadows.rays[s], hits[lights.paths[entry]].point, lights.distances[entry],
+                    lights.lights[entry]);
+            lights.ktr[3 * entry] += t.d1() / lights.samples[entry];
+            lights.ktr[3 * entry + 1] += t.d2() / lights.samples[entry];
+            lights.ktr[3 * entry + 2] += t.d3() / lights.samples[entry];
+        }
+
+        // the light effects by the transparency of their shadow rays
+        for (int e = 0; e < lights.size; ++e) {
+            int p = lights.paths[e];
+            Double3 ktr = new Double3(lights.ktr[3 * e], lights.ktr[3 * e + 1], lights.ktr[3 * e + 2]);
+            if (ktr.product(queue.weight(p)).scale(lights.weights[e]).lowerThan(MIN_CALC_COLOR_K)) continue;
+            GeoPoint gp = hits[p];
+            Material mat = gp.geometry.getMaterial();
+            Color li = lights.lights[e].getIntensity(gp.point).scale(ktr);
+            if (lights.weights[e] != 1) li = li.scale(lights.weights[e]);
+            double nl = lights.nl[e];
+            accumulate(sums, queue, p, li.scale(calcDiffusive(mat, nl))
+                    .add(li.scale(calcSpecular(mat, normals[p], lights.directions[e], nl, queue.rays[p].getDirection()))));
+        }
+        return normals;
+    }
+
+    // Queues a light that may affect a hit, with the shadow rays toward it (or resolves its adaptive soft shadow)
+    private void queueLight(int p, GeoPoint gp, Vector n, double nv, LightSource light, double weight,
+                            LightQueue lights, ShadowQueue shadows) {
+        TileDependencies.touch(light);
+        Vector l = light.getL(gp.point).normalize();
+        double nl = alignZero(n.dotProduct(l));
+        if (nl * nv <= 0) return;
+        double[] samples = sampleBuffer();
+        int count = light.getPoints(gp.point, numberOfPoints, samples);
+        int entry = lights.add(p, light, l, nl, light.getDistance(gp.point), Math.max(count, 1), weight);
+        if (count > 0 && adaptiveShadows) {
+            // adaptive refinement depends on the probe results, so it is not queued
+            Double3 ktr = adaptiveHitPercentage(gp, light, n, samples, count);
+            lights.ktr[3 * entry] = ktr.d1();
+            lights.ktr[3 * entry + 1] = ktr.d2();
+            lights.ktr[3 * entry + 2] = ktr.d3();
+            return;
+        }
+        if (count == 0) {
+            shadows.add(new Ray(gp.point, l.scale(-1), n), entry);
+            return;
+        }
+        for (int s = 0; s < count; ++s) {
+            Vector dir = sampleDirection(gp.point, samples, s);
+            if (dir == null) continue;
+            shadows.add(new Ray(gp.point, dir.scale(-1), n), entry);
+        }
+    }
+
+    // Creates the queue of the next bounce: the refracted and reflected rays of the hits whose path weight
+    // is still significant, sorted by their bins when coherence sorting is enabled
+    private PathQueue secondaryRays(PathQueue queue, GeoPoint[] hits, Vector[] normals) {
+        PathQueue next = new PathQueue(2 * queue.size);
+        for (int p = 0; p < queue.size; ++p) {
+            GeoPoint gp = hits[p];
+            if (gp == null) continue;
+            Material mat = gp.geometry.getMaterial();
+            Vector v = queue.rays[p].getDirection();
+            Double3 k = queue.weight(p);
+            Double3 kt = k.product(mat.getKT()), kr = k.product(mat.getKR());
+            if (!kt.lowerThan(MIN_CALC_COLOR_K)) {
+                Ray ray = constructRefractedRay(gp, v, normals[p]);
+                if (ray != null) next.add(ray, queue.origins[p], kt);
+            }
+            if (!kr.lowerThan(MIN_CALC_COLOR_K)) {
+                Ray ray = constructReflectedRay(gp, v, normals[p]);
+                if (ray != null) next.add(ray, queue.origins[p], kr);
+            }
+        }
+        if (next.size < 2) return next;
+
+        int[] bins = next.bins();
+        if (coherenceSorting) {
+            next = next.sorted(bins);
+            Arrays.sort(bins);
+        }
+        int coherent = 0;
+        for (int p = 1; p < next.size; ++p)
+            if (bins[p] == bins[p - 1]) ++coherent;
+        coherentPairs.add(coherent);
+        rayPairs.add(next.size - 1);
+        return next;
+    }
+
+    // Adds a color scaled by the weight of a path to the sum of its batch ray
+    private static void accumulate(double[] sums, PathQueue queue, int path, Color color) {
+        Double3 rgb = color.getRgb();
+        int r = 3 * queue.origins[path];
+        sums[r] += rgb.d1() * queue.weights[3 * path];
+        sums[r + 1] += rgb.d2() * queue.weights[3 * path + 1];
+        sums[r + 2] += rgb.d3() * queue.weights[3 * path + 2];
+    }
+}
@@ -5,6 +5,8 @@ import lighting.AmbientLight;
 import lighting.LightSource;
 import primitives.Color;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,7 +16,9 @@ import java.util.List;
  *
  * @author Nethanel hasid and Ori meged
  */
-public class Scene {
+public class Scene implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * The geometries in the scene
@@ -36,7 +40,7 @@ public class Scene {
      */
     public AmbientLight ambientLight = AmbientLight.NONE;
 
-    public List<LightSource> lights = new LinkedList<>();
+    public LinkedList<LightSource> lights = new LinkedList<>();
 
     /**
      * Constructor for scene
@@ -84,11 +88,11 @@ public class Scene {
     /**
      * Set the lights of the lightsource
      *
-     * @param lights
-     * @return
+     * @param lights the lights, copied into the light list of the scene
+     * @return This Scene object.
      */
     public Scene setLights(List<LightSource> lights) {
-        this.lights = lights;
+        this.lights = new LinkedList<>(lights);
         return this;
     }
 
@@ -0,0 +1,183 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the Heightfield class
+ */
+class HeightfieldTests {
+
+    private final double DELTA = 0.000001;
+
+    /**
+     * A 3x3 samples (2x2 cells) terrain with a single peak of height 2 in its middle sample
+     */
+    private final Heightfield peak = new Heightfield(Point.ZERO, 1, 1, 3, 3,
+            new float[]{0, 0, 0, 0, 2, 0, 0, 0, 0});
+
+    @Test
+    void testConstructor() {
+        // =============== Boundary Values Tests ==================
+        // TC11: Heights array does not match the grid
+        assertThrows(IllegalArgumentException.class,
+                () -> new Heightfield(Point.ZERO, 1, 1, 3, 3, new float[8]),
+                "Constructed a heightfield with a wrong heights array");
+        // TC12: A single row of samples
+        assertThrows(IllegalArgumentException.class,
+                () -> new Heightfield(Point.ZERO, 1, 1, 3, 1, new float[3]),
+                "Constructed a heightfield with a single row of samples");
+        // TC13: Zero cell size
+        assertThrows(IllegalArgumentException.class,
+                () -> new Heightfield(Point.ZERO, 0, 1, 2, 2, new float[4]),
+                "Constructed a heightfield with a zero cell size");
+    }
+
+    @Test
+    void testGetNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Flat terrain - the normal is the Y axis
+        Heightfield flat = new Heightfield(Point.ZERO, 1, 1, 2, 2, new float[4]);
+        assertEquals(new Vector(0, 1, 0), flat.getNormal(new Point(0.5, 0, 0.3)), "Bad normal of a flat terrain");
+        // TC02: On a slope of the peak the normal leans away from the peak
+        Vector n = peak.getNormal(new Point(0.2, 0.2, 0.1));
+        assertEquals(1, n.length(), DELTA, "Heightfield normal is not a unit vector");
+        assertTrue(n.getY() > 0 && n.getZ() < 0, "Bad normal on a slope");
+    }
+
+    @Test
+    void testFindIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray straight down on the peak (1 point)
+        List<Point> result = peak.findIntersections(new Ray(new Point(1, 10, 1), new Vector(0, -1, 0)));
+        assertNotNull(result, "Ray should hit the peak");
+        assertEquals(List.of(new Point(1, 2, 1)), result, "Bad hit on the peak");
+        // TC02: Slanted ray crossing cells along both axes before hitting a slope (1 point)
+        result = peak.findIntersections(new Ray(new Point(1.9, 6, 0.6), new Vector(-1.2, -5, 0.6)));
+        assertNotNull(result, "Ray should hit the slope");
+        assertEquals(List.of(new Point(0.7, 1, 1.2)), result, "Bad hit on the slope");
+        // TC03: Ray passing above the terrain (0 points)
+        assertNull(peak.findIntersections(new Ray(new Point(-1, 3, 1), new Vector(1, 0, 0))),
+                "Ray above the terrain");
+        // TC04: Ray outside the grid bounds (0 points)
+        assertNull(peak.findIntersections(new Ray(new Point(5, 10, 5), new Vector(0, -1, 0))),
+                "Ray outside the grid");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Ray starting below the terrain going away from it (0 points)
+        assertNull(peak.findIntersections(new Ray(new Point(0.5, -1, 0.5), new Vector(0, -1, 0))),
+                "Ray going away under the terrain");
+        // TC12: Ray straight down on a cell diagonal (1 point)
+        result = peak.findIntersections(new Ray(new Point(1.5, 10, 1.5), new Vector(0, -1, 0)));
+        assertNotNull(result, "Ray should hit the cell diagonal");
+        assertEquals(1, result.get(0).getY(), DELTA, "Bad hit on the cell diagonal");
+    }
+
+    /**
+     * Finds the closest intersection of a ray with a heightfield by intersecting every cell as its two triangles
+     *
+     * @param origin   the position of the grid sample (0, 0) at height 0
+     * @param cellX    the cell size along the X axis
+     * @param cellZ    the cell size along the Z axis
+     * @param samples  number of grid samples along each axis
+     * @param heights  heights of the samples
+     * @param ray      the ray
+     * @return the closest intersection point, null if there is none
+     */
+    private static Point bruteForce(Point origin, double cellX, double cellZ, int samples, float[] heights, Ray ray) {
+        Point closest = null;
+        for (int k = 0; k < samples - 1; ++k)
+            for (int i = 0; i < samples - 1; ++i) {
+                Point p00 = sample(origin, cellX, cellZ, samples, heights, i, k);
+                Point p10 = sample(origin, cellX, cellZ, samples, heights, i + 1, k);
+                Point p01 = sample(origin, cellX, cellZ, samples, heights, i, k + 1);
+                Point p11 = sample(origin, cellX, cellZ, samples, heights, i + 1, k + 1);
+                for (Triangle triangle : new Triangle[]{new Triangle(p00, p10, p11), new Triangle(p00, p11, p01)}) {
+                    List<Point> points = triangle.findIntersections(ray);
+                    if (points == null) continue;
+                    for (Point point : points)
+                        if (closest == null || point.distance(ray.getPoint()) < closest.distance(ray.getPoint()))
+                            closest = point;
+                }
+            }
+        return closest;
+    }
+
+    /**
+     * Returns the position of a grid sample
+     *
+     * @param origin  the position of the grid sample (0, 0) at height 0
+     * @param cellX   the cell size along the X axis
+     * @param cellZ   the cell size along the Z axis
+     * @param samples number of grid samples along each axis
+     * @param heights heights of the samples
+     * @param i       the sample column
+     * @param k       the sample row
+     * @return the sample position
+     */
+    private static Point sample(Point origin, double cellX, double cellZ, int samples, float[] heights, int i, int k) {
+        return new Point(origin.getX() + i * cellX, origin.getY() + heights[k * samples + i],
+                origin.getZ() + k * cellZ);
+    }
+
+    @Test
+    void testFindIntersectionsLargeGrid() {
+        // A 33x33 samples terrain with a single conical peak in its middle and flat margins,
+        // so the rays cross mipmap blocks that lie wholly below them
+        int samples = 33;
+        Point origin = new Point(-3, 1, 2);
+        double cellX = 0.7, cellZ = 1.3;
+        float[] heights = new float[samples * samples];
+        for (int k = 0; k < samples; ++k)
+            for (int i = 0; i < samples; ++i)
+                heights[k * samples + i] = (float) Math.max(0, 6 - 0.75 * Math.hypot(i - 16, k - 16));
+        Heightfield terrain = new Heightfield(origin, cellX, cellZ, samples, samples, heights);
+        double sizeX = cellX * (samples - 1), sizeZ = cellZ * (samples - 1);
+        Random random = new Random(42);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Rays from above in random directions hit the terrain where its cells do
+        for (int r = 0; r < 300; ++r) {
+            Point head = new Point(origin.getX() + random.nextDouble() * sizeX, 1 + 8 + random.nextDouble() * 4,
+                    origin.getZ() + random.nextDouble() * sizeZ);
+            Vector direction = new Vector(random.nextDouble() * 2 - 1, -0.2 - random.nextDouble(),
+                    random.nextDouble() * 2 - 1);
+            assertHit(bruteForce(origin, cellX, cellZ, samples, heights, new Ray(head, direction)),
+                    terrain.findIntersections(new Ray(head, direction)));
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Rays grazing the flat margins from outside the grid - they cross the skipped blocks
+        // and hit the peak, the far flat margin or nothing
+        for (int r = 0; r < 300; ++r) {
+            Point head = new Point(origin.getX() - 1, 1 + 0.001 + random.nextDouble() * 0.5,
+                    origin.getZ() + random.nextDouble() * sizeZ);
+            Vector direction = new Vector(1, -random.nextDouble() * 0.05, random.nextDouble() - 0.5);
+            assertHit(bruteForce(origin, cellX, cellZ, samples, heights, new Ray(head, direction)),
+                    terrain.findIntersections(new Ray(head, direction)));
+        }
+    }
+
+    /**
+     * Checks the intersections of a ray with a heightfield against its closest intersection
+     *
+     * @param expected the closest intersection, null if there is none
+     * @param actual   the intersections of the heightfield
+     */
+    private void assertHit(Point expected, List<Point> actual) {
+        if (expected == null) {
+            assertNull(actual, "Intersection of a ray that misses the cells");
+            return;
+        }
+        assertNotNull(actual, "Missed intersection, expected " + expected);
+        assertEquals(1, actual.size(), "Wrong number of intersections");
+        assertEquals(0, expected.distance(actual.getFirst()), 1e-6, "Wrong intersection");
+    }
+}
@@ -0,0 +1,78 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the SphereCloud class
+ */
+class SphereCloudTests {
+
+    /**
+     * Two unit spheres centred at (0,0,0) and (5,0,0) and a small sphere of radius 0.5 at (0,5,0)
+     */
+    private final SphereCloud cloud = new SphereCloud(
+            new float[]{0, 0, 0, 5, 0, 0, 0, 5, 0},
+            new float[]{1, 1, 0.5f});
+
+    @Test
+    void testConstructor() {
+        // =============== Boundary Values Tests ==================
+        // TC11: Centers do not match the radii
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new float[]{0, 0, 0, 1}, new float[]{1}),
+                "Constructed a sphere cloud with mismatching arrays");
+        // TC12: Zero radius
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new float[]{0, 0, 0}, new float[]{0}),
+                "Constructed a sphere cloud with a zero radius");
+        // TC13: Empty cloud
+        assertThrows(IllegalArgumentException.class,
+                () -> new SphereCloud(new float[0], new float[0]),
+                "Constructed an empty sphere cloud");
+    }
+
+    @Test
+    void testGetNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point on the second sphere
+        assertEquals(new Vector(1, 0, 0), cloud.getNormal(new Point(6, 0, 0)), "Bad normal of the second sphere");
+        // TC02: Point off all the spheres
+        assertThrows(IllegalArgumentException.class, () -> cloud.getNormal(new Point(3, 0, 0)),
+                "Normal computed for a point that is not on the cloud");
+    }
+
+    @Test
+    void testFindIntersections() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Ray crossing both spheres on the X axis (4 points)
+        Point p0 = new Point(-3, 0, 0);
+        List<Point> result = cloud.findIntersections(new Ray(p0, new Vector(1, 0, 0)));
+        assertNotNull(result, "Ray should cross the spheres");
+        assertEquals(List.of(new Point(-1, 0, 0), new Point(1, 0, 0), new Point(4, 0, 0), new Point(6, 0, 0)),
+                result.stream().sorted(Comparator.comparingDouble(p -> p.distance(p0))).toList(),
+                "Bad hits of the spheres");
+        // TC02: Ray crossing only the small sphere (2 points)
+        result = cloud.findIntersections(new Ray(new Point(0, 5, 3), new Vector(0, 0, -1)));
+        assertNotNull(result, "Ray should cross the small sphere");
+        assertEquals(2, result.size(), "Wrong number of points");
+        // TC03: Ray missing all the spheres (0 points)
+        assertNull(cloud.findIntersections(new Ray(new Point(2.5, 0, 3), new Vector(0, 0, -1))),
+                "Ray between the spheres");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Ray starting inside a sphere (1 point)
+        result = cloud.findIntersections(new Ray(new Point(5, 0, 0.5), new Vector(0, 0, 1)));
+        assertEquals(List.of(new Point(5, 0, 1)), result, "Bad hit from inside a sphere");
+        // TC12: Ray tangent to a sphere (0 points)
+        assertNull(cloud.findIntersections(new Ray(new Point(-3, 1, 0), new Vector(1, 0, 0))),
+                "Ray tangent to a sphere");
+    }
+}
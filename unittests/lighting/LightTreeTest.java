@@ -0,0 +1,90 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the LightTree class
+ */
+class LightTreeTest {
+    /**
+     * Returns the brightness of the intensity of a light at a point
+     *
+     * @param light the light
+     * @param p     the point
+     * @return the sum of the intensity components
+     */
+    private static double brightness(LightSource light, Point p) {
+        Double3 rgb = light.getIntensity(p).getRgb();
+        return rgb.d1() + rgb.d2() + rgb.d3();
+    }
+
+    @Test
+    void testSample() {
+        List<LightSource> lights = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            Point position = new Point(i % 20 * 10, 5, i / 20 * 10);
+            Color color = new Color(i % 7 * 10, 30, i % 3 * 20);
+            lights.add(i % 4 == 0
+                    ? new SpotLight(color, position, new Vector(i % 5 - 2, -1, 1)).setKL(0.01).setKQ(0.001)
+                    : new PointLight(color, position).setKL(0.01).setKQ(0.001));
+        }
+        DirectionalLight sun = new DirectionalLight(new Color(10, 10, 10), new Vector(0, -1, 0));
+        lights.add(sun);
+        LightTree tree = new LightTree(lights);
+        Point p = new Point(30, 0, 40);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The weighted sampled lights estimate the sum of all the lights without bias
+        double exact = 0;
+        for (LightSource light : lights) exact += brightness(light, p);
+        double estimate = 0;
+        int keys = 2000;
+        for (int key = 0; key < keys; ++key)
+            for (LightTree.LightSample sample : tree.sample(p, key, 8))
+                estimate += sample.weight() * brightness(sample.light(), p) / keys;
+        assertEquals(exact, estimate, exact * 0.02, "Biased estimate");
+        // TC02: The lights without position are always shaded, and the budget bounds the sampled lights
+        List<LightTree.LightSample> samples = tree.sample(p, 7, 8);
+        assertSame(sun, samples.get(0).light(), "Directional light not shaded");
+        assertEquals(1, samples.get(0).weight(), 1e-12, "Wrong weight of the directional light");
+        assertTrue(samples.size() <= 9, "Too many sampled lights");
+        // TC03: A spot light turned away from the point is never sampled
+        SpotLight away = new SpotLight(new Color(1000, 1000, 1000), new Point(0, 0, 0), new Vector(-1, 0, 0));
+        LightTree spots = new LightTree(List.of(away, new PointLight(new Color(1, 1, 1), new Point(50, 0, 0)),
+                new PointLight(new Color(1, 1, 1), new Point(60, 0, 0))));
+        for (int key = 0; key < 100; ++key)
+            for (LightTree.LightSample sample : spots.sample(new Point(10, 0, 0), key, 1))
+                assertNotSame(away, sample.light(), "Sampled a light that doesn't reach the point");
+        // TC04: The reaching lights are the lights that a sample may choose and the lights that are always shaded
+        List<LightSource> reaching = new ArrayList<>();
+        spots.forEachReaching(new Point(10, 0, 0), reaching::add);
+        assertEquals(2, reaching.size(), "Wrong number of reaching lights");
+        assertFalse(reaching.contains(away), "A light that doesn't reach the point");
+        reaching.clear();
+        tree.forEachReaching(p, reaching::add);
+        assertTrue(reaching.contains(sun), "Directional light not reaching");
+        for (int key = 0; key < 100; ++key)
+            for (LightTree.LightSample sample : tree.sample(p, key, 8))
+                assertTrue(reaching.contains(sample.light()), "Sampled light not reaching");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A budget of all the lights shades every light with weight 1
+        samples = tree.sample(p, 7, 200);
+        assertEquals(lights.size(), samples.size(), "Not all the lights are shaded");
+        for (LightTree.LightSample sample : samples)
+            assertEquals(1, sample.weight(), 1e-12, "Wrong weight of a light");
+        // TC12: The tree of a light list is rebuilt when the list is resized
+        assertTrue(tree.isBuiltFrom(lights), "Tree not of its lights");
+        lights.remove(sun);
+        assertFalse(tree.isBuiltFrom(lights), "Tree of resized lights");
+    }
+}
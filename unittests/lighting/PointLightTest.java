@@ -0,0 +1,76 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.HaltonSampler;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the PointLight class
+ */
+class PointLightTest {
+    private final Point position = new Point(0, 10, 0);
+
+    /**
+     * Checks that the points are on the light disk facing a point
+     *
+     * @param points the points of the light disk
+     * @param p      the point the disk faces
+     * @param size   the radius of the disk
+     */
+    private void assertDisk(Point[] points, Point p, double size) {
+        Vector to = p.subtract(position).normalize();
+        for (Point point : points) {
+            if (point.equals(position)) continue;
+            Vector offset = point.subtract(position);
+            assertEquals(0, offset.dotProduct(to), 1e-9, "Point not on the disk facing the point");
+            assertTrue(offset.length() <= size + 1e-9, "Point out of the disk");
+        }
+    }
+
+    @Test
+    void testGetPoints() {
+        Point below = new Point(0, 0, 0), aside = new Point(20, 10, 5);
+        PointLight random = new PointLight(new Color(100, 100, 100), position).setSize(2);
+        PointLight sampled = new PointLight(new Color(100, 100, 100), position).setSize(2)
+                .setSampler(new HaltonSampler());
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The disk faces every point, and not only the first one
+        for (PointLight light : new PointLight[]{random, sampled}) {
+            assertDisk(light.getPoints(below, 16), below, 2);
+            assertDisk(light.getPoints(aside, 16), aside, 2);
+        }
+        // TC02: A point gets the same points from any thread and in any order
+        Point[] expected = random.getPoints(aside, 16);
+        IntStream.range(0, 64).parallel().forEach(i -> {
+            random.getPoints(new Point(i, -i, 3), 16);
+            assertArrayEquals(expected, random.getPoints(aside, 16), "Points depend on the calls order");
+        });
+        // TC03: Another number of points
+        assertEquals(12, sampled.getPoints(below, 12).length, "Wrong number of points");
+        // TC04: The coordinates filled into a caller-owned buffer are the points
+        double[] buffer = new double[3 * 20];
+        for (PointLight light : new PointLight[]{random, sampled}) {
+            Point[] points = light.getPoints(aside, 16);
+            assertEquals(16, light.getPoints(aside, 16, buffer), "Wrong number of filled points");
+            for (int i = 0; i < 16; ++i)
+                assertEquals(points[i], new Point(buffer[3 * i], buffer[3 * i + 1], buffer[3 * i + 2]),
+                        "Wrong filled point");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A light without size has no points
+        assertNull(new PointLight(new Color(100, 100, 100), position).getPoints(below, 16), "Points of a point light");
+        assertEquals(0, new PointLight(new Color(100, 100, 100), position).getPoints(below, 16, buffer),
+                "Filled points of a point light");
+        // TC12: A number of points that the mirrored pattern doesn't divide
+        assertTrue(Arrays.stream(random.getPoints(below, 6)).allMatch(p -> p != null), "Missing points");
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class RayTest {
 
@@ -36,4 +37,15 @@ class RayTest {
         // BV03: last point in the list
         assertEquals(p3, new Ray(new Point(3.1, 0, 0), v).findClosestPoint(list), "last point in the list");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConstructorFromCoordinates() {
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the direction is normalized like the vector constructor does
+        assertEquals(new Ray(Point.ZERO, new Vector(1, 2, 2)), new Ray(Point.ZERO, 1, 2, 2), "direction from coordinates");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: zero direction
+        assertThrows(IllegalArgumentException.class, () -> new Ray(Point.ZERO, 0, 0, 0), "zero direction");
+    }
+}
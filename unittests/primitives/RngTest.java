@@ -0,0 +1,34 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the Rng class
+ */
+class RngTest {
+
+    @Test
+    void testUniform() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The same key, sample and dimension always give the same number
+        assertEquals(Rng.uniform(12, 3, 1), Rng.uniform(12, 3, 1), "Numbers are not reproducible");
+        // TC02: Different samples and dimensions give different numbers
+        assertNotEquals(Rng.uniform(12, 3, 1), Rng.uniform(12, 4, 1), "Same number for different samples");
+        assertNotEquals(Rng.uniform(12, 3, 0), Rng.uniform(12, 3, 1), "Same number for different dimensions");
+        // TC03: The numbers are uniform in [0,1) - the mean of many numbers is about a half
+        double sum = 0;
+        for (int i = 0; i < 10000; ++i) {
+            double u = Rng.uniform(5, i, 0);
+            assertTrue(u >= 0 && u < 1, "Number out of [0,1)");
+            sum += u;
+        }
+        assertEquals(0.5, sum / 10000, 0.02, "Numbers are not uniform");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Zero key, sample and dimension
+        double u = Rng.uniform(0, 0, 0);
+        assertTrue(u >= 0 && u < 1, "Number out of [0,1) for zero key");
+    }
+}
@@ -0,0 +1,81 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the Sampler implementations
+ */
+class SamplerTest {
+    private final Sampler[] samplers = {
+            new StratifiedSampler(), new HaltonSampler(), new SobolSampler(), new BlueNoiseSampler()};
+
+    /**
+     * Counts the points in every cell of a grid over the unit square
+     *
+     * @param points the points
+     * @param count  number of points
+     * @param cols   grid columns
+     * @param rows   grid rows
+     * @return point count per cell
+     */
+    private int[] histogram(double[] points, int count, int cols, int rows) {
+        int[] cells = new int[cols * rows];
+        for (int i = 0; i < count; ++i)
+            ++cells[(int) (points[2 * i + 1] * rows) * cols + (int) (points[2 * i] * cols)];
+        return cells;
+    }
+
+    @Test
+    void testGenerate() {
+        double[] points = new double[2 * 16];
+        double[] again = new double[2 * 16];
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: All the points are in the unit square and a seed always gives the same points
+        for (Sampler sampler : samplers) {
+            sampler.generate(16, 7, points);
+            for (double v : points)
+                assertTrue(v >= 0 && v < 1, sampler.getClass().getSimpleName() + " point out of the unit square");
+            sampler.generate(16, 7, again);
+            assertArrayEquals(points, again, sampler.getClass().getSimpleName() + " is not reproducible");
+        }
+
+        // TC02: 16 stratified points - one point in every cell of a 4x4 grid
+        new StratifiedSampler().generate(16, 3, points);
+        for (int c : histogram(points, 16, 4, 4))
+            assertEquals(1, c, "Stratified points are not stratified");
+
+        // TC03: 16 scrambled Sobol points form a (0,4,2)-net - one point in every elementary rectangle
+        new SobolSampler().generate(16, 11, points);
+        for (int cols = 1; cols <= 16; cols *= 2)
+            for (int c : histogram(points, 16, cols, 16 / cols))
+                assertEquals(1, c, "Sobol points are not a net with " + cols + " columns");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single point
+        for (Sampler sampler : samplers) {
+            sampler.generate(1, 0, points);
+            assertTrue(points[0] >= 0 && points[0] < 1 && points[1] >= 0 && points[1] < 1,
+                    sampler.getClass().getSimpleName() + " single point out of the unit square");
+        }
+    }
+
+    @Test
+    void testToDisk() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A corner of the square goes to the disk boundary
+        double[] points = {1, 0.5, 0.75, 0.75};
+        Sampler.toDisk(2, points);
+        assertEquals(1, points[0], 1e-12, "Bad disk point x");
+        assertEquals(0, points[1], 1e-12, "Bad disk point y");
+        assertEquals(0.5, Math.hypot(points[2], points[3]), 1e-12, "Bad disk point radius");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The center of the square is the center of the disk
+        points = new double[]{0.5, 0.5};
+        Sampler.toDisk(1, points);
+        assertArrayEquals(new double[]{0, 0}, points, 1e-12, "Center not mapped to the center");
+    }
+}
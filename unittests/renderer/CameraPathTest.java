@@ -0,0 +1,61 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the CameraPath class
+ */
+class CameraPathTest {
+    /** Camera builder with all the settings except the path parameters */
+    private final Camera.Builder builder = Camera.getBuilder()
+            .setVpSize(100, 100).setVpDistance(100)
+            .setRayTracer(new SimpleRayTracer(new Scene("Test")))
+            .setImageWriter(new ImageWriter("Test", 10, 10));
+
+    /** Path from the origin to (10, 0, 0) in two seconds, looking along -Z */
+    private final CameraPath path = new CameraPath()
+            .addKeyframe(1, Point.ZERO, new Vector(0, 0, -1), Vector.AXIS_Y)
+            .addKeyframe(3, new Point(10, 0, 0), new Vector(0, 0, -1), Vector.AXIS_Y);
+
+    @Test
+    void testApply() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Between two keyframes the location is interpolated
+        assertEquals(new Point(2.5, 0, 0), path.apply(builder, 1.5).build().getPlace(), "Bad interpolated location");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: At a keyframe time
+        assertEquals(new Point(10, 0, 0), path.apply(builder, 3).build().getPlace(), "Bad location at a keyframe");
+        // TC12: Before the first keyframe the camera stays at it
+        assertEquals(Point.ZERO, path.apply(builder, 0).build().getPlace(), "Bad location before the path");
+        // TC13: After the last keyframe the camera stays at it
+        assertEquals(new Point(10, 0, 0), path.apply(builder, 5).build().getPlace(), "Bad location after the path");
+    }
+
+    @Test
+    void testAddKeyframe() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Direction vectors that are not orthogonal
+        assertThrows(IllegalArgumentException.class,
+                () -> new CameraPath().addKeyframe(0, Point.ZERO, new Vector(0, 1, -1), Vector.AXIS_Y),
+                "Non-orthogonal direction accepted");
+
+        // TC02: A distance in some of the keyframes only
+        assertThrows(IllegalArgumentException.class,
+                () -> path.addKeyframe(4, Point.ZERO, new Vector(0, 0, -1), Vector.AXIS_Y, 50),
+                "Partial distance keyframes accepted");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Keyframe at the time of the previous one
+        assertThrows(IllegalArgumentException.class,
+                () -> path.addKeyframe(3, Point.ZERO, new Vector(0, 0, -1), Vector.AXIS_Y),
+                "Keyframe out of order accepted");
+        // TC12: Empty path
+        assertThrows(IllegalStateException.class, () -> new CameraPath().getStartTime(), "Empty path accepted");
+    }
+}
@@ -1,12 +1,36 @@
 package renderer;
 
+import geometries.Intersectable;
+import geometries.Intersectable.Intersection;
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+import primitives.HaltonSampler;
+import primitives.Material;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 import scene.Scene;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 //import scene.Scene;
 
 /**
@@ -67,5 +91,369 @@ class CameraTest {
 
     }
 
+    /**
+     * Test method for
+     * {@link renderer.Camera.Builder#setCropWindow(int, int, int, int)} and
+     * {@link renderer.Camera.Builder#setPreviewScale(int)}.
+     */
+    @Test
+    void testCropAndPreview() {
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: Crop window out of the image
+        Camera camera = cameraBuilder.setVpSize(8, 8).setCropWindow(0, 0, 2, 2).build();
+        assertThrows(IllegalArgumentException.class, camera::createRenderJob, "Crop window out of the image");
+        cameraBuilder.setCropWindow(0, 0, 0, 0);
+
+        // EP02: Preview scale that is not a power of 2
+        assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setPreviewScale(3), "Bad preview scale");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: Crop window with a zero width only
+        assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setCropWindow(0, 0, 0, 1),
+                "Crop window with zero width");
+        // BV02: Preview scale above 8
+        assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setPreviewScale(16), "Too large preview scale");
+    }
+
+    /**
+     * Test method for {@link RenderJob#rerender(Object...)} and {@link RenderJob#rerenderMoved}.
+     */
+    @Test
+    void testRerender() {
+        Scene scene = new Scene("Test");
+        Sphere left = new Sphere(new Point(-5, 0, -20), 3);
+        Sphere right = new Sphere(new Point(5, 0, -20), 3);
+        left.setEmission(new Color(100, 0, 0));
+        right.setEmission(new Color(0, 100, 0));
+        scene.geometries.add(left, right);
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene))
+                .setImageWriter(new ImageWriter("Test", 32, 32))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setTileSize(8)
+                .build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: A material edit re-renders only the tiles of the edited geometry, as a full render would
+        RenderJob job = camera.createRenderJob().trackDependencies().run();
+        left.setEmission(new Color(0, 0, 100));
+        int tiles = job.rerender(left);
+        assertTrue(tiles > 0 && tiles < 16, "Wrong number of re-rendered tiles");
+        FrameBuffer expected = camera.createRenderJob().run().getFrameBuffer();
+        for (int y = 0; y < 32; ++y)
+            for (int x = 0; x < 32; ++x)
+                assertEquals(expected.getPixel(x, y), job.getFrameBuffer().getPixel(x, y), "Wrong re-rendered pixel");
+
+        // EP02: A geometry replaced by one in another place re-renders its old and new tiles, as a full render would
+        Sphere moved = new Sphere(new Point(0, 5, -20), 2);
+        moved.setEmission(new Color(0, 100, 100));
+        scene.geometries.remove(right);
+        scene.geometries.add(moved);
+        tiles = job.rerenderMoved(right, moved);
+        assertTrue(tiles > 0 && tiles < 16, "Wrong number of re-rendered tiles after a move");
+        expected = camera.createRenderJob().run().getFrameBuffer();
+        for (int y = 0; y < 32; ++y)
+            for (int x = 0; x < 32; ++x)
+                assertEquals(expected.getPixel(x, y), job.getFrameBuffer().getPixel(x, y), "Wrong pixel after a move");
+
+        // EP03: A render that has not tracked its dependencies
+        assertThrows(IllegalStateException.class, () -> camera.createRenderJob().run().rerender(left),
+                "Re-render without dependencies");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: An edited object that no tile has used
+        assertEquals(0, job.rerender(new Sphere(new Point(0, 0, 20), 1)), "Unused geometry re-rendered");
+        // BV02: A light that the light sampling hardly ever chooses still changes the sampling of every tile
+        Scene lit = new Scene("Test");
+        lit.geometries.add(new Plane(new Point(0, 0, -20), new Vector(0, 0, 1)).setMaterial(new Material().setKD(0.5)));
+        PointLight weak = new PointLight(new Color(0.01, 0.01, 0.01), new Point(5, 5, -10));
+        lit.lights.add(new PointLight(new Color(300, 300, 300), new Point(-5, -5, -10)));
+        lit.lights.add(weak);
+        Camera sampling = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(lit).setLightSampling(1))
+                .setImageWriter(new ImageWriter("Test", 32, 32))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setTileSize(8)
+                .build();
+        assertEquals(16, sampling.createRenderJob().trackDependencies().run().rerender(weak),
+                "Tiles of a light that was not sampled not re-rendered");
+        // BV03: A geometry seen only by the adaptive corner samples on the border of two tile columns
+        // re-renders the tiles on both sides of the border
+        Scene border = new Scene("Test");
+        Sphere sliver = new Sphere(new Point(0, 0, -20), 0.05);
+        sliver.setEmission(new Color(100, 0, 0));
+        border.geometries.add(sliver, new Plane(new Point(0, 0, -30), new Vector(0, 0, 1)));
+        Camera adaptive = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(border))
+                .setImageWriter(new ImageWriter("Test", 16, 16))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setNumberOfRays(4).setAdaptive(true)
+                .setTileSize(8)
+                .build();
+        assertEquals(4, adaptive.createRenderJob().trackDependencies().run().rerender(sliver),
+                "Tiles of a shared corner not re-rendered");
+        // BV04: A light at the hit of a pixel has no direction to probe a moved geometry on
+        lit.lights.add(new PointLight(new Color(10, 10, 10), new Point(0.5, 0.5, -20)));
+        assertEquals(0, sampling.createRenderJob().trackDependencies().run()
+                .rerenderMoved(new Sphere(new Point(0, 0, 20), 1)), "Geometry out of view re-rendered");
+    }
+
+    /**
+     * Test method for {@link Camera#renderBatch(int, int, int[], int[])} by the tile scheduler.
+     */
+    @Test
+    void testRenderBatch() {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(new Sphere(new Point(0, 0, -20), 3).setEmission(new Color(100, 0, 0)));
+        List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene) {
+                    @Override
+                    public Color[] traceBatch(Ray[] rays) {
+                        batches.add(rays.length);
+                        return super.traceBatch(rays);
+                    }
+                })
+                .setImageWriter(new ImageWriter("Test", 16, 16))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setTileSize(8);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: One ray per pixel - every tile is one batch, with the colors of the pixel scheduler
+        // EP02: Sampled pixels - the rays of all the samples of a tile are one batch
+        for (int rays : new int[]{1, 4}) {
+            builder.setNumberOfRays(rays).setSampler(new HaltonSampler());
+            FrameBuffer expected = builder.setScheduler(Camera.RenderScheduler.PIXEL).build()
+                    .createRenderJob().run().getFrameBuffer();
+            batches.clear();
+            FrameBuffer tiled = builder.setScheduler(Camera.RenderScheduler.TILES).build()
+                    .createRenderJob().run().getFrameBuffer();
+            assertEquals(Collections.nCopies(4, 64 * rays), batches, "Wrong batches");
+            for (int y = 0; y < 16; ++y)
+                for (int x = 0; x < 16; ++x)
+                    assertEquals(expected.getPixel(x, y), tiled.getPixel(x, y), "Wrong pixel of a batch");
+        }
 
+        // =============== Boundary Values Tests ==================
+        // BV01: Adaptive sampling - the pixels are not batched
+        batches.clear();
+        builder.setNumberOfRays(4).setSampler(null).setAdaptive(true).build().createRenderJob().run();
+        assertTrue(batches.isEmpty(), "Adaptive pixels batched");
+    }
+
+    /**
+     * Test method for {@link Camera#createCornerCache(int)}.
+     */
+    @Test
+    void testCreateCornerCache() {
+        cameraBuilder.setVpSize(3, 3).setAdaptive(true);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: The sub-grid is as fine as the finest region of the recursive adaptive sampling,
+        // which halves a region while it is at least twice pixel / floor(sqrt(rays)) wide
+        int[][] resolutions = {{4, 2}, {9, 2}, {16, 4}, {36, 4}, {49, 4}, {64, 8}, {100, 8}};
+        for (int[] resolution : resolutions)
+            assertEquals(resolution[1], cameraBuilder.setNumberOfRays(resolution[0]).build().createCornerCache(3)
+                    .getResolution(), "Wrong resolution of " + resolution[0] + " rays");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: A single ray per pixel and regular super sampling have no corners
+        assertNull(cameraBuilder.setNumberOfRays(1).build().createCornerCache(3), "Corners of a single ray");
+        assertNull(cameraBuilder.setNumberOfRays(9).setAdaptive(false).build().createCornerCache(3),
+                "Corners of regular super sampling");
+    }
+
+    /**
+     * Test method for {@link Camera#renderImageAsync()} with a failing ray tracer.
+     */
+    @Test
+    void testRenderFailure() {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(new Sphere(new Point(0, 0, -20), 3) {
+            @Override
+            protected List<Intersection> calculateIntersectionsHelper(Ray ray) {
+                throw new IllegalStateException("Broken geometry");
+            }
+        });
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene))
+                .setImageWriter(new ImageWriter("Test", 8, 8))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setMultithreading(2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: The failure of a pixel fails the future of the pixel scheduler
+        // EP02: The failure of a pixel fails the future of the tile scheduler
+        for (Camera.RenderScheduler scheduler : Camera.RenderScheduler.values()) {
+            CompletableFuture<RenderJob> future = builder.setScheduler(scheduler).build().renderImageAsync();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS),
+                    "Render of a broken geometry did not fail");
+            assertTrue(e.getCause() instanceof IllegalStateException, "Wrong failure");
+        }
+    }
+
+    /**
+     * Test method for {@link RenderJob#runAsync(Duration, java.util.function.Consumer)} stopped by
+     * cancelling its future or by its deadline.
+     */
+    @Test
+    void testRenderCancel() {
+        AtomicInteger tracing = new AtomicInteger(), traced = new AtomicInteger();
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(new Scene("Test")) {
+                    @Override
+                    public Color shade(Intersectable.GeoPoint gp, Ray ray) {
+                        tracing.incrementAndGet();
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        traced.incrementAndGet();
+                        tracing.decrementAndGet();
+                        return super.shade(gp, ray);
+                    }
+                })
+                .setImageWriter(new ImageWriter("Test", 64, 64))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setMultithreading(4).setTileSize(8);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: Cancelling the future of the pixel scheduler stops the render
+        // EP02: Cancelling the future of the tile scheduler stops the render
+        // EP03: The deadline of the pixel scheduler stops the render
+        // EP04: The deadline of the tile scheduler stops the render
+        for (Camera.RenderScheduler scheduler : Camera.RenderScheduler.values()) {
+            RenderJob job = builder.setScheduler(scheduler).build().createRenderJob();
+            CompletableFuture<RenderJob> future = job.runAsync();
+            sleep(50);
+            assertTrue(future.cancel(true), "Render not cancelled");
+            assertTrue(future.isCancelled() && job.isCancelled(), "Render not cancelled");
+            assertStopped(tracing, traced);
+
+            CompletableFuture<RenderJob> timed = builder.build().createRenderJob()
+                    .runAsync(Duration.ofMillis(50), null);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> timed.get(10, TimeUnit.SECONDS),
+                    "Render not stopped by its deadline");
+            assertTrue(e.getCause() instanceof TimeoutException, "Wrong failure");
+            assertStopped(tracing, traced);
+        }
+    }
+
+    /**
+     * Test method for {@link RenderJob#runProgressive(Duration, int, java.util.function.Consumer)},
+     * {@link Camera#renderProgressive(Duration, int, boolean)} and
+     * {@link Camera#resumeProgressive(Path, Duration, int, boolean)}.
+     */
+    @Test
+    void testRenderProgressive(@TempDir Path dir) {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(new Sphere(new Point(0, 0, -20), 3).setEmission(new Color(100, 0, 0)));
+        AtomicInteger samples = new AtomicInteger();
+        Color[][] image = new Color[8][8];
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(new SimpleRayTracer(scene) {
+                    @Override
+                    public Color traceRay(Ray ray) {
+                        samples.incrementAndGet();
+                        return super.traceRay(ray);
+                    }
+                })
+                .setImageWriter(new ImageWriter("Test", 8, 8) {
+                    @Override
+                    public void writePixel(int xIndex, int yIndex, Color color) {
+                        image[yIndex][xIndex] = color;
+                    }
+                })
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setMultithreading(2).setTileSize(4);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: The sample cap of the pixel scheduler ends the render, the action runs after every pass
+        // EP02: The sample cap of the tile scheduler ends the render, the action runs after every pass
+        for (Camera.RenderScheduler scheduler : Camera.RenderScheduler.values()) {
+            List<Integer> passes = new ArrayList<>();
+            RenderJob job = builder.setScheduler(scheduler).build().createRenderJob()
+                    .runProgressive(Duration.ofMinutes(1), 3, j -> passes.add(j.getPasses()));
+            assertEquals(List.of(1, 2, 3), passes, "Wrong passes after the actions");
+            assertEquals(3, job.getPasses(), "Wrong number of passes");
+            assertSamples(3, job.getFrameBuffer());
+        }
+
+        // EP03: A checkpointed progressive render is resumed from its first incomplete pass
+        Path file = dir.resolve("progressive.ckpt");
+        builder.setCheckpoint(file).build().renderProgressive(Duration.ofMinutes(1), 2, false);
+        samples.set(0);
+        builder.setCheckpoint(null).build().resumeProgressive(file, Duration.ofMinutes(1), 4, false);
+        assertEquals(2 * 64, samples.get(), "Restored passes rendered again");
+        Color[][] resumed = Arrays.stream(image).map(Color[]::clone).toArray(Color[][]::new);
+        builder.build().renderProgressive(Duration.ofMinutes(1), 4, false);
+        for (int y = 0; y < 8; ++y)
+            for (int x = 0; x < 8; ++x)
+                assertEquals(image[y][x], resumed[y][x], "Wrong pixel of the resumed render");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: The first pass of the pixel scheduler is completed even with no time budget
+        // BV02: The first pass of the tile scheduler is completed even with no time budget
+        for (Camera.RenderScheduler scheduler : Camera.RenderScheduler.values()) {
+            List<Integer> passes = new ArrayList<>();
+            RenderJob job = builder.setScheduler(scheduler).build().createRenderJob()
+                    .runProgressive(Duration.ZERO, 5, j -> passes.add(j.getPasses()));
+            assertEquals(List.of(1), passes, "Wrong passes after the actions");
+            assertEquals(1, job.getPasses(), "Wrong number of passes");
+            assertSamples(1, job.getFrameBuffer());
+        }
+    }
+
+    /**
+     * Checks the number of samples of every pixel of a frame buffer
+     *
+     * @param expected the expected number of samples
+     * @param frame    the frame buffer
+     */
+    private static void assertSamples(int expected, FrameBuffer frame) {
+        for (int y = 0; y < frame.getNy(); ++y)
+            for (int x = 0; x < frame.getNx(); ++x)
+                assertEquals(expected, frame.getSamples(x, y), "Wrong number of samples");
+    }
+
+    /**
+     * Checks that no ray is traced any more
+     *
+     * @param tracing number of the rays being traced
+     * @param traced  number of the rays traced
+     */
+    private static void assertStopped(AtomicInteger tracing, AtomicInteger traced) {
+        assertEquals(0, tracing.get(), "A ray is still traced");
+        int count = traced.get();
+        sleep(20);
+        assertEquals(count, traced.get(), "Rays traced after the render stopped");
+    }
+
+    /**
+     * Sleeps for a while
+     *
+     * @param millis the sleep duration in milliseconds
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
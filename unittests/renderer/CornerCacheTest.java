@@ -0,0 +1,58 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the CornerCache class
+ */
+class CornerCacheTest {
+
+    @Test
+    void testGet() {
+        CornerCache cache = new CornerCache(10, 2);
+        int[] traced = {0};
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A new corner is traced
+        assertEquals(new Color(1, 2, 3), cache.get(3, 4, () -> {
+            ++traced[0];
+            return new Color(1, 2, 3);
+        }), "Bad color of a new corner");
+        // TC02: A known corner is taken from the cache
+        assertEquals(new Color(1, 2, 3), cache.get(3, 4, () -> {
+            ++traced[0];
+            return Color.BLACK;
+        }), "Bad color of a cached corner");
+        assertEquals(1, traced[0], "Corner traced twice");
+        // TC03: The views of two tiles do not share their corners, the view of one tile does
+        CornerCache tile = cache.ofTile(0);
+        assertEquals(new Color(4, 5, 6), tile.get(3, 4, () -> new Color(4, 5, 6)), "Corner shared with a tile");
+        assertEquals(new Color(4, 5, 6), cache.ofTile(0).get(3, 4, () -> Color.BLACK), "Corner of a tile not shared");
+        assertEquals(new Color(7, 8, 9), cache.ofTile(1).get(3, 4, () -> new Color(7, 8, 9)),
+                "Corner shared by two tiles");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Many corners - the tables grow without losing samples
+        for (int gy = 0; gy <= 200; ++gy)
+            for (int gx = 0; gx <= 20; ++gx) {
+                int value = gy * 21 + gx;
+                cache.get(gx, gy, () -> new Color(value, 0, 0));
+            }
+        assertEquals(201 * 21 + 2, cache.size(), "Wrong number of cached corners");
+        assertEquals(new Color(5 * 21 + 7, 0, 0), cache.get(7, 5, () -> Color.BLACK), "Corner lost on growth");
+        // TC12: More corners than the cache holds - the memory is bounded, the recent corners stay cached
+        // and the old ones are traced again
+        CornerCache small = new CornerCache(100, 2);
+        for (int gy = 0; gy < 300; ++gy)
+            for (int gx = 0; gx < 300; ++gx) {
+                int value = gy * 300 + gx;
+                small.get(gx, gy, () -> new Color(value, 0, 0));
+            }
+        assertTrue(small.size() <= small.capacity(), "Cache not bounded");
+        assertEquals(new Color(299 * 300 + 298, 0, 0), small.get(298, 299, () -> Color.BLACK), "Recent corner evicted");
+        assertEquals(Color.BLACK, small.get(0, 0, () -> Color.BLACK), "Old corner not evicted");
+    }
+}
@@ -0,0 +1,62 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the GBuffer class
+ */
+class GBufferTest {
+    private final Sphere sphere = new Sphere(new Point(0, 0, -10), 5);
+    private final Ray ray = new Ray(Point.ZERO, new Vector(0, 0, -1));
+    private final GeoPoint front = new GeoPoint(sphere, new Point(0, 0, -5));
+
+    @Test
+    void testDetectEdges() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Two pixels on the same surface point and a background pixel - the silhouette is marked
+        GBuffer gBuffer = new GBuffer(4, 1);
+        gBuffer.record(0, 0, ray, front, Color.BLACK);
+        gBuffer.record(1, 0, ray, front, Color.BLACK);
+        gBuffer.record(2, 0, ray, null, Color.BLACK);
+        gBuffer.record(3, 0, ray, null, Color.BLACK);
+        assertArrayEquals(new boolean[]{false, true, true, false}, gBuffer.detectEdges(), "Bad silhouette edges");
+
+        // TC02: Same geometry with a color jump (e.g. a shadow boundary)
+        gBuffer = new GBuffer(2, 1);
+        gBuffer.record(0, 0, ray, front, Color.BLACK);
+        gBuffer.record(1, 0, ray, front, new Color(200, 200, 200));
+        assertArrayEquals(new boolean[]{true, true}, gBuffer.detectEdges(), "Color edge not marked");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Single column image - vertical neighbours only
+        gBuffer = new GBuffer(1, 2);
+        gBuffer.record(0, 0, ray, null, Color.BLACK);
+        gBuffer.record(0, 1, ray, null, Color.BLACK);
+        assertArrayEquals(new boolean[]{false, false}, gBuffer.detectEdges(), "Flat background marked");
+    }
+
+    @Test
+    void testIdOf() {
+        Sphere other = new Sphere(new Point(0, 0, -30), 5);
+        GBuffer first = new GBuffer(1, 1), second = new GBuffer(1, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every buffer numbers its own geometries, in the same thread
+        assertEquals(0, first.idOf(sphere), "Wrong id of a new geometry");
+        assertEquals(0, second.idOf(other), "Ids shared by two buffers");
+        assertEquals(1, first.idOf(other), "Wrong id of a second geometry");
+        // TC02: The ids are kept after the local ids of the thread are dropped
+        GBuffer.end();
+        assertEquals(0, first.idOf(sphere), "Id changed after the end of a tile");
+        assertEquals(1, second.idOf(sphere), "Wrong id of a new geometry after the end of a tile");
+        GBuffer.end();
+    }
+}
@@ -0,0 +1,36 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the PixelEstimator class
+ */
+class PixelEstimatorTest {
+
+    @Test
+    void testIsConverged() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Identical samples converge after the minimal number of samples
+        PixelEstimator flat = new PixelEstimator();
+        for (int i = 0; i < 3; ++i) flat.add(new Color(100, 150, 200));
+        assertFalse(flat.isConverged(0.01, 4), "Converged before the minimal number of samples");
+        flat.add(new Color(100, 150, 200));
+        assertTrue(flat.isConverged(0.01, 4), "Flat pixel did not converge");
+        assertEquals(new Color(100, 150, 200), flat.getColor(), "Bad mean of a flat pixel");
+
+        // TC02: Alternating black and white samples do not converge with a tight target
+        PixelEstimator edge = new PixelEstimator();
+        for (int i = 0; i < 16; ++i) edge.add(i % 2 == 0 ? Color.BLACK : new Color(255, 255, 255));
+        assertFalse(edge.isConverged(0.05, 4), "Noisy pixel converged");
+        assertTrue(edge.isConverged(1, 4), "Noisy pixel did not converge with a loose target");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single sample is never trusted
+        PixelEstimator single = new PixelEstimator();
+        single.add(Color.BLACK);
+        assertFalse(single.isConverged(1, 1), "Converged after a single sample");
+    }
+}
@@ -0,0 +1,83 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the RelightBuffer class
+ */
+class RelightBufferTest {
+
+    @Test
+    void testRelight() {
+        Scene scene = new Scene("Test");
+        Material material = new Material().setKD(0.5).setKS(0.5).setShininess(20);
+        scene.geometries.add(new Sphere(new Point(0, 0, -20), 4).setEmission(new Color(50, 0, 0)).setMaterial(material),
+                new Plane(new Point(0, -4, 0), new Vector(0, 1, 0)).setMaterial(new Material().setKD(0.5).setKR(0.5)));
+        PointLight point = new PointLight(new Color(300, 300, 300), new Point(10, 10, 0));
+        DirectionalLight directional = new DirectionalLight(new Color(50, 50, 50), new Vector(0, -1, -1));
+        scene.lights.add(point);
+        scene.lights.add(directional);
+        RayTracerBase rayTracer = new SimpleRayTracer(scene);
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(rayTracer)
+                .setImageWriter(new ImageWriter("Test", 16, 16))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .setNumberOfRays(4)
+                .build();
+        RenderJob job = camera.createRenderJob().relightable(new RelightBuffer(rayTracer, 16, 16, 4)).run();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Relighting a changed light gives the render of the changed scene
+        // (the plane reflects, so its pixels are shaded again completely)
+        point.setKL(0.05);
+        job.relight(point);
+        assertFrame(camera.createRenderJob().relightable(new RelightBuffer(rayTracer, 16, 16, 4)).run()
+                .getFrameBuffer(), job.getFrameBuffer());
+        // TC02: Relighting a light of a new intensity gives the render of the changed scene
+        directional.setIntensity(new Color(20, 80, 20));
+        job.relight(directional);
+        assertFrame(camera.createRenderJob().relightable(new RelightBuffer(rayTracer, 16, 16, 4)).run()
+                .getFrameBuffer(), job.getFrameBuffer());
+        // TC03: Relighting a moved light gives the render of the changed scene
+        point.setPosition(new Point(-10, 5, 5));
+        job.relight(point);
+        assertFrame(camera.createRenderJob().relightable(new RelightBuffer(rayTracer, 16, 16, 4)).run()
+                .getFrameBuffer(), job.getFrameBuffer());
+        // TC04: A light that is not in the scene
+        assertThrows(IllegalArgumentException.class,
+                () -> job.relight(new PointLight(Color.BLACK, Point.ZERO)), "Unknown light relit");
+        // TC05: A render that has not kept its primary hits
+        assertThrows(IllegalStateException.class, () -> camera.createRenderJob().run().relight(point),
+                "Relight without primary hits");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Lights were added to the scene
+        scene.lights.add(new PointLight(Color.BLACK, Point.ZERO));
+        assertThrows(IllegalStateException.class, () -> job.relight(), "Relight with a new light");
+    }
+
+    /**
+     * Checks that a relit frame buffer is the same as a full render
+     *
+     * @param expected the full render
+     * @param actual   the relit frame buffer
+     */
+    private static void assertFrame(FrameBuffer expected, FrameBuffer actual) {
+        for (int y = 0; y < 16; ++y)
+            for (int x = 0; x < 16; ++x)
+                assertEquals(expected.getPixel(x, y), actual.getPixel(x, y), "Wrong relit pixel");
+    }
+}
@@ -0,0 +1,85 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the RenderCheckpoint class
+ */
+class RenderCheckpointTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testResume() throws IOException {
+        Path file = dir.resolve("render.ckpt");
+        FrameBuffer frame = new FrameBuffer(4, 2);
+        frame.setPixel(0, 0, new Color(10, 20, 30));
+        frame.addSample(0, 0, new Color(30, 20, 10));
+        frame.setPixel(2, 1, new Color(5, 5, 5));
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.create(file, frame, 2, true)) {
+            checkpoint.record(frame, 0, 0, 2, 2, 0);
+            checkpoint.record(frame, 0, 0, 2, 2, 1);
+            checkpoint.record(frame, 2, 0, 4, 2, 0);
+        }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The tiles are restored with their samples and passes
+        FrameBuffer restored = new FrameBuffer(4, 2);
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.resume(file, restored, 2, true)) {
+            assertEquals(new Color(20, 20, 20), restored.getPixel(0, 0), "Bad restored color");
+            assertEquals(2, restored.getSamples(0, 0), "Bad restored sample count");
+            assertEquals(new Color(5, 5, 5), restored.getPixel(2, 1), "Bad restored pixel of the second tile");
+            assertEquals(1, checkpoint.tilePass(0), "Bad pass of the first tile");
+            assertEquals(1, checkpoint.firstIncompletePass(), "Bad first incomplete pass");
+        }
+
+        // TC02: A checkpoint of other settings is rejected
+        assertThrows(IllegalArgumentException.class,
+                () -> RenderCheckpoint.resume(file, new FrameBuffer(4, 2), 2, false), "Resumed another render mode");
+
+        // TC03: The passes of a tile overwrite its slots - the file does not grow
+        long size = Files.size(file);
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.resume(file, new FrameBuffer(4, 2), 2, true)) {
+            for (int pass = 2; pass < 10; ++pass)
+                checkpoint.record(frame, 0, 0, 2, 2, pass);
+        }
+        assertEquals(size, Files.size(file), "Checkpoint grown by the passes");
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.resume(file, new FrameBuffer(4, 2), 2, true)) {
+            assertEquals(9, checkpoint.tilePass(0), "Bad pass of an overwritten tile");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A record torn while writing is dropped, and the previous pass of the tile is restored
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // the slot of the odd passes of the first tile, after the header and the slot of the even passes
+            int slot = 2 * Integer.BYTES + FrameBuffer.tileBytes(0, 0, 2, 2) + Integer.BYTES;
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), 5 * Integer.BYTES + slot + 20);
+        }
+        restored = new FrameBuffer(4, 2);
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.resume(file, restored, 2, true)) {
+            assertEquals(8, checkpoint.tilePass(0), "Torn record restored");
+            assertEquals(new Color(20, 20, 20), restored.getPixel(0, 0), "Bad color of the previous pass");
+        }
+        // TC12: A partial last record is dropped
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        restored = new FrameBuffer(4, 2);
+        try (RenderCheckpoint checkpoint = RenderCheckpoint.resume(file, restored, 2, true)) {
+            assertEquals(-1, checkpoint.tilePass(1), "Partial record restored");
+            assertEquals(0, restored.getSamples(2, 1), "Pixel of a partial record restored");
+            assertEquals(0, checkpoint.firstIncompletePass(), "Bad first incomplete pass");
+        }
+    }
+}
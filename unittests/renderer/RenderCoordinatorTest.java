@@ -0,0 +1,212 @@
+package renderer;
+
+import geometries.Cylinder;
+import geometries.Geometries;
+import geometries.Heightfield;
+import geometries.Intersectable;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.SphereCloud;
+import geometries.Triangle;
+import geometries.Tube;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Color;
+import primitives.HaltonSampler;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Scene;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Testing the RenderCoordinator and RenderWorker classes
+ */
+class RenderCoordinatorTest {
+    /** Image edge size of the tests */
+    private static final int SIZE = 24;
+
+    /**
+     * Creates a scene with every type of geometry and light
+     *
+     * @return the scene
+     */
+    private static Scene scene() {
+        Material material = new Material().setKD(0.5).setKS(0.3).setShininess(20);
+        Scene scene = new Scene("Distributed");
+        scene.setAmbientLight(new AmbientLight(new Color(30, 30, 30), 0.2));
+        scene.geometries.add(
+                new Plane(new Point(0, -40, 0), new Vector(0, 1, 0)).setMaterial(material),
+                new Sphere(new Point(-25, 20, -20), 12).setMaterial(material),
+                new Triangle(new Point(0, 0, -30), new Point(20, 0, -30), new Point(10, 25, -30))
+                        .setMaterial(material),
+                new Polygon(new Point(25, -10, -10), new Point(45, -10, -10), new Point(45, 10, -10),
+                        new Point(25, 10, -10)).setMaterial(new Material().setKD(0.3).setKT(0.5)),
+                new Tube(4, new Ray(new Point(-45, 0, -60), new Vector(0, 1, 0))).setMaterial(material),
+                new Cylinder(6, new Ray(new Point(0, -40, -20), new Vector(0, 1, 0)), 20).setMaterial(material),
+                new Heightfield(new Point(-40, -40, -20), 10, 10, 3, 3,
+                        new float[]{0, 2, 0, 2, 8, 2, 0, 2, 0}).setMaterial(material),
+                new SphereCloud(new float[]{20, 30, -40, 30, 35, -40}, new float[]{4, 3}).setMaterial(material),
+                new Geometries(new Sphere(new Point(0, 35, -50), 5)
+                        .setMaterial(new Material().setKD(0.3).setKR(0.5))));
+        scene.lights.add(new DirectionalLight(new Color(80, 80, 80), new Vector(1, -1, -1)));
+        scene.lights.add(new PointLight(new Color(300, 200, 200), new Point(-20, 40, 20)).setKL(0.001)
+                .setSize(3).setSampler(new HaltonSampler()));
+        scene.lights.add(new PointLight(new Color(200, 300, 200), new Point(20, 40, 20)).setKL(0.001));
+        scene.lights.add(new SpotLight(new Color(200, 200, 300), new Point(0, 40, 30), new Vector(0, -1, -1))
+                .setKL(0.001));
+        return scene;
+    }
+
+    /**
+     * Creates a camera of a ray tracer
+     *
+     * @param rayTracer the ray tracer
+     * @return the camera
+     */
+    private static Camera camera(RayTracerBase rayTracer) {
+        return Camera.getBuilder()
+                .setRayTracer(rayTracer)
+                .setImageWriter(new ImageWriter("Distributed", SIZE, SIZE))
+                .setLocation(new Point(0, 0, 100))
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpSize(100, 100)
+                .setVpDistance(100)
+                .build();
+    }
+
+    /**
+     * A ray tracer that hangs forever in a worker process - in every worker, or only in the first
+     * worker that creates a marker file
+     */
+    private static class HangingTracer extends SimpleRayTracer {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /** Process id of the coordinator, which never hangs */
+        private final long coordinator = ProcessHandle.current().pid();
+        /** The marker file, null for hanging in every worker */
+        private final String marker;
+
+        /**
+         * Creates a hanging ray tracer
+         *
+         * @param scene  the scene
+         * @param marker the marker file, null for hanging in every worker
+         */
+        HangingTracer(Scene scene, Path marker) {
+            super(scene);
+            this.marker = marker == null ? null : marker.toString();
+        }
+
+        @Override
+        public Color shade(Intersectable.GeoPoint gp, Ray ray) {
+            if (hangs()) {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.shade(gp, ray);
+        }
+
+        /**
+         * Checks whether the ray tracer hangs in this process
+         *
+         * @return true if it hangs
+         */
+        private boolean hangs() {
+            if (ProcessHandle.current().pid() == coordinator) return false;
+            if (marker == null) return true;
+            try {
+                Files.createFile(Path.of(marker));
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link RenderCoordinator#render(int, int, FrameBuffer)}.
+     */
+    @Test
+    void testRender() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The workers get the whole serialized scene and render the image as a local render does
+        Camera camera = camera(new SimpleRayTracer(scene()).setNumberOfPoints(8).setLightSampling(2));
+        FrameBuffer expected = camera.createRenderJob().run().getFrameBuffer();
+        FrameBuffer frame = new FrameBuffer(SIZE, SIZE);
+        new RenderCoordinator(camera, SIZE, SIZE, 0, 0, SIZE, SIZE).render(2, 1, frame);
+        for (int y = 0; y < SIZE; ++y)
+            for (int x = 0; x < SIZE; ++x)
+                assertEquals(expected.getPixel(x, y), frame.getPixel(x, y), "Wrong distributed pixel");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A crop window - only the window is leased and assembled
+        FrameBuffer window = new FrameBuffer(10, 6);
+        new RenderCoordinator(camera, SIZE, SIZE, 7, 9, 10, 6).render(1, 2, window);
+        for (int y = 0; y < 6; ++y)
+            for (int x = 0; x < 10; ++x)
+                assertEquals(expected.getPixel(x + 7, y + 9), window.getPixel(x, y), "Wrong pixel of the window");
+    }
+
+    /**
+     * Test method for {@link RenderCoordinator#render(int, int, FrameBuffer)} with hung workers.
+     */
+    @Test
+    void testHungWorker(@TempDir Path dir) throws InterruptedException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The tile of a hung worker times out and is leased again to another worker
+        Camera camera = camera(new HangingTracer(scene(), dir.resolve("hung")));
+        FrameBuffer expected = camera.createRenderJob().run().getFrameBuffer();
+        FrameBuffer frame = new FrameBuffer(SIZE, SIZE);
+        new RenderCoordinator(camera, SIZE, SIZE, 0, 0, SIZE, SIZE).setLeaseTimeout(Duration.ofSeconds(5))
+                .render(2, 1, frame);
+        for (int y = 0; y < SIZE; ++y)
+            for (int x = 0; x < SIZE; ++x)
+                assertEquals(expected.getPixel(x, y), frame.getPixel(x, y), "Wrong distributed pixel");
+
+        // TC02: An interrupted render stops its sessions and is cancelled
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread render = Thread.ofPlatform().start(() -> {
+            try {
+                new RenderCoordinator(camera(new HangingTracer(scene(), null)), SIZE, SIZE, 0, 0, SIZE, SIZE)
+                        .render(1, 1, new FrameBuffer(SIZE, SIZE));
+            } catch (Throwable e) {
+                failure.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        Thread.sleep(2000);
+        render.interrupt();
+        render.join(10_000);
+        assertFalse(render.isAlive(), "Interrupted render still running");
+        assertInstanceOf(CancellationException.class, failure.get(), "Interrupted render not cancelled");
+        assertTrue(interrupted.get(), "Interrupt status lost");
+    }
+}
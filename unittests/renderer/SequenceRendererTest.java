@@ -0,0 +1,87 @@
+package renderer;
+
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Vector;
+import scene.Scene;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the SequenceRenderer class
+ */
+class SequenceRendererTest {
+    /** Frame edge size of the tests */
+    private static final int SIZE = 6;
+
+    /** Camera builder with all the settings except the path parameters */
+    private final Camera.Builder builder;
+
+    /** Path from (-20, 0, 0) to (20, 0, 0) in two seconds, looking along -Z */
+    private final CameraPath path = new CameraPath()
+            .addKeyframe(1, new Point(-20, 0, 0), new Vector(0, 0, -1), Vector.AXIS_Y)
+            .addKeyframe(3, new Point(20, 0, 0), new Vector(0, 0, -1), Vector.AXIS_Y);
+
+    SequenceRendererTest() {
+        Scene scene = new Scene("Test").setBackground(new Color(20, 40, 60));
+        scene.geometries.add(new Sphere(new Point(0, 0, -100), 30).setEmission(new Color(200, 100, 50))
+                .setMaterial(new Material()));
+        builder = Camera.getBuilder()
+                .setVpSize(100, 100).setVpDistance(100)
+                .setRayTracer(new SimpleRayTracer(scene))
+                .setImageWriter(new ImageWriter("Test", SIZE, SIZE));
+    }
+
+    /**
+     * Test method for {@link SequenceRenderer#renderStream(OutputStream)}.
+     */
+    @Test
+    void testRenderStream() {
+        SequenceRenderer renderer = new SequenceRenderer(builder, path, SIZE, SIZE).setFrameRate(1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every frame of the path is written in order, three bytes per pixel
+        assertEquals(3, renderer.getFrameCount(), "Wrong number of frames");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.renderStream(out);
+        byte[] stream = out.toByteArray();
+        assertEquals(3 * 3 * SIZE * SIZE, stream.length, "Wrong stream length");
+        assertEquals(3, renderer.getFrameTimes().length, "Wrong number of frame times");
+        for (int k = 0; k < 3; ++k) {
+            ImageWriter imageWriter = new ImageWriter("Test", SIZE, SIZE);
+            FrameBuffer frame = path.apply(builder, 1 + k).setImageWriter(imageWriter).build()
+                    .createRenderJob().run().getFrameBuffer();
+            for (int y = 0; y < SIZE; ++y)
+                for (int x = 0; x < SIZE; ++x) {
+                    java.awt.Color color = frame.getPixel(x, y).getColor();
+                    int p = 3 * (k * SIZE * SIZE + y * SIZE + x);
+                    assertEquals(color.getRed(), stream[p] & 0xFF, "Wrong red byte");
+                    assertEquals(color.getGreen(), stream[p + 1] & 0xFF, "Wrong green byte");
+                    assertEquals(color.getBlue(), stream[p + 2] & 0xFF, "Wrong blue byte");
+                }
+        }
+        // TC02: A frame rate that doesn't divide the path duration
+        assertEquals(6, new SequenceRenderer(builder, path, SIZE, SIZE).setFrameRate(2.5).getFrameCount(),
+                "Wrong number of frames");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A failure to encode a frame is rethrown by the render
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> renderer.renderStream(failing),
+                "Encoding failure not rethrown");
+        assertEquals("Disk full", e.getCause().getMessage(), "Wrong encoding failure");
+    }
+}
@@ -0,0 +1,120 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the soft shadows of the SimpleRayTracer class
+ */
+class SimpleRayTracerTest {
+    /** An opaque sphere above a plane, under an area light */
+    private final Scene scene = new Scene("Test");
+    /** The blocker of the light */
+    private final Sphere blocker = new Sphere(new Point(0, 0, -50), 5);
+    /** A ray to a point of the plane lit by the whole light */
+    private final Ray lit = new Ray(Point.ZERO, new Vector(40, -20, -50));
+    /** A ray to a point of the plane hidden from the whole light */
+    private final Ray umbra = new Ray(Point.ZERO, new Vector(0, -20, -50));
+
+    SimpleRayTracerTest() {
+        blocker.setMaterial(new Material().setKD(0.5));
+        scene.geometries.add(blocker,
+                new Plane(new Point(0, -20, 0), new Vector(0, 1, 0)).setMaterial(new Material().setKD(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 40, -50)).setSize(4));
+    }
+
+    @Test
+    void testAdaptiveShadows() {
+        SimpleRayTracer full = new SimpleRayTracer(scene).setNumberOfPoints(64);
+        SimpleRayTracer adaptive = new SimpleRayTracer(scene).setNumberOfPoints(64).setAdaptiveShadows(true);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A point lit by the whole light
+        assertColor(full.traceRay(lit), adaptive.traceRay(lit));
+        // TC02: A point hidden from the whole light
+        assertColor(full.traceRay(umbra), adaptive.traceRay(umbra));
+        // TC03: The regions of the light disk are sampled by their probes only
+        assertTrue(adaptive.getShadowRayCount() * 4 <= full.getShadowRayCount(),
+                "Too many shadow rays: " + adaptive.getShadowRayCount());
+    }
+
+    @Test
+    void testOccluderCache() {
+        SimpleRayTracer tracer = new SimpleRayTracer(scene).setNumberOfPoints(16);
+        Color expected = new SimpleRayTracer(scene).setNumberOfPoints(16).traceRay(lit);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The shadow rays after the first one are blocked by the cached occluder
+        assertColor(Color.BLACK, tracer.traceRay(umbra));
+        assertEquals(15d / 16, tracer.getOccluderCacheHitRate(), 1e-9, "Wrong hit rate");
+        // TC02: A cached occluder that doesn't block the rays
+        assertColor(expected, tracer.traceRay(lit));
+        // TC03: A cached occluder that is not opaque any more doesn't block the rays
+        blocker.setMaterial(new Material().setKD(0.5).setKT(1));
+        assertColor(new SimpleRayTracer(scene).setNumberOfPoints(16).traceRay(umbra), tracer.traceRay(umbra));
+        blocker.setMaterial(new Material().setKD(0.5));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The cached occluder is removed from the scene between two renders
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(tracer)
+                .setImageWriter(new ImageWriter("Test", 8, 8))
+                .setLocation(Point.ZERO)
+                .setDirection(umbra.getDirection(), new Vector(0, 50, -20))
+                .setVpDistance(10).setVpSize(2, 2)
+                .setMultithreading(2).setScheduler(Camera.RenderScheduler.TILES).setTileSize(4)
+                .build();
+        camera.createRenderJob().run();
+        scene.geometries.remove(blocker);
+        FrameBuffer frame = camera.createRenderJob().run().getFrameBuffer();
+        for (int y = 0; y < 8; ++y)
+            for (int x = 0; x < 8; ++x)
+                assertNotEquals(Color.BLACK, frame.getPixel(x, y), "Shadow of a removed occluder");
+    }
+
+    @Test
+    void testLightTree() {
+        Scene sampled = new Scene("Test");
+        sampled.geometries.add(new Plane(new Point(0, -20, 0), new Vector(0, 1, 0))
+                .setMaterial(new Material().setKD(0.5)));
+        PointLight near = new PointLight(new Color(300, 300, 300), new Point(40, 0, -50));
+        sampled.lights.add(near);
+        sampled.lights.add(new PointLight(new Color(100, 100, 100), new Point(-40, 0, -50)));
+        SimpleRayTracer tracer = new SimpleRayTracer(sampled).setLightSampling(1);
+        tracer.traceRay(lit);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A light edited in place between two renders
+        near.setKL(0.1).setPosition(new Point(0, 0, -50));
+        tracer.beginRender();
+        assertColor(new SimpleRayTracer(sampled).setLightSampling(1).traceRay(lit), tracer.traceRay(lit));
+        // TC02: A light replaced by another one between two renders
+        sampled.lights.set(0, new PointLight(new Color(0, 300, 0), new Point(40, 0, -50)));
+        tracer.beginRender();
+        assertColor(new SimpleRayTracer(sampled).setLightSampling(1).traceRay(lit), tracer.traceRay(lit));
+    }
+
+    /**
+     * Checks that two colors are equal
+     *
+     * @param expected the expected color
+     * @param actual   the actual color
+     */
+    private static void assertColor(Color expected, Color actual) {
+        Double3 e = expected.getRgb(), a = actual.getRgb();
+        assertEquals(e.d1(), a.d1(), 1e-9, "Wrong red component");
+        assertEquals(e.d2(), a.d2(), 1e-9, "Wrong green component");
+        assertEquals(e.d3(), a.d3(), 1e-9, "Wrong blue component");
+    }
+}
@@ -0,0 +1,116 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the TileScheduler class
+ */
+class TileSchedulerTest {
+
+    /**
+     * Checks that an order of tiles is a permutation of the tiles of a grid
+     *
+     * @param order  the tile indices
+     * @param tilesX number of tile columns
+     * @param tilesY number of tile rows
+     */
+    private static void assertPermutation(int[] order, int tilesX, int tilesY) {
+        assertEquals(tilesX * tilesY, order.length, "Wrong number of tiles in " + tilesX + "x" + tilesY);
+        boolean[] seen = new boolean[order.length];
+        for (int tile : order) {
+            assertTrue(tile >= 0 && tile < order.length, "Tile out of the grid " + tilesX + "x" + tilesY);
+            assertFalse(seen[tile], "Tile ordered twice in " + tilesX + "x" + tilesY);
+            seen[tile] = true;
+        }
+    }
+
+    /**
+     * Test method for {@link TileScheduler#hilbertOrder(int, int)} and {@link TileScheduler#spiralOrder(int, int)}.
+     */
+    @Test
+    void testOrder() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A square power of 2 grid
+        assertPermutation(TileScheduler.hilbertOrder(8, 8), 8, 8);
+        assertPermutation(TileScheduler.spiralOrder(8, 8), 8, 8);
+        // TC02: Grids that are not powers of 2
+        int[][] grids = {{3, 3}, {5, 7}, {7, 5}, {6, 10}, {13, 9}};
+        for (int[] grid : grids) {
+            assertPermutation(TileScheduler.hilbertOrder(grid[0], grid[1]), grid[0], grid[1]);
+            assertPermutation(TileScheduler.spiralOrder(grid[0], grid[1]), grid[0], grid[1]);
+        }
+        // TC03: Consecutive tiles of the Hilbert curve of a square power of 2 grid are neighbours
+        int[] hilbert = TileScheduler.hilbertOrder(8, 8);
+        for (int i = 1; i < hilbert.length; ++i) {
+            int dx = hilbert[i] % 8 - hilbert[i - 1] % 8, dy = hilbert[i] / 8 - hilbert[i - 1] / 8;
+            assertEquals(1, Math.abs(dx) + Math.abs(dy), "Hilbert curve jumps");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single tile
+        assertArrayEquals(new int[]{0}, TileScheduler.hilbertOrder(1, 1), "Wrong order of a single tile");
+        assertArrayEquals(new int[]{0}, TileScheduler.spiralOrder(1, 1), "Wrong order of a single tile");
+        // TC12: A single row and a single column of tiles
+        for (int n : new int[]{2, 5, 9}) {
+            assertPermutation(TileScheduler.hilbertOrder(1, n), 1, n);
+            assertPermutation(TileScheduler.hilbertOrder(n, 1), n, 1);
+            assertPermutation(TileScheduler.spiralOrder(1, n), 1, n);
+            assertPermutation(TileScheduler.spiralOrder(n, 1), n, 1);
+        }
+    }
+
+    /**
+     * Test method for {@link TileScheduler#render(ForkJoinPool, TileScheduler.TileRenderer, double)}.
+     */
+    @Test
+    void testRender() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: Every pixel is rendered exactly once, by a tile inside the image
+            for (Camera.TileOrder tileOrder : Camera.TileOrder.values()) {
+                AtomicIntegerArray pixels = new AtomicIntegerArray(23 * 17);
+                TileScheduler scheduler = new TileScheduler(23, 17, 4, tileOrder);
+                scheduler.render(pool, (x0, y0, x1, y1) -> {
+                    assertTrue(x1 - x0 <= 4 && y1 - y0 <= 4 && x1 <= 23 && y1 <= 17, "Wrong tile");
+                    for (int y = y0; y < y1; ++y)
+                        for (int x = x0; x < x1; ++x) pixels.incrementAndGet(y * 23 + x);
+                }, 0);
+                for (int p = 0; p < pixels.length(); ++p)
+                    assertEquals(1, pixels.get(p), "Pixel not rendered exactly once");
+                assertEquals(23 * 17, scheduler.pixelsDone(), "Wrong number of rendered pixels");
+            }
+            // TC02: A stopped render skips the remaining tiles
+            ForkJoinPool single = new ForkJoinPool(1);
+            try {
+                TileScheduler scheduler = new TileScheduler(32, 32, 4, Camera.TileOrder.HILBERT);
+                AtomicInteger tiles = new AtomicInteger();
+                scheduler.render(single, (x0, y0, x1, y1) -> {
+                    tiles.incrementAndGet();
+                    scheduler.stop();
+                }, 0);
+                assertEquals(1, tiles.get(), "Tiles rendered after the render was stopped");
+                assertEquals(16, scheduler.pixelsDone(), "Wrong number of rendered pixels");
+            } finally {
+                single.shutdown();
+            }
+
+            // =============== Boundary Values Tests ==================
+            // TC11: An image smaller than a tile is a single partial tile
+            AtomicInteger tiles = new AtomicInteger();
+            new TileScheduler(3, 2, 4, Camera.TileOrder.SPIRAL).render(pool, (x0, y0, x1, y1) -> {
+                tiles.incrementAndGet();
+                assertArrayEquals(new int[]{0, 0, 3, 2}, new int[]{x0, y0, x1, y1}, "Wrong partial tile");
+            }, 0);
+            assertEquals(1, tiles.get(), "Wrong number of tiles");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
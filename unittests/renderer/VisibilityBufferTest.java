@@ -0,0 +1,70 @@
+package renderer;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the VisibilityBuffer class
+ */
+class VisibilityBufferTest {
+
+    @Test
+    void testClosestHit() {
+        Scene scene = new Scene("Test");
+        Sphere sphere = new Sphere(new Point(0, 0, -50), 10);
+        Triangle triangle = new Triangle(new Point(-30, -30, -80), new Point(30, -30, -80), new Point(0, 30, -40));
+        Polygon square = new Polygon(new Point(10, 10, -30), new Point(20, 10, -30),
+                new Point(20, 20, -30), new Point(10, 20, -30));
+        Sphere around = new Sphere(Point.ZERO, 20);
+        scene.geometries.add(sphere, triangle, square, new Plane(new Point(0, 0, -90), new Vector(0, 0, 1)));
+        RayTracerBase rayTracer = new SimpleRayTracer(scene);
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(rayTracer)
+                .setImageWriter(new ImageWriter("Test", 20, 20))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(16, 16)
+                .build();
+        VisibilityBuffer visibility = new VisibilityBuffer(rayTracer, new VisibilityBuffer.Projection(Point.ZERO,
+                new Vector(0, 0, -1), new Vector(1, 0, 0), new Vector(0, 1, 0), 10, 0.8, 0.8, 20, 20),
+                0, 0, 20, 20, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The hits of all the pixels are the hits of ray tracing
+        for (int i = 0; i < 20; ++i)
+            for (int j = 0; j < 20; ++j) {
+                Ray ray = camera.constructRay(20, 20, j, i);
+                GeoPoint expected = rayTracer.findClosestIntersection(ray);
+                GeoPoint actual = visibility.closestHit(j, i, ray);
+                assertSame(expected.geometry, actual.geometry, "Wrong visible geometry");
+                assertEquals(expected.point, actual.point, "Wrong visible point");
+            }
+        // TC02: The sphere covers the pixels at the center
+        assertSame(sphere, visibility.geometryAt(10, 10), "Sphere not rasterized");
+        assertEquals(-rayTracer.findClosestIntersection(camera.constructRay(20, 20, 10, 10)).point.getZ(),
+                visibility.depthAt(10, 10), 1e-9, "Wrong sphere depth");
+        // TC03: The polygon covers the pixels of its square
+        assertSame(square, visibility.geometryAt(16, 3), "Polygon not rasterized");
+        // TC04: The plane is ray traced
+        assertNull(visibility.geometryAt(0, 0), "Plane rasterized");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A sphere around the camera is ray traced, and still hides the scene
+        scene.geometries.add(around);
+        VisibilityBuffer inside = new VisibilityBuffer(rayTracer, new VisibilityBuffer.Projection(Point.ZERO,
+                new Vector(0, 0, -1), new Vector(1, 0, 0), new Vector(0, 1, 0), 10, 0.8, 0.8, 20, 20),
+                0, 0, 20, 20, 1);
+        assertSame(around, inside.closestHit(10, 10, camera.constructRay(20, 20, 10, 10)).geometry,
+                "Wrong hit of a traced geometry");
+    }
+}
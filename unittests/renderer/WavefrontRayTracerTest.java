@@ -0,0 +1,129 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing the WavefrontRayTracer class
+ */
+class WavefrontRayTracerTest {
+    /** An opaque sphere above a plane, under an area light */
+    private final Scene shadowScene = new Scene("Shadows");
+    /** A ray to a point of the plane lit by the whole light */
+    private final Ray lit = new Ray(Point.ZERO, new Vector(40, -20, -50));
+    /** A ray to a point of the plane hidden from the whole light */
+    private final Ray umbra = new Ray(Point.ZERO, new Vector(0, -20, -50));
+
+    WavefrontRayTracerTest() {
+        shadowScene.geometries.add(
+                new Sphere(new Point(0, 0, -50), 5).setMaterial(new Material().setKD(0.5)),
+                new Plane(new Point(0, -20, 0), new Vector(0, 1, 0)).setMaterial(new Material().setKD(0.5)));
+        shadowScene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 40, -50)).setSize(4));
+    }
+
+    @Test
+    void testTraceBatch() {
+        Scene scene = new Scene("Test");
+        scene.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -20), 4).setEmission(new Color(50, 0, 0))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20).setKT(0.5)),
+                new Sphere(new Point(3, 0, -30), 3).setEmission(new Color(0, 50, 0))
+                        .setMaterial(new Material().setKD(0.5).setKR(0.4)),
+                new Plane(new Point(0, -4, 0), new Vector(0, 1, 0))
+                        .setMaterial(new Material().setKD(0.5).setKR(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(10, 10, 0)));
+        SimpleRayTracer recursive = new SimpleRayTracer(scene);
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(scene);
+
+        Ray[] rays = new Ray[25];
+        for (int r = 0; r < rays.length; ++r)
+            rays[r] = new Ray(Point.ZERO, new Vector(r % 5 - 2, r / 5 - 3, -10));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A batch of rays through reflecting and refracting geometries and the background
+        Color[] colors = wavefront.traceBatch(rays);
+        for (int r = 0; r < rays.length; ++r)
+            assertColor(recursive.traceRay(rays[r]), colors[r]);
+        // TC02: A single ray from its closest hit
+        assertColor(recursive.traceRay(rays[12]), wavefront.shade(wavefront.findClosestIntersection(rays[12]), rays[12]));
+        // TC03: Secondary rays sorted for coherence
+        WavefrontRayTracer sorted = new WavefrontRayTracer(scene).setCoherenceSorting(true);
+        colors = sorted.traceBatch(rays);
+        for (int r = 0; r < rays.length; ++r)
+            assertColor(recursive.traceRay(rays[r]), colors[r]);
+        assertTrue(sorted.getCoherence() >= wavefront.getCoherence(), "Sorting made the rays less coherent");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An empty batch
+        assertEquals(0, wavefront.traceBatch(new Ray[0]).length, "Colors of an empty batch");
+    }
+
+    @Test
+    void testShadows() {
+        SimpleRayTracer recursive = new SimpleRayTracer(shadowScene).setNumberOfPoints(64).setAdaptiveShadows(true);
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(shadowScene).setNumberOfPoints(64)
+                .setAdaptiveShadows(true);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Adaptive soft shadows of a lit point and of a point in the umbra, as the recursive tracer's
+        Color[] colors = wavefront.traceBatch(new Ray[]{lit, umbra});
+        assertColor(recursive.traceRay(lit), colors[0]);
+        assertColor(recursive.traceRay(umbra), colors[1]);
+        // TC02: The same shadow rays are traced and blocked by the cached occluders
+        assertEquals(recursive.getShadowRayCount(), wavefront.getShadowRayCount(), "Wrong number of shadow rays");
+        assertEquals(recursive.getOccluderCacheHitRate(), wavefront.getOccluderCacheHitRate(), 1e-9,
+                "Wrong hit rate");
+    }
+
+    @Test
+    void testLightSampling() {
+        Scene scene = new Scene("Test");
+        scene.geometries.add(
+                new Sphere(new Point(0, 0, -20), 4).setMaterial(new Material().setKD(0.5).setKS(0.5).setKR(0.3)),
+                new Plane(new Point(0, -4, 0), new Vector(0, 1, 0)).setMaterial(new Material().setKD(0.5)));
+        for (int i = 0; i < 6; ++i)
+            scene.lights.add(new PointLight(new Color(100, 80 + 10 * i, 60), new Point(10 * i - 25, 10, -10))
+                    .setKL(0.01));
+        SimpleRayTracer recursive = new SimpleRayTracer(scene).setLightSampling(2);
+        WavefrontRayTracer wavefront = new WavefrontRayTracer(scene).setLightSampling(2);
+        Ray[] rays = new Ray[25];
+        for (int r = 0; r < rays.length; ++r)
+            rays[r] = new Ray(Point.ZERO, new Vector(r % 5 - 2, r / 5 - 3, -10));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Both tracers shade the same sampled lights
+        Color[] colors = wavefront.traceBatch(rays);
+        for (int r = 0; r < rays.length; ++r)
+            assertColor(recursive.traceRay(rays[r]), colors[r]);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A negative number of lights
+        assertThrows(IllegalArgumentException.class, () -> recursive.setLightSampling(-1), "Negative light count");
+    }
+
+    /**
+     * Checks that a color of the wavefront tracer is the color of the recursive tracer
+     *
+     * @param expected the color of the recursive tracer
+     * @param actual   the color of the wavefront tracer
+     */
+    private static void assertColor(Color expected, Color actual) {
+        Double3 e = expected.getRgb(), a = actual.getRgb();
+        assertEquals(e.d1(), a.d1(), 1e-9, "Wrong red component");
+        assertEquals(e.d2(), a.d2(), 1e-9, "Wrong green component");
+        assertEquals(e.d3(), a.d3(), 1e-9, "Wrong blue component");
+    }
+}